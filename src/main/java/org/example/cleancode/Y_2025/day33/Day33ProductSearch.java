@@ -14,6 +14,14 @@ import java.util.stream.Collectors;
  * - 새로운 필터 추가 시 메서드 수정 필요
  * - 필터 체인 구성이 유연하지 않음
  * - 필터 적용 순서 제어 불가
+ *
+ * 성능 개선 (카탈로그 200만 SKU)
+ * - 전체 선형 스캔 + 상품마다 이름/검색어 toLowerCase -> 검색 인덱스(ProductIndex)로 posting list 교집합
+ *   이름 2-gram, 카테고리 posting list, 가격순 정렬 배열
+ * - 필터 목록(SearchBuilder 포함)을 인덱스 연산으로 변환, 인덱스가 없는 필터(where)만 후보에 Predicate로 적용
+ * - KeywordFilter: 검색어는 생성 시 한 번만 정규화
+ * - 필터를 넣은 순서대로 AND -> 통계(카테고리/2-gram 행 수, 가격 분포, 재고 비율)로 driving set과 확인 순서 선택
+ *   explain(): 선택한 계획과 단계별 예상 / 실제 행 수
  */
 
 public class Day33ProductSearch {
@@ -57,6 +65,16 @@ public class Day33ProductSearch {
 
         System.out.println("검색 결과: " + results3.size() + "건");
         results3.forEach(System.out::println);
+
+
+        // 방법 4: 실행 계획 (필터를 넣은 순서와 상관없이 통계로 순서 결정)
+        System.out.println("\n=== 방법 4: 실행 계획 ===");
+        System.out.print(service.searchBuilder()
+                .keyword("노트북")
+                .priceRange(10000, 200000)
+                .category("전자기기")
+                .onlyInStock()
+                .explain());
     }
 
 }
@@ -65,9 +83,16 @@ public class Day33ProductSearch {
 // Predicate = 입력된 객체가 특정 조건을 만족하는지 여부를 평가
 class KeywordFilter implements Predicate<Product> {
     private final String keyword;
+    // 상품마다 다시 소문자로 바꾸지 않도록 한 번만
+    private final String normalizedKeyword;
 
     public KeywordFilter(String keyword) {
         this.keyword = keyword;
+        this.normalizedKeyword = keyword == null ? null : ProductIndex.normalize(keyword);
+    }
+
+    String getNormalizedKeyword() {
+        return normalizedKeyword;
     }
 
     @Override
@@ -77,8 +102,8 @@ class KeywordFilter implements Predicate<Product> {
            return true;
         }
 
-        return product.getName().toLowerCase()
-                .contains(keyword.toLowerCase());
+        return ProductIndex.normalize(product.getName())
+                .contains(normalizedKeyword);
     }
 }
 
@@ -90,6 +115,15 @@ class PriceRangeFilter implements Predicate<Product> {
         this.minPrice = minPrice;
         this.maxPrice = maxPrice;
     }
+
+    Integer getMinPrice() {
+        return minPrice;
+    }
+
+    Integer getMaxPrice() {
+        return maxPrice;
+    }
+
     @Override
     public boolean test(Product product) {
 
@@ -113,6 +147,10 @@ class CategoryFilter implements Predicate<Product> {
         this.category = category;
     }
 
+    String getCategory() {
+        return category;
+    }
+
     @Override
     public boolean test(Product product) {
 
@@ -131,6 +169,10 @@ class InStockFilter implements Predicate<Product> {
         this.requireInStock = requireInStock;
     }
 
+    boolean isRequireInStock() {
+        return requireInStock;
+    }
+
     @Override
     public boolean test(Product product) {
 
@@ -180,9 +222,21 @@ class SearchBuilder {
         return this;
     }
 
+    // 인덱스가 없는 조건 (인덱스로 좁힌 후보에만 적용)
+    public SearchBuilder where(Predicate<Product> filter) {
+        filters.add(filter);
+
+        return this;
+    }
+
     public List<Product> execute() {
         return service.search(filters);
     }
+
+    // 실행 후 계획과 예상 / 실제 행 수
+    public String explain() {
+        return service.explain(filters);
+    }
 }
 
 
@@ -218,19 +272,37 @@ class Product {
 
 class ProductSearchService {
     private List<Product> database;
+    private final ProductIndex index;
 
     public ProductSearchService() {
         // 테스트 데이터
-        database = Arrays.asList(
+        this(Arrays.asList(
                 new Product("P001", "삼성 노트북", 150000, "전자기기", true),
                 new Product("P002", "LG 모니터", 30000, "전자기기", false),
                 new Product("P003", "애플 맥북", 250000, "전자기기", true),
                 new Product("P004", "책상", 50000, "가구", true)
-        );
+        ));
+    }
+
+    // 카탈로그는 바뀌지 않는다고 보고 생성 시 인덱스를 한 번 만듦
+    public ProductSearchService(List<Product> database) {
+        this.database = database;
+        this.index = new ProductIndex(database);
     }
 
-    // 문제: 모든 필터가 하나의 메서드에 집중
+    // 인덱스 검색 (결과 순서는 database 순서 그대로)
     public List<Product> search(List<Predicate<Product>> filters) {
+        return index.execute(IndexQuery.compile(filters));
+    }
+
+    public String explain(List<Predicate<Product>> filters) {
+        QueryPlan plan = index.plan(IndexQuery.compile(filters));
+        int rows = plan.execute().size();
+        return "검색 계획 (결과 " + rows + "건)\n" + plan.explain();
+    }
+
+    // 인덱스 없이 전체 선형 스캔 (비교용)
+    public List<Product> searchByScan(List<Predicate<Product>> filters) {
         
         // 모든 필터를 하나의 predicate로 통합
         Predicate<Product> combinedFilter =
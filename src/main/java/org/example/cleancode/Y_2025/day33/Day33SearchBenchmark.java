@@ -0,0 +1,87 @@
+package org.example.cleancode.Y_2025.day33;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Day 33 검색 측정: 선형 스캔(searchByScan) vs 인덱스(search)
+ *
+ * - 임의 카탈로그 (브랜드 x 품목 x 모델명, 카테고리 40개, 가격 1천 ~ 100만원, 재고 70%)
+ * - 쿼리마다 두 방식의 결과가 같은지 확인 후 평균 시간
+ * - 마지막에 몇몇 쿼리의 실행 계획 (예상 / 실제 행 수)
+ * 인자: 카탈로그 크기 (기본값 2,000,000)
+ */
+public class Day33SearchBenchmark {
+
+    private static final String[] BRANDS = {"삼성", "LG", "애플", "레노버", "에이수스", "한샘", "이케아", "나이키", "아디다스", "필립스"};
+    private static final String[] ITEMS = {"노트북", "모니터", "키보드", "마우스", "책상", "의자", "운동화", "티셔츠", "면도기", "청소기",
+            "태블릿", "스피커", "헤드폰", "냉장고", "세탁기", "소파", "침대", "조명", "가방", "시계"};
+    private static final int CATEGORIES = 40;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        List<Product> catalog = catalog(size, new Random(33));
+
+        long start = System.nanoTime();
+        ProductSearchService service = new ProductSearchService(catalog);
+        System.out.printf("catalog=%,d  index build=%,.0fms%n", size, (System.nanoTime() - start) / 1_000_000.0);
+
+        run(service, "keyword+price+category+stock", Arrays.asList(
+                new KeywordFilter("노트북"), new PriceRangeFilter(10000, 200000),
+                new CategoryFilter("카테고리-3"), new InStockFilter(true)));
+        run(service, "keyword (model)", List.of(new KeywordFilter("m1234")));
+        run(service, "category", List.of(new CategoryFilter("카테고리-7")));
+        run(service, "narrow price", List.of(new PriceRangeFilter(500000, 501000)));
+        run(service, "1-char keyword", List.of(new KeywordFilter("북"), new InStockFilter(true)));
+        run(service, "category+where", List.of(new CategoryFilter("카테고리-1"),
+                (Predicate<Product>) product -> product.getId().endsWith("7")));
+        run(service, "wide price+stock", List.of(new PriceRangeFilter(1000, 900000), new InStockFilter(true)));
+        // 비싼 조건을 먼저 넣어도 선택도 높은 조건부터
+        List<Predicate<Product>> keywordFirst = List.of(new KeywordFilter("북"),
+                new CategoryFilter("카테고리-5"), new PriceRangeFilter(100000, 120000));
+        run(service, "keyword first (1-char)", keywordFirst);
+
+        System.out.println();
+        System.out.print(service.explain(Arrays.asList(new KeywordFilter("노트북"), new PriceRangeFilter(10000, 200000),
+                new CategoryFilter("카테고리-3"), new InStockFilter(true))));
+        System.out.print(service.explain(keywordFirst));
+        System.out.print(service.explain(List.of(new PriceRangeFilter(1000, 900000), new InStockFilter(true))));
+    }
+
+    private static void run(ProductSearchService service, String name, List<Predicate<Product>> filters) {
+        List<Product> expected = service.searchByScan(filters);
+        List<Product> actual = service.search(filters);
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(name + ": 결과 불일치 " + expected.size() + " vs " + actual.size());
+        }
+
+        double scan = average(() -> service.searchByScan(filters));
+        double index = average(() -> service.search(filters));
+        System.out.printf("%-30s rows=%,9d  scan=%8.2fms  index=%8.2fms  (x%.0f)%n",
+                name, actual.size(), scan, index, scan / index);
+    }
+
+    private static double average(Runnable query) {
+        query.run();   // 워밍업
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            query.run();
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / ROUNDS;
+    }
+
+    static List<Product> catalog(int size, Random random) {
+        List<Product> catalog = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String name = BRANDS[random.nextInt(BRANDS.length)] + " " + ITEMS[random.nextInt(ITEMS.length)]
+                    + " M" + random.nextInt(100_000);
+            catalog.add(new Product(String.format("P%07d", i), name, 1000 + random.nextInt(999_001),
+                    "카테고리-" + random.nextInt(CATEGORIES), random.nextInt(10) < 7));
+        }
+        return catalog;
+    }
+}
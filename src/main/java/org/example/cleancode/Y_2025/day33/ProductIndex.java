@@ -0,0 +1,432 @@
+package org.example.cleancode.Y_2025.day33;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * 상품 검색 인덱스 (카탈로그 200만 SKU 기준)
+ *
+ * - 상품 번호 = database 안의 위치 -> posting list(정렬된 상품 번호)로 찾은 결과도 원래 순서 그대로
+ * - 이름: 소문자로 정규화한 2-gram -> posting list
+ *   검색어의 2-gram posting list 교집합이 후보, 정규화해 둔 이름에 contains로 확인 (2-gram이 모두 있어도 붙어 있지 않을 수 있음)
+ *   한 글자 검색어는 2-gram이 없어 정규화된 이름으로만 확인
+ * - 카테고리: 카테고리 -> posting list
+ * - 가격: 가격순으로 정렬한 상품 번호 (이진 탐색으로 범위, 범위 행 수도 바로 나옴)
+ * - 열: 가격 int[], 카테고리 코드 int[], 재고 비트셋 long[] -> 후보마다 객체를 거치지 않고 확인
+ *   전체 스캔 계획에서는 열 조건을 상품 64개씩 비트맵(long)으로 한 번에 계산 후 AND (분기 없는 루프)
+ * - posting list 교집합은 짧은 것부터, 길이 차이가 크면 이진 탐색
+ * - 인덱스가 없는 필터(직접 만든 Predicate)는 후보에만 적용
+ * - 통계(posting list 길이 = 카테고리 / 2-gram 히스토그램, 가격 분포, 재고 비율)로 실행 계획 선택 -> plan
+ */
+class ProductIndex {
+
+    static final int GRAM = 2;
+    private static final int[] EMPTY = new int[0];
+    // 긴 쪽이 이 배수보다 길면 병합 대신 이진 탐색
+    private static final int GALLOP_RATIO = 32;
+    // 상품 하나 확인 비용 (열 조회 = 1 기준 대략값)
+    private static final int COLUMN_COST = 1;
+    private static final int NAME_COST = 20;
+    private static final int PREDICATE_COST = 50;
+    // 인덱스 없는 조건의 선택도 추정용 표본 수
+    private static final int SAMPLE_SIZE = 1024;
+
+    private final List<Product> products;
+    private final String[] normalizedNames;
+    private final int[] prices;
+    // 상품 번호 id의 재고 = inStockBits[id >>> 6]의 id번째 비트
+    private final long[] inStockBits;
+    private final int inStockCount;
+    // 카테고리 사전 (카테고리 -> 코드) + 코드 열
+    private final Map<String, Integer> categoryCodes = new HashMap<>();
+    private final int[] categoryColumn;
+
+    private final Map<Integer, int[]> namePostings;
+    private final Map<String, int[]> categoryPostings;
+    private final int[] idsByPrice;
+    private final int[] sortedPrices;
+
+    ProductIndex(List<Product> products) {
+        this.products = products;
+        int size = products.size();
+        this.normalizedNames = new String[size];
+        this.prices = new int[size];
+        this.inStockBits = new long[words(size)];
+        this.categoryColumn = new int[size];
+
+        Map<Integer, IntList> names = new HashMap<>();
+        Map<String, IntList> categories = new HashMap<>();
+        long[] priceKeys = new long[size];
+        int inStockTotal = 0;
+        for (int id = 0; id < size; id++) {
+            Product product = products.get(id);
+            String name = normalize(product.getName());
+            normalizedNames[id] = name;
+            prices[id] = product.getPrice();
+            if (product.isInStock()) {
+                inStockBits[id >>> 6] |= 1L << id;
+                inStockTotal++;
+            }
+            categoryColumn[id] = categoryCodes.computeIfAbsent(product.getCategory(), key -> categoryCodes.size());
+
+            for (int i = 0; i + GRAM <= name.length(); i++) {
+                names.computeIfAbsent(gramKey(name, i), key -> new IntList()).addOnce(id);
+            }
+            categories.computeIfAbsent(product.getCategory(), key -> new IntList()).addOnce(id);
+            // 상위 32비트 가격, 하위 32비트 상품 번호 -> long 정렬 한 번으로 가격순 (박싱 없음)
+            priceKeys[id] = ((long) product.getPrice() << 32) | id;
+        }
+
+        this.inStockCount = inStockTotal;
+        this.namePostings = new HashMap<>(names.size() * 2);
+        names.forEach((key, ids) -> namePostings.put(key, ids.toArray()));
+        this.categoryPostings = new HashMap<>(categories.size() * 2);
+        categories.forEach((key, ids) -> categoryPostings.put(key, ids.toArray()));
+
+        Arrays.sort(priceKeys);
+        this.idsByPrice = new int[size];
+        this.sortedPrices = new int[size];
+        for (int i = 0; i < size; i++) {
+            idsByPrice[i] = (int) priceKeys[i];
+            sortedPrices[i] = (int) (priceKeys[i] >> 32);
+        }
+    }
+
+    static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    List<Product> execute(IndexQuery query) {
+        return plan(query).execute();
+    }
+
+    int size() {
+        return products.size();
+    }
+
+    /*
+     * 통계로 실행 계획 선택
+     * - 후보 경로: 카테고리 posting list(정확한 행 수), 검색어(2-gram 중 가장 짧은 posting list = 상한), 가격 범위(정확한 행 수)
+     * - 가장 싼 경로가 driving set, 그 비용도 전체 스캔보다 크면 전체 스캔 (넓은 가격 범위를 정렬하지 않음)
+     * - 나머지 경로는 교집합 비용(목록 비용 + 후보 수)과 후보마다 확인하는 비용 중 싼 쪽
+     * - 인덱스가 없는 조건(한 글자 검색어, 직접 만든 Predicate)은 표본으로 선택도 추정
+     */
+    QueryPlan plan(IndexQuery query) {
+        int size = products.size();
+        List<QueryPlan.AccessPath> paths = new ArrayList<>();
+        List<QueryPlan.Check> checks = new ArrayList<>();
+
+        for (String category : query.categories) {
+            int[] ids = categoryPostings.getOrDefault(category, EMPTY);
+            int code = categoryCodes.getOrDefault(category, -1);
+            QueryPlan.Check check = new QueryPlan.Check("category=" + category, ratio(ids.length), COLUMN_COST,
+                    id -> categoryColumn[id] == code, selection -> retainCategory(selection, code));
+            paths.add(new QueryPlan.AccessPath("category=" + category, ids.length, ids.length, () -> ids, check, null));
+        }
+        for (String keyword : query.keywords) {
+            String label = "name~\"" + keyword + "\"";
+            IntPredicate contains = id -> normalizedNames[id].contains(keyword);
+            if (keyword.length() < GRAM) {
+                checks.add(new QueryPlan.Check(label, sampleSelectivity(contains), NAME_COST, contains));
+                continue;
+            }
+            List<int[]> grams = new ArrayList<>();
+            for (int key : distinctGrams(keyword)) {
+                grams.add(namePostings.getOrDefault(key, EMPTY));
+            }
+            grams.sort(Comparator.comparingInt(ids -> ids.length));
+            int rows = grams.get(0).length;
+            QueryPlan.Check check = new QueryPlan.Check(label, ratio(rows), NAME_COST, contains);
+            // 2-gram 하나짜리 검색어는 posting list가 곧 결과, 그 외에는 2-gram이 붙어 있는지 확인
+            QueryPlan.Check verify = keyword.length() == GRAM ? null
+                    : new QueryPlan.Check("verify " + label, 1.0, NAME_COST, contains);
+            paths.add(new QueryPlan.AccessPath(label, rows, (double) rows * grams.size(), () -> {
+                int[] candidates = grams.get(0);
+                for (int i = 1; i < grams.size() && candidates.length > 0; i++) {
+                    candidates = intersect(candidates, grams.get(i));
+                }
+                return candidates;
+            }, check, verify));
+        }
+        if (query.hasPriceRange()) {
+            int minPrice = query.minPrice;
+            int maxPrice = query.maxPrice;
+            int rows = priceRows(minPrice, maxPrice);
+            String label = "price " + minPrice + ".." + maxPrice;
+            QueryPlan.Check check = new QueryPlan.Check(label, ratio(rows), COLUMN_COST,
+                    id -> prices[id] >= minPrice && prices[id] <= maxPrice,
+                    selection -> retainPrice(selection, minPrice, maxPrice));
+            // 범위 안 상품 번호를 다시 정렬해야 함
+            double cost = rows * (Math.log(rows + 2.0) / Math.log(2));
+            paths.add(new QueryPlan.AccessPath(label, rows, cost, () -> priceRange(minPrice, maxPrice), check, null));
+        }
+        if (query.inStockOnly) {
+            checks.add(new QueryPlan.Check("in-stock", ratio(inStockCount), COLUMN_COST,
+                    id -> (inStockBits[id >>> 6] & (1L << id)) != 0, this::retainInStock));
+        }
+        for (Predicate<Product> filter : query.residual) {
+            IntPredicate test = id -> filter.test(products.get(id));
+            checks.add(new QueryPlan.Check("where " + filter.getClass().getSimpleName(), sampleSelectivity(test),
+                    PREDICATE_COST, test));
+        }
+
+        paths.sort(Comparator.comparingDouble(path -> path.cost));
+        QueryPlan.AccessPath driver = null;
+        List<QueryPlan.AccessPath> intersections = new ArrayList<>();
+        if (!paths.isEmpty() && paths.get(0).cost < size) {
+            driver = paths.get(0);
+            double candidates = driver.rows;
+            for (QueryPlan.AccessPath path : paths.subList(1, paths.size())) {
+                if (path.cost + candidates < candidates * path.fallback.cost) {
+                    intersections.add(path);
+                    candidates *= ratio(path.rows);
+                } else {
+                    checks.add(path.fallback);
+                }
+            }
+            for (QueryPlan.AccessPath path : withDriver(driver, intersections)) {
+                if (path.verify != null) {
+                    checks.add(path.verify);
+                }
+            }
+            checks.sort(Comparator.comparingDouble(QueryPlan.Check::rank));
+        } else {
+            paths.forEach(path -> checks.add(path.fallback));
+            // 전체 스캔: 비트맵으로 계산할 수 있는 열 조건을 먼저
+            checks.sort(Comparator.comparing((QueryPlan.Check check) -> check.scan == null)
+                    .thenComparingDouble(QueryPlan.Check::rank));
+        }
+        return new QueryPlan(products, driver, intersections, checks);
+    }
+
+    private static List<QueryPlan.AccessPath> withDriver(QueryPlan.AccessPath driver,
+                                                         List<QueryPlan.AccessPath> intersections) {
+        List<QueryPlan.AccessPath> all = new ArrayList<>(intersections);
+        all.add(0, driver);
+        return all;
+    }
+
+    static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    // 열 조건 비트맵: 상품 64개씩 분기 없이 통과 비트를 만들어 AND (이미 0인 워드는 건너뜀)
+    private void retainPrice(long[] selection, int minPrice, int maxPrice) {
+        int size = prices.length;
+        for (int word = 0; word < selection.length; word++) {
+            if (selection[word] == 0) {
+                continue;
+            }
+            int base = word << 6;
+            int end = Math.min(64, size - base);
+            long keep = 0;
+            for (int bit = 0; bit < end; bit++) {
+                int price = prices[base + bit];
+                keep |= (price >= minPrice & price <= maxPrice ? 1L : 0L) << bit;
+            }
+            selection[word] &= keep;
+        }
+    }
+
+    private void retainCategory(long[] selection, int code) {
+        int size = categoryColumn.length;
+        for (int word = 0; word < selection.length; word++) {
+            if (selection[word] == 0) {
+                continue;
+            }
+            int base = word << 6;
+            int end = Math.min(64, size - base);
+            long keep = 0;
+            for (int bit = 0; bit < end; bit++) {
+                keep |= (categoryColumn[base + bit] == code ? 1L : 0L) << bit;
+            }
+            selection[word] &= keep;
+        }
+    }
+
+    private void retainInStock(long[] selection) {
+        for (int word = 0; word < selection.length; word++) {
+            selection[word] &= inStockBits[word];
+        }
+    }
+
+    private double ratio(long rows) {
+        return products.isEmpty() ? 0 : rows / (double) products.size();
+    }
+
+    // 고르게 뽑은 상품 SAMPLE_SIZE개로 통과 비율 추정
+    private double sampleSelectivity(IntPredicate test) {
+        int size = products.size();
+        int samples = Math.min(SAMPLE_SIZE, size);
+        if (samples == 0) {
+            return 0;
+        }
+        int passed = 0;
+        for (int i = 0; i < samples; i++) {
+            if (test.test((int) ((long) i * size / samples))) {
+                passed++;
+            }
+        }
+        return passed / (double) samples;
+    }
+
+    private int priceRows(int minPrice, int maxPrice) {
+        int from = lowerBound(sortedPrices, minPrice);
+        int to = maxPrice == Integer.MAX_VALUE ? sortedPrices.length : lowerBound(sortedPrices, maxPrice + 1);
+        return Math.max(0, to - from);
+    }
+
+    // 가격 범위의 상품 번호 (상품 번호순)
+    private int[] priceRange(int minPrice, int maxPrice) {
+        int from = lowerBound(sortedPrices, minPrice);
+        int to = maxPrice == Integer.MAX_VALUE ? sortedPrices.length : lowerBound(sortedPrices, maxPrice + 1);
+        if (from >= to) {
+            return EMPTY;
+        }
+        int[] ids = Arrays.copyOfRange(idsByPrice, from, to);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private static int lowerBound(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Set<Integer> distinctGrams(String keyword) {
+        Set<Integer> keys = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= keyword.length(); i++) {
+            keys.add(gramKey(keyword, i));
+        }
+        return keys;
+    }
+
+    // 2-gram = 문자 두 개를 int 하나로 (String 생성 없음)
+    private static int gramKey(String text, int offset) {
+        return (text.charAt(offset) << 16) | text.charAt(offset + 1);
+    }
+
+    static int[] intersect(int[] a, int[] b) {
+        int[] small = a.length <= b.length ? a : b;
+        int[] large = small == a ? b : a;
+        int[] out = new int[small.length];
+        int count = 0;
+
+        if (large.length / GALLOP_RATIO > small.length) {
+            int from = 0;
+            for (int id : small) {
+                int pos = Arrays.binarySearch(large, from, large.length, id);
+                if (pos >= 0) {
+                    out[count++] = id;
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+                if (from == large.length) {
+                    break;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < small.length && j < large.length) {
+                if (small[i] < large[j]) {
+                    i++;
+                } else if (small[i] > large[j]) {
+                    j++;
+                } else {
+                    out[count++] = small[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return count == out.length ? out : Arrays.copyOf(out, count);
+    }
+
+    // 인덱스 빌드용 int 가변 배열
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        // 상품 번호는 증가하는 순서로 들어옴 -> 같은 이름 안의 중복 2-gram은 마지막 값만 비교
+        private void addOnce(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
+
+// SearchBuilder / 필터 목록을 인덱스 연산으로 바꾼 것
+final class IndexQuery {
+    // 정규화된 검색어
+    final List<String> keywords = new ArrayList<>();
+    final List<String> categories = new ArrayList<>();
+    int minPrice = Integer.MIN_VALUE;
+    int maxPrice = Integer.MAX_VALUE;
+    boolean inStockOnly;
+    // 인덱스가 없는 필터
+    final List<Predicate<Product>> residual = new ArrayList<>();
+
+    // 하위 클래스는 test를 바꿨을 수 있으므로 정확히 같은 클래스만 인덱스로
+    static IndexQuery compile(List<Predicate<Product>> filters) {
+        IndexQuery query = new IndexQuery();
+        for (Predicate<Product> filter : filters) {
+            if (filter.getClass() == KeywordFilter.class) {
+                String keyword = ((KeywordFilter) filter).getNormalizedKeyword();
+                if (keyword != null && !keyword.isEmpty()) {
+                    query.keywords.add(keyword);
+                }
+            } else if (filter.getClass() == CategoryFilter.class) {
+                String category = ((CategoryFilter) filter).getCategory();
+                if (category != null && !category.isEmpty()) {
+                    query.categories.add(category);
+                }
+            } else if (filter.getClass() == PriceRangeFilter.class) {
+                PriceRangeFilter range = (PriceRangeFilter) filter;
+                if (range.getMinPrice() != null) {
+                    query.minPrice = Math.max(query.minPrice, range.getMinPrice());
+                }
+                if (range.getMaxPrice() != null) {
+                    query.maxPrice = Math.min(query.maxPrice, range.getMaxPrice());
+                }
+            } else if (filter.getClass() == InStockFilter.class) {
+                query.inStockOnly |= ((InStockFilter) filter).isRequireInStock();
+            } else {
+                query.residual.add(filter);
+            }
+        }
+        return query;
+    }
+
+    boolean hasPriceRange() {
+        return minPrice != Integer.MIN_VALUE || maxPrice != Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,197 @@
+package org.example.cleancode.Y_2025.day33;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * 검색 실행 계획 (ProductIndex.plan이 통계로 만듦)
+ *
+ * - driving set: 가장 싸게 얻을 수 있는 상품 번호 목록 (없으면 전체 스캔)
+ * - 교집합: 후보 수 대비 싸면 다른 posting list와 교집합
+ * - 확인: 나머지 조건을 열(int[] / 비트셋) 또는 Predicate로, 비용 / (1 - 선택도) 순으로 (싸고 많이 걸러내는 것부터)
+ *   전체 스캔이면 열 조건은 선택 비트맵에 열 단위로 적용, 남은 비트에만 나머지 조건
+ * - 단계마다 예상 행 수와 실제 행 수 기록 -> explain()
+ */
+final class QueryPlan {
+
+    private final List<Product> products;
+    // null이면 전체 스캔
+    private final AccessPath driver;
+    private final List<AccessPath> intersections;
+    private final List<Check> checks;
+    // 후보마다 도는 루프용 (List / 필드 접근 없이)
+    private final IntPredicate[] tests;
+
+    private long driverActual = -1;
+    private final long[] intersectionActual;
+    private final long[] checkActual;
+
+    QueryPlan(List<Product> products, AccessPath driver, List<AccessPath> intersections, List<Check> checks) {
+        this.products = products;
+        this.driver = driver;
+        this.intersections = intersections;
+        this.checks = checks;
+        this.tests = checks.stream().map(check -> check.test).toArray(IntPredicate[]::new);
+        this.intersectionActual = new long[intersections.size()];
+        this.checkActual = new long[checks.size()];
+    }
+
+    List<Product> execute() {
+        if (driver == null) {
+            return scan();
+        }
+
+        List<Product> result = new ArrayList<>();
+        int[] ids = driver.ids.get();
+        driverActual = ids.length;
+        for (int i = 0; i < intersections.size(); i++) {
+            ids = ProductIndex.intersect(ids, intersections.get(i).ids.get());
+            intersectionActual[i] = ids.length;
+        }
+        for (int id : ids) {
+            if (passes(id, 0)) {
+                result.add(products.get(id));
+            }
+        }
+        return result;
+    }
+
+    // 전체 스캔: 앞쪽 열 조건은 비트맵으로, 통과한 비트만 상품 단위로 확인
+    private List<Product> scan() {
+        int size = products.size();
+        driverActual = size;
+        long[] selection = new long[ProductIndex.words(size)];
+        Arrays.fill(selection, -1L);
+        if (size % 64 != 0) {
+            selection[selection.length - 1] = (1L << size) - 1;
+        }
+
+        int next = 0;
+        while (next < checks.size() && checks.get(next).scan != null) {
+            checks.get(next).scan.retain(selection);
+            checkActual[next] = count(selection);
+            next++;
+        }
+
+        List<Product> result = new ArrayList<>(next == checks.size() ? (int) count(selection) : 16);
+        for (int word = 0; word < selection.length; word++) {
+            long bits = selection[word];
+            while (bits != 0) {
+                int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (passes(id, next)) {
+                    result.add(products.get(id));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static long count(long[] selection) {
+        long count = 0;
+        for (long bits : selection) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    // 계획과 단계별 예상 / 실제 행 수 (execute 이후)
+    String explain() {
+        StringBuilder plan = new StringBuilder();
+        long estimated;
+        if (driver == null) {
+            estimated = products.size();
+            line(plan, "scan", "전체 " + products.size() + "건", estimated, driverActual);
+        } else {
+            estimated = driver.rows;
+            line(plan, "driving", driver.label, estimated, driverActual);
+        }
+        double rows = estimated;
+        for (int i = 0; i < intersections.size(); i++) {
+            AccessPath path = intersections.get(i);
+            rows *= path.rows / (double) products.size();
+            line(plan, "∩", path.label, Math.round(rows), intersectionActual[i]);
+        }
+        for (int i = 0; i < checks.size(); i++) {
+            Check check = checks.get(i);
+            rows *= check.selectivity;
+            line(plan, "check", check.label + String.format(" (선택도 %.1f%%, 비용 %d)",
+                    check.selectivity * 100, check.cost), Math.round(rows), checkActual[i]);
+        }
+        return plan.toString();
+    }
+
+    private boolean passes(int id, int from) {
+        for (int i = from; i < tests.length; i++) {
+            if (!tests[i].test(id)) {
+                return false;
+            }
+            checkActual[i]++;
+        }
+        return true;
+    }
+
+    private static void line(StringBuilder plan, String step, String label, long estimated, long actual) {
+        plan.append(String.format("  %-8s %-48s est=%,11d  actual=%,11d%n", step, label, estimated, actual));
+    }
+
+    // 상품 번호 목록을 얻는 방법 (posting list, 가격 범위)
+    static final class AccessPath {
+        final String label;
+        // 정확한 행 수 또는 상한
+        final long rows;
+        // 목록을 얻는 비용 (읽는 행 수 기준)
+        final double cost;
+        final Supplier<int[]> ids;
+        // driving set / 교집합으로 쓰지 않을 때 대신 확인할 조건
+        final Check fallback;
+        // 썼을 때도 후보마다 확인할 조건 (없으면 null)
+        final Check verify;
+
+        AccessPath(String label, long rows, double cost, Supplier<int[]> ids, Check fallback, Check verify) {
+            this.label = label;
+            this.rows = rows;
+            this.cost = cost;
+            this.ids = ids;
+            this.fallback = fallback;
+            this.verify = verify;
+        }
+    }
+
+    // 선택 비트맵에서 조건을 통과하지 못한 상품의 비트를 지움
+    interface ColumnScan {
+        void retain(long[] selection);
+    }
+
+    // 후보 하나에 대한 조건 확인
+    static final class Check {
+        final String label;
+        // 통과 비율 예상 (0 ~ 1)
+        final double selectivity;
+        // 상품 하나 확인 비용 (열 조회 = 1)
+        final int cost;
+        final IntPredicate test;
+        // 열 전체를 한 번에 확인하는 방법 (없으면 null)
+        final ColumnScan scan;
+
+        Check(String label, double selectivity, int cost, IntPredicate test) {
+            this(label, selectivity, cost, test, null);
+        }
+
+        Check(String label, double selectivity, int cost, IntPredicate test, ColumnScan scan) {
+            this.label = label;
+            this.selectivity = selectivity;
+            this.cost = cost;
+            this.test = test;
+            this.scan = scan;
+        }
+
+        // 낮을수록 먼저 (싸고 많이 걸러내는 조건)
+        double rank() {
+            return cost / Math.max(1e-9, 1 - selectivity);
+        }
+    }
+}
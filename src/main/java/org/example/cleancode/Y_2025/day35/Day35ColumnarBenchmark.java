@@ -0,0 +1,89 @@
+package org.example.cleancode.Y_2025.day35;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Day 35 필터 측정: Product 객체 stream 스캔 vs 열 저장소(ProductColumns) 비트맵
+ *
+ * - 임의 상품 (가격 1천 ~ 200만원, 재고 0 ~ 20, 평점 1.0 ~ 5.0)
+ *   생성 후 목록을 섞음 -> 목록 순서와 힙 위의 객체 위치가 달라 포인터를 따라가는 실제 상황에 가깝게
+ * - 쿼리마다 두 방식의 결과가 같은지 확인 후 평균 시간 (count / 목록)
+ * 인자: 상품 수 목록 (기본값 1000000,10000000, 1,000만은 -Xmx3g 정도 필요)
+ */
+public class Day35ColumnarBenchmark {
+
+    private static final String[] NAMES = {"노트북", "마우스", "키보드", "모니터", "헤드셋", "웹캠", "스피커", "태블릿"};
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        String sizes = args.length > 0 ? args[0] : "1000000,10000000";
+        for (String size : sizes.split(",")) {
+            run(Integer.parseInt(size.trim()));
+        }
+    }
+
+    private static void run(int size) {
+        List<Product> products = products(size, new Random(35));
+        long start = System.nanoTime();
+        ProductColumns columns = new ProductColumns(products);
+        System.out.printf("%nproducts=%,d  columns build=%,.0fms%n", size, (System.nanoTime() - start) / 1_000_000.0);
+
+        // 가격 1만 ~ 10만 + 평점 4.5 이상 + 재고 있음 (선택적)
+        compare("price+rating+stock",
+                () -> products.stream()
+                        .filter(p -> p.getPrice() >= 10000 && p.getPrice() <= 100000)
+                        .filter(p -> p.getRating() >= 4.5)
+                        .filter(p -> p.getStock() > 0)
+                        .collect(Collectors.toList()),
+                () -> columns.filter().priceBetween(10000, 100000).minRating(4.5).inStock().toList());
+
+        // 평점 3.0 이상 (넓음)
+        compare("rating>=3.0",
+                () -> products.stream()
+                        .filter(p -> p.getRating() >= 3.0)
+                        .collect(Collectors.toList()),
+                () -> columns.filter().minRating(3.0).toList());
+
+        // 재고 10개 이상, 개수만
+        double objects = average(() -> products.stream().filter(p -> p.getStock() >= 10).count());
+        double bitmap = average(() -> (long) columns.filter().minStock(10).count());
+        System.out.printf("%-22s objects=%8.2fms  columns=%8.2fms  (x%.1f)%n",
+                "count stock>=10", objects, bitmap, objects / bitmap);
+    }
+
+    private static void compare(String name, Supplier<List<Product>> objects, Supplier<List<Product>> columns) {
+        List<Product> expected = objects.get();
+        List<Product> actual = columns.get();
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(name + ": 결과 불일치 " + expected.size() + " vs " + actual.size());
+        }
+        double objectMillis = average(objects::get);
+        double columnMillis = average(columns::get);
+        System.out.printf("%-22s rows=%,10d  objects=%8.2fms  columns=%8.2fms  (x%.1f)%n",
+                name, actual.size(), objectMillis, columnMillis, objectMillis / columnMillis);
+    }
+
+    private static double average(Supplier<?> query) {
+        query.get();   // 워밍업
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            query.get();
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / ROUNDS;
+    }
+
+    private static List<Product> products(int size, Random random) {
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            products.add(new Product("P" + i, NAMES[random.nextInt(NAMES.length)],
+                    1000 + random.nextInt(1_999_001), random.nextInt(21), 1.0 + random.nextInt(41) / 10.0));
+        }
+        Collections.shuffle(products, random);
+        return products;
+    }
+}
@@ -12,6 +12,10 @@ import java.util.List;
  * - 다중 정렬 조건 처리 불가
  * - 정렬 방향(오름차순/내림차순) 제어 어려움
  * - 새로운 정렬 기준 추가 시 기존 코드 수정 필요
+ *
+ * 성능 개선 (상품 100만 ~ 1,000만)
+ * - 가격/재고/평점 조건으로 거를 때 Product 객체마다 getter 호출 -> 열 저장소(ProductColumns)의 기본형 배열을 비트맵으로 필터
+ * - 정렬은 필터를 통과한 상품에만
  */
 
 public class Day35ProductSorting {
@@ -39,6 +43,15 @@ public class Day35ProductSorting {
 
         service.sortProducts(stockThenName)
                 .forEach(System.out::println);
+
+
+        System.out.println("\n=== 10만원 이하 + 평점 4.5 이상 + 재고 있음 (가격순) ===");
+        service.filter()
+                .priceBetween(0, 100000)
+                .minRating(4.5)
+                .inStock()
+                .sorted(ProductComparators.BY_PRICE)
+                .forEach(System.out::println);
     }
 
 }
@@ -174,15 +187,31 @@ class Product {
 
 class ProductService {
     private List<Product> products;
+    private final ProductColumns columns;
 
     public ProductService() {
-        products = new ArrayList<>();
+        this(defaultProducts());
+    }
+
+    public ProductService(List<Product> products) {
+        this.products = new ArrayList<>(products);
+        this.columns = new ProductColumns(this.products);
+    }
+
+    private static List<Product> defaultProducts() {
+        List<Product> products = new ArrayList<>();
         products.add(new Product("P001", "노트북", 1500000, 5, 4.5));
         products.add(new Product("P002", "마우스", 30000, 15, 4.8));
         products.add(new Product("P003", "키보드", 80000, 8, 4.2));
         products.add(new Product("P004", "모니터", 300000, 3, 4.7));
         products.add(new Product("P005", "헤드셋", 50000, 12, 4.5));
         products.add(new Product("P006", "웹캠", 150000, 7, 4.7));
+        return products;
+    }
+
+    // 가격/재고/평점 조건 (열 저장소 비트맵)
+    public ProductColumns.ColumnFilter filter() {
+        return columns.filter();
     }
 
     // 문제: 정렬 기준이 if-else로 하드코딩됨
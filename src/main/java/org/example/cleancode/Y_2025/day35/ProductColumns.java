@@ -0,0 +1,158 @@
+package org.example.cleancode.Y_2025.day35;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 상품 열 저장소 (struct-of-arrays)
+ *
+ * - Product 객체를 하나씩 따라가며 getter를 부르는 대신 필드별 기본형 배열
+ *   가격 int[], 재고 int[], 평점 double[], 재고 있음 비트셋 long[]
+ * - 필터 = 선택 비트맵 (상품 번호 id -> selection[id >>> 6]의 id번째 비트)
+ *   상품 64개씩 분기 없이 통과 비트를 만들어 AND, 이미 0인 워드는 건너뜀 (앞 조건이 걸러낼수록 빨라짐)
+ * - 정렬은 남은 상품에만 (Comparator 호출 수 = 선택된 수 기준)
+ * - 만든 뒤에는 바뀌지 않음 (상품 목록이 바뀌면 다시 생성)
+ */
+class ProductColumns {
+
+    private final List<Product> products;
+    private final int[] prices;
+    private final int[] stocks;
+    private final double[] ratings;
+    private final long[] inStockBits;
+
+    ProductColumns(List<Product> products) {
+        int size = products.size();
+        this.products = new ArrayList<>(products);
+        this.prices = new int[size];
+        this.stocks = new int[size];
+        this.ratings = new double[size];
+        this.inStockBits = new long[words(size)];
+        for (int id = 0; id < size; id++) {
+            Product product = products.get(id);
+            prices[id] = product.getPrice();
+            stocks[id] = product.getStock();
+            ratings[id] = product.getRating();
+            if (product.getStock() > 0) {
+                inStockBits[id >>> 6] |= 1L << id;
+            }
+        }
+    }
+
+    int size() {
+        return prices.length;
+    }
+
+    ColumnFilter filter() {
+        return new ColumnFilter(this);
+    }
+
+    private static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    // 조건을 넣는 즉시 선택 비트맵에 적용
+    static class ColumnFilter {
+        private final ProductColumns columns;
+        private final long[] selection;
+
+        private ColumnFilter(ProductColumns columns) {
+            this.columns = columns;
+            int size = columns.size();
+            this.selection = new long[words(size)];
+            Arrays.fill(selection, -1L);
+            if (size % 64 != 0) {
+                selection[selection.length - 1] = (1L << size) - 1;
+            }
+        }
+
+        public ColumnFilter priceBetween(int minPrice, int maxPrice) {
+            int[] prices = columns.prices;
+            for (int word = 0; word < selection.length; word++) {
+                if (selection[word] == 0) {
+                    continue;
+                }
+                int base = word << 6;
+                int end = Math.min(64, prices.length - base);
+                long keep = 0;
+                for (int bit = 0; bit < end; bit++) {
+                    int price = prices[base + bit];
+                    keep |= (price >= minPrice & price <= maxPrice ? 1L : 0L) << bit;
+                }
+                selection[word] &= keep;
+            }
+            return this;
+        }
+
+        public ColumnFilter minStock(int minStock) {
+            int[] stocks = columns.stocks;
+            for (int word = 0; word < selection.length; word++) {
+                if (selection[word] == 0) {
+                    continue;
+                }
+                int base = word << 6;
+                int end = Math.min(64, stocks.length - base);
+                long keep = 0;
+                for (int bit = 0; bit < end; bit++) {
+                    keep |= (stocks[base + bit] >= minStock ? 1L : 0L) << bit;
+                }
+                selection[word] &= keep;
+            }
+            return this;
+        }
+
+        public ColumnFilter minRating(double minRating) {
+            double[] ratings = columns.ratings;
+            for (int word = 0; word < selection.length; word++) {
+                if (selection[word] == 0) {
+                    continue;
+                }
+                int base = word << 6;
+                int end = Math.min(64, ratings.length - base);
+                long keep = 0;
+                for (int bit = 0; bit < end; bit++) {
+                    keep |= (ratings[base + bit] >= minRating ? 1L : 0L) << bit;
+                }
+                selection[word] &= keep;
+            }
+            return this;
+        }
+
+        // 재고 비트셋과 워드 단위 AND
+        public ColumnFilter inStock() {
+            for (int word = 0; word < selection.length; word++) {
+                selection[word] &= columns.inStockBits[word];
+            }
+            return this;
+        }
+
+        public int count() {
+            int count = 0;
+            for (long bits : selection) {
+                count += Long.bitCount(bits);
+            }
+            return count;
+        }
+
+        // 원래 순서 그대로
+        public List<Product> toList() {
+            List<Product> result = new ArrayList<>(count());
+            for (int word = 0; word < selection.length; word++) {
+                long bits = selection[word];
+                while (bits != 0) {
+                    result.add(columns.products.get((word << 6) + Long.numberOfTrailingZeros(bits)));
+                    bits &= bits - 1;
+                }
+            }
+            return result;
+        }
+
+        public List<Product> sorted(Comparator<Product> comparator) {
+            List<Product> result = toList();
+            result.sort(comparator);
+            return result;
+        }
+    }
+}
@@ -2,6 +2,12 @@ package org.example.cleancode.Y_2025.day41;
 
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Day 41: 트랜잭션 관리 시스템
@@ -12,6 +18,11 @@ import java.util.*;
  * - 중첩 트랜잭션 미지원
  * - 격리 수준 제어 불가
  * - 트랜잭션 타임아웃 없음
+ *
+ * 성능 개선:
+ * - 시작 시 전체 계좌 복사 대신 수정한 키만 undo 로그에 기록 -> 시작/롤백 비용 = 수정한 키 수
+ * - 타임아웃은 트랜잭션마다 Timer 스레드를 만들지 않고 공용 타이머 휠 하나로 처리
+ * - 동시 이체: 스레드별 트랜잭션 스택 + 계좌 스트라이프 락을 정해진 순서로 획득 (교착 없음)
  */
 public class Day41TransactionSystem {
 
@@ -72,12 +83,14 @@ interface Transaction {
 }
 
 // 기본 구현체
+// 시작 시 전체 복사 대신, 처음 수정하는 키의 이전 값만 undo 로그에 기록 -> 시작/롤백 비용 = 수정한 키 수
 class BankTransaction implements Transaction {
     private TransactionStatus status;
-    private Map<String, Integer> snapshot;
-    private Map<String, Integer> accounts;
+    // 키별 트랜잭션 시작 전 값 (null = 원래 없던 키)
+    private final Map<String, Integer> undoLog = new LinkedHashMap<>();
+    private final Map<String, Integer> accounts;
 
-    private Timer timeoutTimer;
+    private TimerWheel.Timeout timeout;
     private long startTime;
 
     public BankTransaction(Map<String, Integer> accounts) {
@@ -86,25 +99,25 @@ class BankTransaction implements Transaction {
     
     // 타임아웃 지원 생성자
     public BankTransaction(Map<String, Integer> accounts, long timeoutMillis) {
+        this(accounts, timeoutMillis, TimerWheel.shared());
+    }
+
+    // 타임아웃은 트랜잭션마다 스레드를 만들지 않고 공용 타이머 휠에 등록
+    public BankTransaction(Map<String, Integer> accounts, long timeoutMillis, TimerWheel timerWheel) {
         this.status = TransactionStatus.ACTIVE;
         this.accounts = accounts;
-        this.snapshot = new HashMap<>(accounts);
         this.startTime = System.currentTimeMillis();
 
         System.out.println("트랜잭션 스타트");
 
         if(timeoutMillis > 0) {
-            this.timeoutTimer = new Timer(true);
-            timeoutTimer.schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    if (isActive()) {
-                        System.out.println("⏰ 트랜잭션 타임아웃! (" + timeoutMillis + "ms)");
-                        try {
-                            rollback();
-                        } catch (Exception e) {
-                            System.out.println("타임아웃 롤백 실패: " + e.getMessage());
-                        }
+            this.timeout = timerWheel.schedule(() -> {
+                if (isActive()) {
+                    System.out.println("⏰ 트랜잭션 타임아웃! (" + timeoutMillis + "ms)");
+                    try {
+                        rollback();
+                    } catch (Exception e) {
+                        System.out.println("타임아웃 롤백 실패: " + e.getMessage());
                     }
                 }
             }, timeoutMillis);
@@ -113,38 +126,69 @@ class BankTransaction implements Transaction {
         }
     }
 
+    // 트랜잭션 안에서의 쓰기 (처음 수정하는 키면 이전 값 기록)
+    // 타임아웃 롤백과 겹치지 않도록 동기화, 이미 끝난 트랜잭션이면 쓰기 거부
+    public synchronized void write(String key, Integer value) {
+        if (!isActive()) {
+            throw new IllegalStateException("트랜잭션이 활성 상태가 아닙니다");
+        }
+        if (!undoLog.containsKey(key)) {
+            undoLog.put(key, accounts.get(key));
+        }
+        if (value == null) {
+            accounts.remove(key);
+        } else {
+            accounts.put(key, value);
+        }
+    }
+
+    // 내부 트랜잭션 커밋 시 호출 -> 바깥 트랜잭션이 롤백되면 내부 변경도 함께 되돌림
+    // (바깥이 이미 기록한 키는 바깥의 이전 값이 더 오래된 값이므로 유지)
+    public synchronized void inheritUndo(BankTransaction committedChild) {
+        for (Map.Entry<String, Integer> entry : committedChild.undoLog.entrySet()) {
+            if (!undoLog.containsKey(entry.getKey())) {
+                undoLog.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
     @Override
-    public void commit() {
+    public synchronized void commit() {
         if(!isActive()) {
             throw new IllegalStateException("트랜잭션이 활성 상태가 아닙니다");
         }
 
-        if (timeoutTimer != null) {
-            timeoutTimer.cancel();
+        if (timeout != null) {
+            timeout.cancel();
         }
 
 
         status = TransactionStatus.COMMITTED;
-        snapshot = null;
 
         long elapsed = System.currentTimeMillis() - startTime;
         System.out.println("트랜잭션 커밋됨 (소요시간: " + elapsed + "ms)");
     }
 
     @Override
-    public void rollback() {
+    public synchronized void rollback() {
         if (!isActive()) {
             throw new IllegalStateException("트랜잭션이 활성 상태가 아닙니다");
         }
 
-        if (timeoutTimer != null) {
-            timeoutTimer.cancel();
+        if (timeout != null) {
+            timeout.cancel();
         }
 
 
-        // 스냅샷으로 복원
-        accounts.clear();
-        accounts.putAll(snapshot);
+        // 수정한 키만 이전 값으로 복원
+        for (Map.Entry<String, Integer> entry : undoLog.entrySet()) {
+            if (entry.getValue() == null) {
+                accounts.remove(entry.getKey());
+            } else {
+                accounts.put(entry.getKey(), entry.getValue());
+            }
+        }
+        undoLog.clear();
 
         status = TransactionStatus.ROLLED_BACK;
 
@@ -153,20 +197,122 @@ class BankTransaction implements Transaction {
     }
 
     @Override
-    public boolean isActive() {
+    public synchronized boolean isActive() {
         return status == TransactionStatus.ACTIVE;
     }
 
     @Override
-    public TransactionStatus getStatus() {
+    public synchronized TransactionStatus getStatus() {
         return status;
     }
 }
 
+// 공용 타이머 휠 (해시드 타이밍 휠)
+// - 스레드 하나가 tick마다 슬롯 하나를 돌며 만료된 작업 실행
+// - 등록 O(1) (대기열에 넣기), 취소 O(1) (표시만, 다음 방문 때 제거)
+// - 정밀도는 tick 단위 (트랜잭션 타임아웃 용도로 충분)
+// 만료 작업은 휠 스레드에서 실행되므로 짧게 끝나야 함
+class TimerWheel {
+    private static final TimerWheel SHARED = new TimerWheel(10, 512);
+
+    private final long tickMillis;
+    private final int mask;
+    private final List<List<Timeout>> wheel = new ArrayList<>();
+    // 다른 스레드가 등록한 작업 (휠 스레드가 tick마다 슬롯으로 옮김)
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private long currentTick;
+
+    public TimerWheel(long tickMillis, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("휠 크기는 2의 거듭제곱이어야 합니다: " + wheelSize);
+        }
+        this.tickMillis = tickMillis;
+        this.mask = wheelSize - 1;
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new ArrayList<>());
+        }
+
+        Thread worker = new Thread(this::run, "timer-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public static TimerWheel shared() {
+        return SHARED;
+    }
+
+    public Timeout schedule(Runnable task, long delayMillis) {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        long deadlineTick = (elapsedMillis + delayMillis + tickMillis - 1) / tickMillis;
+        Timeout timeout = new Timeout(task, deadlineTick);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        while (true) {
+            long nextTickNanos = startNanos + TimeUnit.MILLISECONDS.toNanos((currentTick + 1) * tickMillis);
+            long sleepNanos = nextTickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(sleepNanos);
+                continue;
+            }
+            currentTick++;
+            transferPending();
+            expire(wheel.get((int) (currentTick & mask)));
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (!timeout.cancelled) {
+                long tick = Math.max(timeout.deadlineTick, currentTick);
+                wheel.get((int) (tick & mask)).add(timeout);
+            }
+        }
+    }
+
+    // 같은 슬롯에 다음 바퀴 작업도 섞여 있으므로 deadline이 지난 것만 실행
+    private void expire(List<Timeout> slot) {
+        Iterator<Timeout> iterator = slot.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.deadlineTick <= currentTick) {
+                iterator.remove();
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    System.out.println("타이머 작업 실패: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    static final class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
+
 // 트랜잭션 관리 매니저(BankService에서 사용)
 class TransactionManager {
-    // 다중 트랜잭션을 위한 스택 객체 생성 (옆으로 긴 원통)
-    private Stack<Transaction> transactionStack = new Stack<>();
+    // 다중 트랜잭션을 위한 스택 (옆으로 긴 원통)
+    // 스레드마다 자기 스택을 가짐 -> 여러 스레드가 동시에 트랜잭션을 열어도 서로 섞이지 않음
+    private final ThreadLocal<Deque<BankTransaction>> transactionStacks = ThreadLocal.withInitial(ArrayDeque::new);
     private Map<String, Integer> accounts;
     private long defaultTimeout = 0;  // 기본 타임아웃
 
@@ -184,28 +330,34 @@ class TransactionManager {
     }
 
     public void beginTransaction(long timeoutMillis) {
-        Transaction newTransaction = new BankTransaction(accounts, timeoutMillis);
+        Deque<BankTransaction> transactionStack = transactionStacks.get();
+        BankTransaction newTransaction = new BankTransaction(accounts, timeoutMillis);
         transactionStack.push(newTransaction);
 
         System.out.println("📚 트랜잭션 레벨: " + transactionStack.size());
     }
 
     public void commit() {
+        Deque<BankTransaction> transactionStack = transactionStacks.get();
         if (transactionStack.isEmpty()) {
             throw new IllegalStateException("활성 트랜잭션이 없습니다");
         }
 
-        Transaction transaction = transactionStack.pop();
+        BankTransaction transaction = transactionStack.pop();
 
         if(!transaction.isActive()) {
             throw new IllegalStateException("트랜잭션이 활성 상태가 아닙니다");
         }
 
         transaction.commit();
+        if (!transactionStack.isEmpty()) {
+            transactionStack.peek().inheritUndo(transaction);
+        }
         System.out.println("📚 남은 트랜잭션: " + transactionStack.size());
     }
 
     public void rollback() {
+        Deque<BankTransaction> transactionStack = transactionStacks.get();
         if (transactionStack.isEmpty()) {
             throw new IllegalStateException("활성 트랜잭션이 없습니다");
         }
@@ -221,6 +373,7 @@ class TransactionManager {
     }
 
     public Transaction getCurrentTransaction() {
+        Deque<BankTransaction> transactionStack = transactionStacks.get();
         if(transactionStack.isEmpty()) {
             return null;
         }
@@ -228,6 +381,16 @@ class TransactionManager {
         return transactionStack.peek();
     }
 
+    // 계좌 쓰기 (트랜잭션 중이면 undo 로그에 기록 후 반영)
+    public void write(String accountId, int balance) {
+        Deque<BankTransaction> transactionStack = transactionStacks.get();
+        if (transactionStack.isEmpty()) {
+            accounts.put(accountId, balance);
+            return;
+        }
+        transactionStack.peek().write(accountId, balance);
+    }
+
     // 기존 메서드 (타임아웃이 없는)
     public void executeInTransaction(Runnable operation) {
         executeInTransaction(operation, defaultTimeout);
@@ -249,16 +412,25 @@ class TransactionManager {
 }
 
 
+// 여러 스레드에서 동시에 이체 가능
+// - 계좌 단위 잠금 (계좌 ID 해시로 나눈 스트라이프 락) -> 서로 다른 계좌끼리의 이체는 병렬
+// - 두 계좌 락은 항상 스트라이프 번호 순으로 획득 -> A→B, B→A 동시 이체에도 교착 없음
 class BankService {
-    private Map<String, Integer> accounts = new HashMap<>();
-    private TransactionManager transactionManager;
+    private final Map<String, Integer> accounts = new ConcurrentHashMap<>();
+    private final TransactionManager transactionManager;
+    private final StripedLocks accountLocks;
 
     public BankService() {
+        this(1024);
+    }
+
+    public BankService(int lockStripes) {
         this.transactionManager = new TransactionManager(accounts);
+        this.accountLocks = new StripedLocks(lockStripes);
     }
 
     public void createAccount(String accountId, int initialBalance) {
-        accounts.put(accountId, initialBalance);
+        transactionManager.write(accountId, initialBalance);
     }
 
     public int getBalance(String accountId) {
@@ -266,35 +438,35 @@ class BankService {
     }
 
     public void transfer(String fromId, String toId, int amount) {
-        transactionManager.executeInTransaction(() -> {
+        accountLocks.runLocked(fromId, toId, () -> transactionManager.executeInTransaction(() -> {
             int fromBalance = accounts.get(fromId);
             if(fromBalance < amount) {
                 throw new RuntimeException("잔액 부족");
             }
-            accounts.put(fromId, fromBalance - amount);
+            transactionManager.write(fromId, fromBalance - amount);
 
-            if (Math.random() < 0.3) {
+            if (ThreadLocalRandom.current().nextDouble() < 0.3) {
                 throw new RuntimeException("네트워크 오류");
             }
 
             int toBalance = accounts.get(toId);
-            accounts.put(toId, toBalance + amount);
+            transactionManager.write(toId, toBalance + amount);
 
             System.out.println("✓ 이체 완료: " + amount + "원");
-        });
+        }));
     }
     
     // 타임아웃 테스트용 예제
     public void slowTransfer(String fromId, String toId, int amount,
                              long sleepMillis, long timeoutMillis) {
-        transactionManager.executeInTransaction(() -> {
+        accountLocks.runLocked(fromId, toId, () -> transactionManager.executeInTransaction(() -> {
             System.out.println("💤 작업 시작 (예상 소요시간: " + sleepMillis + "ms)");
 
             int fromBalance = accounts.get(fromId);
             if(fromBalance < amount) {
                 throw new RuntimeException("잔액 부족");
             }
-            accounts.put(fromId, fromBalance - amount);
+            transactionManager.write(fromId, fromBalance - amount);
 
             // 인위적으로 지연
             try {
@@ -305,10 +477,10 @@ class BankService {
             }
 
             int toBalance = accounts.get(toId);
-            accounts.put(toId, toBalance + amount);
+            transactionManager.write(toId, toBalance + amount);
 
             System.out.println("✓ 이체 완료: " + amount + "원");
-        }, timeoutMillis);
+        }, timeoutMillis));
     }
 
     
@@ -318,7 +490,7 @@ class BankService {
         transactionManager.executeInTransaction(() -> {
             System.out.println("📝 로그 기록: " + message);
 
-            if(Math.random() < 0.5) {
+            if(ThreadLocalRandom.current().nextDouble() < 0.5) {
                 throw new RuntimeException("로그 저장 실패");
             }
         });
@@ -326,7 +498,7 @@ class BankService {
 
     // 중첩 트랜잭션 테스트 메서드
     public void transferWithLog(String fromId, String toId, int amount) {
-        transactionManager.executeInTransaction(()-> {
+        accountLocks.runLocked(fromId, toId, () -> transactionManager.executeInTransaction(()-> {
             System.out.println("🔵 외부 트랜잭션 시작");
 
             int formBalance = accounts.get(fromId);
@@ -334,10 +506,10 @@ class BankService {
                 throw new RuntimeException("잔액 부족");
             }
 
-            accounts.put(fromId, formBalance - amount);
+            transactionManager.write(fromId, formBalance - amount);
 
             int toBalance = accounts.get(toId);
-            accounts.put(toId, toBalance + amount);
+            transactionManager.write(toId, toBalance + amount);
 
             System.out.println("✓ 이체 완료: " + amount + "원");
 
@@ -350,7 +522,53 @@ class BankService {
             }
 
             System.out.println("🔵 외부 트랜잭션 완료");
-        });
+        }));
+    }
+}
+
+// 키 해시로 나눈 스트라이프 락 (계좌 수와 무관하게 락 객체 수 고정)
+class StripedLocks {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public StripedLocks(int stripes) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("스트라이프 수는 2의 거듭제곱이어야 합니다: " + stripes);
+        }
+        this.stripes = new ReentrantLock[stripes];
+        this.mask = stripes - 1;
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // 두 키의 락을 스트라이프 번호 순(정해진 순서)으로 잡고 실행, 같은 스트라이프면 한 번만
+    public void runLocked(String first, String second, Runnable action) {
+        int a = stripeOf(first);
+        int b = stripeOf(second);
+        ReentrantLock lower = stripes[Math.min(a, b)];
+        ReentrantLock upper = stripes[Math.max(a, b)];
+
+        lower.lock();
+        try {
+            if (upper != lower) {
+                upper.lock();
+            }
+            try {
+                action.run();
+            } finally {
+                if (upper != lower) {
+                    upper.unlock();
+                }
+            }
+        } finally {
+            lower.unlock();
+        }
+    }
+
+    private int stripeOf(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
     }
 }
 
@@ -0,0 +1,127 @@
+package org.example.cleancode.Y_2025.day41;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Day 41 동시 이체 처리량 측정
+ *
+ * - 스레드 수(1 ~ CPU 코어 수)와 계좌 선택 분포(균등 / Zipf)를 바꿔 가며 이체
+ * - Zipf 지수가 클수록 소수 인기 계좌에 몰림 -> 같은 락 경합이 늘어 확장성이 떨어지는 정도 비교
+ * - 끝난 뒤 전체 잔액 합이 처음과 같은지 검증 (롤백 포함 돈이 새거나 생기지 않음)
+ * - 인자: 스레드당 이체 수 (기본값 100,000), 최대 스레드 수 (기본값 = CPU 코어 수)
+ */
+public class Day41TransferBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final int INITIAL_BALANCE = 1_000_000;
+    private static final double[] ZIPF_EXPONENTS = {0, 0.8, 1.2};   // 0 = 균등
+
+    public static void main(String[] args) throws Exception {
+        int perThread = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : cores;
+        PrintStream console = System.out;
+
+        console.printf("accounts=%,d, transfersPerThread=%,d, cores=%d%n", ACCOUNTS, perThread, cores);
+        // 트랜잭션 건별 로그는 측정에서 제외 (PrintStream 내부 락 경합도 피하도록 출력 메서드 자체를 비움)
+        System.setOut(new SilentPrintStream());
+        try {
+            for (double exponent : ZIPF_EXPONENTS) {
+                AccountPicker picker = new AccountPicker(ACCOUNTS, exponent);
+                for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                    console.println(run(picker, threads, perThread));
+                }
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static String run(AccountPicker picker, int threads, int perThread) throws Exception {
+        BankService service = new BankService();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            service.createAccount(accountId(i), INITIAL_BALANCE);
+        }
+
+        LongAdder rolledBack = new LongAdder();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < perThread; i++) {
+                    int from = picker.next(random);
+                    int to = picker.next(random);
+                    if (from == to) {
+                        to = (to + 1) % ACCOUNTS;
+                    }
+                    try {
+                        service.transfer(accountId(from), accountId(to), 1 + random.nextInt(100));
+                    } catch (RuntimeException e) {
+                        rolledBack.increment();   // 잔액 부족 / 네트워크 오류 -> 롤백
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        long total = 0;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            total += service.getBalance(accountId(i));
+        }
+
+        double transfersPerSec = (double) perThread * threads / (elapsedNanos / 1_000_000_000.0);
+        return String.format("%-9s threads=%2d  transfers/s=%,12.0f  rolledBack=%,9d  consistent=%s",
+                picker, threads, transfersPerSec, rolledBack.sum(),
+                total == (long) ACCOUNTS * INITIAL_BALANCE);
+    }
+
+    private static String accountId(int i) {
+        return "ACC-" + i;
+    }
+
+    // 계좌 번호 선택 (Zipf: 순위 k의 확률 ∝ 1 / k^s, 누적 분포 이분 탐색)
+    private static final class AccountPicker {
+        private final double exponent;
+        private final double[] cumulative;
+
+        private AccountPicker(int accounts, double exponent) {
+            this.exponent = exponent;
+            this.cumulative = new double[accounts];
+            double sum = 0;
+            for (int k = 0; k < accounts; k++) {
+                sum += 1.0 / Math.pow(k + 1, exponent);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < accounts; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        private int next(ThreadLocalRandom random) {
+            if (exponent == 0) {
+                return random.nextInt(cumulative.length);
+            }
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+        }
+
+        @Override
+        public String toString() {
+            return exponent == 0 ? "uniform" : "zipf(" + exponent + ")";
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.cleancode.Y_2025.day41;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * 아무것도 출력하지 않는 PrintStream (벤치마크 중 건별 로그 출력 제외용, Day41 / Day45 / Day47)
+ *
+ * - nullOutputStream을 감싼 PrintStream도 println마다 내부 락을 잡음 -> 여러 스레드가 찍으면 락 경합을 측정하게 됨
+ * - 출력 메서드 자체를 비워 락/문자열 인코딩/포맷 비용 없이 버림
+ */
+public final class SilentPrintStream extends PrintStream {
+
+    public SilentPrintStream() {
+        super(OutputStream.nullOutputStream());
+    }
+
+    @Override
+    public void println() {
+    }
+
+    @Override
+    public void println(String x) {
+    }
+
+    @Override
+    public void println(Object x) {
+    }
+
+    @Override
+    public void println(boolean x) {
+    }
+
+    @Override
+    public void println(char x) {
+    }
+
+    @Override
+    public void println(int x) {
+    }
+
+    @Override
+    public void println(long x) {
+    }
+
+    @Override
+    public void println(double x) {
+    }
+
+    @Override
+    public void println(char[] x) {
+    }
+
+    @Override
+    public void print(String s) {
+    }
+
+    @Override
+    public void print(Object obj) {
+    }
+
+    @Override
+    public PrintStream printf(String format, Object... args) {
+        return this;
+    }
+
+    @Override
+    public PrintStream printf(Locale l, String format, Object... args) {
+        return this;
+    }
+
+    @Override
+    public PrintStream format(String format, Object... args) {
+        return this;
+    }
+
+    @Override
+    public PrintStream format(Locale l, String format, Object... args) {
+        return this;
+    }
+
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+    }
+
+    @Override
+    public void flush() {
+    }
+}
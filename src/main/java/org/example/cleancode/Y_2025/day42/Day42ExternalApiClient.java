@@ -2,6 +2,10 @@ package org.example.cleancode.Y_2025.day42;
 
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Day 42: 외부 API 호출 시스템
@@ -12,6 +16,10 @@ import java.util.concurrent.Callable;
  * - 복구 지연 감지 불가
  * - 실패율 추적 없음
  * - Half-Open 상태 미지원
+ *
+ * 성능/동시성 개선:
+ * - 상태 전이는 long 하나를 CAS로만 변경 (락 없음), HALF_OPEN 시험 호출은 정확히 halfOpenMaxCalls건
+ * - 연속 실패 대신 시간 버킷 링 버퍼로 최근 구간 실패율 / 느린 호출 비율 판정
  */
 public class Day42ExternalApiClient {
 
@@ -58,12 +66,39 @@ class CircuitBreakerConfig {
     private final long timeoutMillis;
     private final int halfOpenMaxCalls;
 
+    // 시간 창 기반 판정 (최근 windowMillis 동안의 실패율 / 느린 호출 비율)
+    private final int failureRateThreshold;       // % (이상이면 OPEN)
+    private final int slowCallRateThreshold;      // % (이상이면 OPEN)
+    private final long slowCallDurationMillis;    // 이 시간 이상 걸리면 느린 호출
+    private final long windowMillis;
+    private final int windowBuckets;
+
+    // 기존 설정: 최소 failureThreshold건 이상 호출됐을 때 실패율 50% 이상이면 OPEN (10초 창, 느린 호출 판정 없음)
     public CircuitBreakerConfig(int failureThreshold, long timeoutMillis, int halfOpenMaxCalls) {
+        this(failureThreshold, timeoutMillis, halfOpenMaxCalls, 50, 100, Long.MAX_VALUE, 10_000, 10);
+    }
+
+    public CircuitBreakerConfig(int failureThreshold, long timeoutMillis, int halfOpenMaxCalls,
+                                int failureRateThreshold, int slowCallRateThreshold,
+                                long slowCallDurationMillis, long windowMillis, int windowBuckets) {
+        if (halfOpenMaxCalls < 1 || halfOpenMaxCalls > CircuitBreaker.MAX_HALF_OPEN_CALLS) {
+            throw new IllegalArgumentException("halfOpenMaxCalls는 1 ~ "
+                    + CircuitBreaker.MAX_HALF_OPEN_CALLS + " 사이여야 합니다: " + halfOpenMaxCalls);
+        }
+        if (windowBuckets < 1 || windowMillis < windowBuckets) {
+            throw new IllegalArgumentException("잘못된 시간 창 설정: " + windowMillis + "ms / " + windowBuckets);
+        }
         this.failureThreshold = failureThreshold;
         this.timeoutMillis = timeoutMillis;
         this.halfOpenMaxCalls = halfOpenMaxCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationMillis = slowCallDurationMillis;
+        this.windowMillis = windowMillis;
+        this.windowBuckets = windowBuckets;
     }
 
+    // 판정에 필요한 최소 호출 수 (창 안 호출이 이보다 적으면 OPEN 하지 않음)
     public int getFailureThreshold() {
         return failureThreshold;
     }
@@ -75,110 +110,353 @@ class CircuitBreakerConfig {
     public int getHalfOpenMaxCalls() {
         return halfOpenMaxCalls;
     }
+
+    public int getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public int getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public long getSlowCallDurationMillis() {
+        return slowCallDurationMillis;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getWindowBuckets() {
+        return windowBuckets;
+    }
 }
 
-// 서킷 브레이커 로직
+// 서킷 브레이커 로직 (락 없이 여러 스레드에서 동시 호출 가능)
+// 상태는 long 하나(stateWord)에 묶어 CAS로만 바꿈:
+//   [상태:2][HALF_OPEN 성공 수:10][HALF_OPEN 허가 수:10][상태 진입 시각(ms):42]
+// - OPEN -> HALF_OPEN 전이, 시험 호출 허가, 성공 집계가 모두 한 번의 CAS -> 시험 호출은 정확히 halfOpenMaxCalls건
+// - 진입 시각은 세대 구분에도 사용 -> 이전 HALF_OPEN 회차의 늦은 결과는 무시
+// - 허가를 모두 내준 HALF_OPEN 회차가 timeoutMillis 안에 끝나지 않으면 새 회차로 다시 시험 (멈춘 시험 호출에 갇히지 않음)
+// - CLOSED 상태 결과는 시간 버킷 링 버퍼(SlidingTimeWindow)에 기록, 실패율/느린 호출 비율로 OPEN 판정
 class CircuitBreaker {
+    static final int MAX_HALF_OPEN_CALLS = (1 << 10) - 1;
+
+    private static final int TIME_BITS = 42;
+    private static final int COUNT_BITS = 10;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int PERMITS_SHIFT = TIME_BITS;
+    private static final int SUCCESSES_SHIFT = TIME_BITS + COUNT_BITS;
+    private static final int STATE_SHIFT = TIME_BITS + 2 * COUNT_BITS;
+    private static final CircuitState[] STATES = CircuitState.values();
+
     private final CircuitBreakerConfig config;
-    private CircuitState state;
-    private int failureCount;
-    private int successCount;
-    private long lastFailureTime;
+    private final long baseNanos = System.nanoTime();
+    private final AtomicLong stateWord;
+    // CLOSED로 돌아올 때마다 새 창으로 교체 (이전 장애 기록 제거)
+    private volatile SlidingTimeWindow window;
 
     public CircuitBreaker(CircuitBreakerConfig config) {
         this.config = config;
-        this.state = CircuitState.CLOSED;
-        this.failureCount = 0;
-        this.successCount = 0;
-        this.lastFailureTime = 0;
+        this.stateWord = new AtomicLong(pack(CircuitState.CLOSED, 0, 0, 0));
+        this.window = newWindow();
     }
 
     public <T> T call(Callable<T> operation) throws Exception {
         
-        // 1단계 현재 상태에서 호출 가능 여부
-        if(state == CircuitState.OPEN) {
-            // OPEN 상태 -> 타임아웃 지났는지 확인
-            if(shouldAttemptReset()) {
-                transitionToHalfOpen();
-            } else {
-                // 아직 타임아웃 안지났음 -> 즉시 예외처리
-                throw new CircuitBreakerOpenException(
-                        "서킷 브레이커 OPEN 상태 (복구 대기 중)"
-                );
-            }
-        }
+        // 1단계 현재 상태에서 호출 가능 여부 (허가 시점의 상태 값을 결과 처리까지 가져감)
+        long permit = acquirePermission();
 
-        // 2단계 API 호출 시도
+        // 2단계 API 호출 시도 (Error 포함 어떤 종료든 결과를 기록해야 HALF_OPEN 허가가 새지 않음)
+        long start = System.nanoTime();
+        boolean succeeded = false;
         try {
             T result = operation.call();
-            onSuccess();
+            succeeded = true;
             return result;
-        } catch (Exception e) {
-            // 실패 처리
-            onFailure();
-            throw e;
+        } finally {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (succeeded) {
+                onSuccess(permit, elapsedMillis);
+            } else {
+                onFailure(permit);
+            }
+        }
+    }
+
+    private long acquirePermission() throws CircuitBreakerOpenException {
+        while (true) {
+            long word = stateWord.get();
+            switch (stateOf(word)) {
+                case CLOSED:
+                    return word;
+                case OPEN:
+                    // OPEN 상태 -> 타임아웃 지났는지 확인
+                    if (now() - timeOf(word) < config.getTimeoutMillis()) {
+                        // 아직 타임아웃 안지났음 -> 즉시 예외처리
+                        throw new CircuitBreakerOpenException(
+                                "서킷 브레이커 OPEN 상태 (복구 대기 중)"
+                        );
+                    }
+                    if (stateWord.compareAndSet(word, pack(CircuitState.HALF_OPEN, 0, 0, now()))) {
+                        System.out.println("🟡 OPEN → HALF_OPEN (복구 테스트)");
+                    }
+                    break;   // 다시 읽어서 HALF_OPEN 허가 시도
+                case HALF_OPEN:
+                    if (permitsOf(word) >= config.getHalfOpenMaxCalls()) {
+                        if (now() - timeOf(word) < config.getTimeoutMillis()) {
+                            throw new CircuitBreakerOpenException(
+                                    "서킷 브레이커 HALF_OPEN 상태 (시험 호출 " + config.getHalfOpenMaxCalls() + "건 진행 중)"
+                            );
+                        }
+                        // 시험 호출 결과가 timeoutMillis 동안 오지 않음 (호출이 멈춤) -> 새 회차로 다시 시험
+                        // 진입 시각이 바뀌므로 이전 회차의 늦은 결과는 무시됨
+                        if (stateWord.compareAndSet(word, pack(CircuitState.HALF_OPEN, 0, 0, now()))) {
+                            System.out.println("🟡 HALF_OPEN 회차 만료 → 다시 시험");
+                        }
+                        break;
+                    }
+                    long permitted = word + (1L << PERMITS_SHIFT);
+                    if (stateWord.compareAndSet(word, permitted)) {
+                        return permitted;
+                    }
+                    break;
+            }
         }
     }
 
     // 성공 시 처리
-    private void onSuccess() {
-        if (state == CircuitState.HALF_OPEN) {
-            successCount++;
-            System.out.println("✓ HALF_OPEN 성공 (" + successCount + "회)");
+    private void onSuccess(long permit, long elapsedMillis) {
+        boolean slow = elapsedMillis >= config.getSlowCallDurationMillis();
+
+        if (stateOf(permit) == CircuitState.HALF_OPEN) {
+            if (slow) {
+                // 시험 호출이 느리면 아직 복구되지 않은 것으로 봄
+                reopen(permit, "HALF_OPEN 느린 호출 (" + elapsedMillis + "ms)");
+                return;
+            }
+            onHalfOpenSuccess(permit);
+            return;
+        }
 
-            if(successCount >= config.getHalfOpenMaxCalls()) {
-                transitionToClosed();
+        SlidingTimeWindow current = window;
+        current.record(now(), false, slow);
+        if (slow) {
+            openIfThresholdExceeded(current);
+        }
+    }
+
+    private void onHalfOpenSuccess(long permit) {
+        while (true) {
+            long word = stateWord.get();
+            if (!sameHalfOpenRound(word, permit)) {
+                return;   // 이미 다른 결과로 상태가 바뀜
+            }
+            int successes = successesOf(word) + 1;
+
+            // 출력은 CAS 성공 후에만 (재시도마다 중복 출력하지 않도록)
+            if (successes >= config.getHalfOpenMaxCalls()) {
+                window = newWindow();
+                if (stateWord.compareAndSet(word, pack(CircuitState.CLOSED, 0, 0, now()))) {
+                    System.out.println("✓ HALF_OPEN 성공 (" + successes + "회)");
+                    System.out.println("🟢 HALF_OPEN → CLOSED (복구 완료)");
+                    return;
+                }
+            } else if (stateWord.compareAndSet(word, word + (1L << SUCCESSES_SHIFT))) {
+                System.out.println("✓ HALF_OPEN 성공 (" + successes + "회)");
+                return;
             }
-        } else {
-            failureCount = 0;
         }
     }
 
     // 실패 시 처리
-    private void onFailure() {
-        failureCount++;
-        lastFailureTime = System.currentTimeMillis();
+    private void onFailure(long permit) {
+        if (stateOf(permit) == CircuitState.HALF_OPEN) {
+            //HALF_OPEN에서 실패 시 즉시 OPEN 처리
+            reopen(permit, "HALF_OPEN 실패");
+            return;
+        }
 
-        System.out.println("❌ 실패 (" + failureCount + "/" +
-                config.getFailureThreshold() + ")");
+        SlidingTimeWindow current = window;
+        current.record(now(), true, false);
+        openIfThresholdExceeded(current);
+    }
 
-        if(state == CircuitState.HALF_OPEN) {
-            //HALF_OPEN에서 실패 시 즉시 OPEN 처리
-            transitionToOpen();
-        } else if(failureCount >= config.getFailureThreshold()) {
-            // 임계값 초과 시 OPEN 처리
-            transitionToOpen();
+    // 임계값 초과 시 OPEN 처리 (CLOSED인 경우에만, 여러 스레드가 동시에 판정해도 전이는 한 번)
+    private void openIfThresholdExceeded(SlidingTimeWindow current) {
+        SlidingTimeWindow.Snapshot snapshot = current.snapshot(now());
+        System.out.println("❌ 실패 (실패율 " + snapshot.failureRate() + "%, 느린 호출 "
+                + snapshot.slowCallRate() + "%, 최근 " + snapshot.calls + "건)");
+
+        if (snapshot.calls < config.getFailureThreshold()
+                || (snapshot.failureRate() < config.getFailureRateThreshold()
+                && snapshot.slowCallRate() < config.getSlowCallRateThreshold())) {
+            return;
+        }
+        while (true) {
+            long word = stateWord.get();
+            if (stateOf(word) != CircuitState.CLOSED) {
+                return;
+            }
+            if (stateWord.compareAndSet(word, pack(CircuitState.OPEN, 0, 0, now()))) {
+                System.out.println("🔴 CLOSED → OPEN");
+                return;
+            }
         }
     }
 
-    // 타임아웃 지났는지 확인
-    private boolean shouldAttemptReset() {
-        long elapsed = System.currentTimeMillis() - lastFailureTime;
-        return elapsed >= config.getTimeoutMillis();
+    private void reopen(long permit, String reason) {
+        while (true) {
+            long word = stateWord.get();
+            if (!sameHalfOpenRound(word, permit)) {
+                return;
+            }
+            if (stateWord.compareAndSet(word, pack(CircuitState.OPEN, 0, 0, now()))) {
+                System.out.println("🔴 HALF_OPEN → OPEN (" + reason + ")");
+                return;
+            }
+        }
     }
 
-    // 상태 전이 메서드
-    private void transitionToOpen() {
-        System.out.println("🔴 CLOSED/HALF_OPEN → OPEN");
-        state = CircuitState.OPEN;
-        successCount = 0;
+    public CircuitState getState() {
+        return stateOf(stateWord.get());
     }
 
-    private void transitionToHalfOpen() {
-        System.out.println("🟡 OPEN → HALF_OPEN (복구 테스트)");
-        state = CircuitState.HALF_OPEN;
-        successCount = 0;
+    // 최근 시간 창 기준 실패율 (%)
+    public int getFailureRate() {
+        return window.snapshot(now()).failureRate();
     }
 
-    private void transitionToClosed() {
-        System.out.println("🟢 HALF_OPEN → CLOSED (복구 완료)");
-        state = CircuitState.CLOSED;
-        failureCount = 0;
-        successCount = 0;
+    // 최근 시간 창 기준 느린 호출 비율 (%)
+    public int getSlowCallRate() {
+        return window.snapshot(now()).slowCallRate();
     }
 
-    public CircuitState getState() {
-        return state;
+    private SlidingTimeWindow newWindow() {
+        return new SlidingTimeWindow(config.getWindowBuckets(),
+                config.getWindowMillis() / config.getWindowBuckets());
+    }
+
+    private boolean sameHalfOpenRound(long word, long permit) {
+        return stateOf(word) == CircuitState.HALF_OPEN && timeOf(word) == timeOf(permit);
+    }
+
+    private long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - baseNanos);
+    }
+
+    private static long pack(CircuitState state, int successes, int permits, long timeMillis) {
+        return ((long) state.ordinal() << STATE_SHIFT)
+                | ((long) successes << SUCCESSES_SHIFT)
+                | ((long) permits << PERMITS_SHIFT)
+                | (timeMillis & TIME_MASK);
+    }
+
+    private static CircuitState stateOf(long word) {
+        return STATES[(int) (word >>> STATE_SHIFT)];
+    }
+
+    private static int successesOf(long word) {
+        return (int) ((word >>> SUCCESSES_SHIFT) & COUNT_MASK);
+    }
+
+    private static int permitsOf(long word) {
+        return (int) ((word >>> PERMITS_SHIFT) & COUNT_MASK);
+    }
+
+    private static long timeOf(long word) {
+        return word & TIME_MASK;
+    }
+}
+
+// 시간 버킷 링 버퍼 (락 없음)
+// - 버킷 하나 = bucketMillis 구간의 호출/실패/느린 호출 수
+// - 버킷 자리를 새 구간이 쓰게 되면 새 버킷 객체로 CAS 교체 (카운터 초기화 경합 없음)
+// - 집계는 창 안에 있는 버킷만 합산 -> O(버킷 수)
+class SlidingTimeWindow {
+    private final AtomicReferenceArray<Bucket> buckets;
+    private final long bucketMillis;
+
+    SlidingTimeWindow(int bucketCount, long bucketMillis) {
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+        this.bucketMillis = bucketMillis;
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.set(i, new Bucket(-1));
+        }
+    }
+
+    void record(long nowMillis, boolean failure, boolean slow) {
+        Bucket bucket = bucketFor(nowMillis / bucketMillis);
+        bucket.calls.increment();
+        if (failure) {
+            bucket.failures.increment();
+        }
+        if (slow) {
+            bucket.slowCalls.increment();
+        }
+    }
+
+    Snapshot snapshot(long nowMillis) {
+        long currentEpoch = nowMillis / bucketMillis;
+        long oldestEpoch = currentEpoch - buckets.length() + 1;
+        long calls = 0;
+        long failures = 0;
+        long slowCalls = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket.epoch >= oldestEpoch && bucket.epoch <= currentEpoch) {
+                calls += bucket.calls.sum();
+                failures += bucket.failures.sum();
+                slowCalls += bucket.slowCalls.sum();
+            }
+        }
+        return new Snapshot(calls, failures, slowCalls);
+    }
+
+    private Bucket bucketFor(long epoch) {
+        int index = (int) (epoch % buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (bucket.epoch >= epoch) {
+                return bucket;   // 같은 구간 (또는 이미 더 새 구간 -> 드문 지연 스레드, 근사 허용)
+            }
+            Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private final long epoch;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    static final class Snapshot {
+        final long calls;
+        final long failures;
+        final long slowCalls;
+
+        Snapshot(long calls, long failures, long slowCalls) {
+            this.calls = calls;
+            this.failures = failures;
+            this.slowCalls = slowCalls;
+        }
+
+        int failureRate() {
+            return calls == 0 ? 0 : (int) (failures * 100 / calls);
+        }
+
+        int slowCallRate() {
+            return calls == 0 ? 0 : (int) (slowCalls * 100 / calls);
+        }
     }
 }
 
@@ -0,0 +1,57 @@
+package org.example.cleancode.Y_2025.day45;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * aggregateId <-> 번호 사전 (스트림 단위, 등록 순서대로 번호 부여)
+ *
+ * - 등록/되돌리기는 한 번에 한 스레드만 (저장소 쓰기 락 안에서)
+ * - 조회(idOf / valueOf)는 락 없이 여러 스레드에서 가능
+ *   (값 배열은 volatile로 교체 -> 이미 공개된 레코드가 참조하는 번호는 항상 보임)
+ */
+public class AggregateDictionary {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[64];
+    private int size;
+
+    public int idOf(String value) {
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    public String valueOf(int id) {
+        String[] current = values;
+        if (id < 0 || id >= current.length || current[id] == null) {
+            throw new IllegalStateException("정의되지 않은 사전 번호: " + id);
+        }
+        return current[id];
+    }
+
+    public void register(String value) {
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        values = current;
+        ids.put(value, size);
+        size++;
+    }
+
+    // 되돌릴 때 기준 (mark)
+    public int size() {
+        return size;
+    }
+
+    // 기록에 실패한 정의를 되돌림
+    public void truncate(int mark) {
+        String[] current = values;
+        while (size > mark) {
+            size--;
+            ids.remove(current[size]);
+            current[size] = null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.cleancode.Y_2025.day45;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 이벤트 코덱 공통 저수준 인코딩 (Day45 EventCodec, Day46 ProductEventCodec)
+ *
+ * - varint: 7비트씩 하위부터, 최상위 비트 1 = 다음 바이트가 이어짐
+ * - zigzag: 절댓값이 작은 음수도 짧게 (0, -1, 1, -2 ... -> 0, 1, 2, 3 ...)
+ * - 문자열: varint 길이 + UTF-8
+ */
+public final class BinaryEncoding {
+
+    private BinaryEncoding() {
+    }
+
+    public static void writeVarInt(ByteBuffer out, int value) {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    public static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public static long readVarLong(ByteBuffer in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("varint가 너무 깁니다");
+    }
+
+    public static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static int unzigzag(long encoded) {
+        int value = (int) encoded;
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static void writeString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.put(bytes);
+    }
+
+    public static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in);
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.cleancode.Y_2025.day45;
+
+import org.example.cleancode.Y_2025.day41.SilentPrintStream;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Day 45 동시 입출금 처리량 측정
+ *
+ * - 계좌 수(1 ~ 10,000)를 바꿔 가며 여러 스레드가 무작위 계좌에 입금/출금
+ * - 계좌가 적을수록 같은 계좌 충돌이 잦아짐 -> 충돌 재시도 횟수와 처리량 비교
+ * - 끝난 뒤 전체 잔액 = 입금 합 - 출금 합, 음수 잔액 없음 검증 (초과 출금 방지 확인)
+ * - 인자: 스레드 수 (기본값 = CPU 코어 수)
+ */
+public class Day45ConcurrencyBenchmark {
+
+    private static final int[] ACCOUNT_COUNTS = {1, 10, 100, 1_000, 10_000};
+    private static final int OPERATIONS = 200_000;
+    private static final int INITIAL_DEPOSIT = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        PrintStream console = System.out;
+
+        console.printf("threads=%d, operations=%d%n", threads, OPERATIONS);
+        for (int accounts : ACCOUNT_COUNTS) {
+            // 서비스/저장소의 건별 로그 출력은 측정에서 제외 (락 없이 버리는 스트림)
+            System.setOut(new SilentPrintStream());
+            try {
+                console.println(run(accounts, threads));
+            } finally {
+                System.setOut(console);
+            }
+        }
+    }
+
+    private static String run(int accounts, int threads) throws Exception {
+        BankAccountService service = new BankAccountService();
+        for (int i = 0; i < accounts; i++) {
+            service.openAccount(accountId(i), "owner-" + i);
+            service.deposit(accountId(i), INITIAL_DEPOSIT);
+        }
+
+        LongAdder deposited = new LongAdder();
+        LongAdder withdrawn = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        int perThread = OPERATIONS / threads;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < perThread; i++) {
+                    String accountId = accountId(random.nextInt(accounts));
+                    int amount = 1 + random.nextInt(100);
+                    try {
+                        if (random.nextBoolean()) {
+                            service.deposit(accountId, amount);
+                            deposited.add(amount);
+                        } else {
+                            service.withdraw(accountId, amount);
+                            withdrawn.add(amount);
+                        }
+                    } catch (RuntimeException e) {
+                        rejected.increment();   // 잔액 부족 또는 충돌 재시도 한도 초과
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        long total = 0;
+        boolean negative = false;
+        for (int i = 0; i < accounts; i++) {
+            int balance = service.getBalance(accountId(i));
+            total += balance;
+            negative |= balance < 0;
+        }
+        long expected = (long) accounts * INITIAL_DEPOSIT + deposited.sum() - withdrawn.sum();
+
+        double opsPerSec = (double) perThread * threads / (elapsedNanos / 1_000_000_000.0);
+        return String.format("accounts=%,6d  ops/s=%,12.0f  conflictRetries=%,8d  rejected=%,8d  consistent=%s",
+                accounts, opsPerSec, service.getConflictRetries(), rejected.sum(),
+                total == expected && !negative);
+    }
+
+    private static String accountId(int i) {
+        return "ACC-" + i;
+    }
+}
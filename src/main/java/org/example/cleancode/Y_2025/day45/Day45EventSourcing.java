@@ -2,6 +2,11 @@ package org.example.cleancode.Y_2025.day45;
 
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -13,6 +18,14 @@ import java.util.stream.Collectors;
  * - 이벤트 재생(replay) 미지원
  * - 상태 복원 로직 없음
  * - 동시성 제어 부재
+ *
+ * 성능 개선:
+ * - 스냅샷: N개 이벤트마다 상태를 저장하고, 복원 시 스냅샷 이후 이벤트만 재생
+ * - 영속 저장소: 세그먼트 파일 append + 그룹 fsync + mmap 읽기 (FileEventStore)
+ * - 시점/버전 조회: 계좌별 시간 인덱스 이분 탐색 + 복사 없는 구간 뷰, 다계좌 병렬 조회
+ * - 동시성: 기대 버전 기반 낙관적 저장 + 계좌별 직렬화, 충돌 시 놓친 이벤트만 반영해 재시도
+ * - 직렬화: 타입 태그 + varint + 16바이트 UUID + 계좌 ID 사전 (EventCodec)
+ * - 조회 모델(CQRS): 저장 직후 계좌별 잔액/버전을 갱신 -> 잔액 조회 O(1), 버전 지정 시 read-your-writes
  */
 public class Day45EventSourcing {
 
@@ -39,6 +52,10 @@ public class Day45EventSourcing {
         System.out.println("\n=== 현재 잔액 ===");
         System.out.println("현재 잔액: " + service.getBalance("ACC-001") + "원");
 
+        // 방금 쓴 버전까지 반영된 값 조회 (read-your-writes)
+        int version = service.deposit("ACC-001", 10000);
+        System.out.println("v" + version + " 반영 잔액: " + service.getBalance("ACC-001", version) + "원");
+
         // 과거 시점 잔액 조회
         int pastBalance = service.getBalanceAt("ACC-001", midTime);
         System.out.println("중간 시점 잔액: " + pastBalance + "원");
@@ -80,6 +97,15 @@ class AccountOpenedEvent implements DomainEvent {
         this.version = version;
     }
 
+    // 저장소에서 읽어온 이벤트 복원용
+    AccountOpenedEvent(String eventId, String accountId, String owner, long timestamp, int version) {
+        this.eventId = eventId;
+        this.accountId = accountId;
+        this.owner = owner;
+        this.timestamp = timestamp;
+        this.version = version;
+    }
+
     public String getAccountId() {
         return accountId;
     }
@@ -127,6 +153,15 @@ class MoneyDepositedEvent implements DomainEvent {
         this.timestamp = System.currentTimeMillis();
     }
 
+    // 저장소에서 읽어온 이벤트 복원용
+    MoneyDepositedEvent(String eventId, String accountId, int amount, long timestamp, int version) {
+        this.eventId = eventId;
+        this.accountId = accountId;
+        this.amount = amount;
+        this.timestamp = timestamp;
+        this.version = version;
+    }
+
     public String getAccountId() {
         return accountId;
     }
@@ -173,6 +208,15 @@ class MoneyWithdrawnEvent implements DomainEvent {
         this.timestamp = System.currentTimeMillis();
     }
 
+    // 저장소에서 읽어온 이벤트 복원용
+    MoneyWithdrawnEvent(String eventId, String accountId, int amount, long timestamp, int version) {
+        this.eventId = eventId;
+        this.accountId = accountId;
+        this.amount = amount;
+        this.timestamp = timestamp;
+        this.version = version;
+    }
+
     public String getAccountId() {
         return accountId;
     }
@@ -204,41 +248,420 @@ class MoneyWithdrawnEvent implements DomainEvent {
 
 // 이벤트 저장소
 interface EventStore {
-    // 이벤트 저장
-    void save(DomainEvent event);
+    // 이벤트 저장 (낙관적 동시성: 스트림의 현재 버전이 expectedVersion이 아니면 ConcurrencyException)
+    void save(DomainEvent event, int expectedVersion);
+
+    // 이벤트 저장 (이벤트 버전 바로 앞 버전을 기대 버전으로 사용)
+    default void save(DomainEvent event) {
+        save(event, event.getVersion() - 1);
+    }
     // 특정 계좌에 대한 이벤트 조회 (시간 순)
     List<DomainEvent> getEvents(String aggregateId);
     // 특정 시점 까지의 이벤트 조회 (특정 계좌)
     List<DomainEvent> getEventsUtil(String aggregateId, long timestamp);
+    // 특정 버전까지의 이벤트 조회
+    List<DomainEvent> getEventsUntilVersion(String aggregateId, int version);
+    // 특정 버전 이후의 이벤트 조회 (스냅샷 이후 꼬리 재생용)
+    List<DomainEvent> getEventsAfter(String aggregateId, int afterVersion);
+    // 특정 버전 이후 ~ 특정 시점까지의 이벤트 조회
+    List<DomainEvent> getEventsAfterUtil(String aggregateId, int afterVersion, long timestamp);
+    // 저장된 모든 계좌 ID (조회 모델 재구성용)
+    Set<String> getAggregateIds();
 }
 
 // 이벤트 저장소 구현체
 class InMemoryEventStore implements EventStore {
 
-    // 이벤트 저장소(계좌별로 리스트 관리 / 계좌명, 이벤트 리스트)
-    private Map<String, List<DomainEvent>> eventStreams = new HashMap<>();
+    // 이벤트 저장소(계좌별 스트림 관리 / 계좌명, 이벤트 스트림)
+    private final Map<String, EventStream> eventStreams = new ConcurrentHashMap<>();
 
+    // 계좌별 스트림 단위로만 직렬화 -> 서로 다른 계좌는 병렬로 저장
     @Override
-    public void save(DomainEvent event) {
+    public void save(DomainEvent event, int expectedVersion) {
         String aggregateId = event.getAggregateId();
 
-        eventStreams.computeIfAbsent(aggregateId, k -> new ArrayList<>())
-                .add(event);
+        eventStreams.computeIfAbsent(aggregateId, k -> new EventStream())
+                .append(event, expectedVersion);
 
         System.out.println("📝 이벤트 저장: " + event.getClass().getSimpleName());
     }
 
+    // 아래 조회는 모두 복사 없이 읽기 전용 뷰 반환 (이분 탐색 + 구간 뷰)
     @Override
     public List<DomainEvent> getEvents(String aggregateId) {
-        List<DomainEvent> events = eventStreams.get(aggregateId);
-        return events != null ? new ArrayList<>(events) : new ArrayList<>();
+        EventStream stream = eventStreams.get(aggregateId);
+        return stream != null ? stream.view(0, stream.size()) : Collections.emptyList();
     }
 
     @Override
     public List<DomainEvent> getEventsUtil(String aggregateId, long timestamp) {
-        return getEvents(aggregateId).stream()
-                .filter(e -> e.getTimestamp() <= timestamp)
-                .collect(Collectors.toList());
+        EventStream stream = eventStreams.get(aggregateId);
+        return stream != null ? stream.view(0, stream.countUntil(timestamp)) : Collections.emptyList();
+    }
+
+    @Override
+    public List<DomainEvent> getEventsUntilVersion(String aggregateId, int version) {
+        EventStream stream = eventStreams.get(aggregateId);
+        return stream != null ? stream.view(0, version) : Collections.emptyList();
+    }
+
+    // 버전은 1부터 연속 -> 버전 v 이후 = 인덱스 v부터
+    @Override
+    public List<DomainEvent> getEventsAfter(String aggregateId, int afterVersion) {
+        EventStream stream = eventStreams.get(aggregateId);
+        return stream != null ? stream.view(afterVersion, stream.size()) : Collections.emptyList();
+    }
+
+    @Override
+    public List<DomainEvent> getEventsAfterUtil(String aggregateId, int afterVersion, long timestamp) {
+        EventStream stream = eventStreams.get(aggregateId);
+        return stream != null ? stream.view(afterVersion, stream.countUntil(timestamp)) : Collections.emptyList();
+    }
+
+    @Override
+    public Set<String> getAggregateIds() {
+        return Collections.unmodifiableSet(eventStreams.keySet());
+    }
+}
+
+// 동시 수정 충돌 (다른 요청이 먼저 같은 계좌에 이벤트를 추가함)
+class ConcurrencyException extends RuntimeException {
+    private final String aggregateId;
+    private final int expectedVersion;
+    private final int actualVersion;
+
+    public ConcurrencyException(String aggregateId, int expectedVersion, int actualVersion) {
+        super("동시 수정 충돌: " + aggregateId + " (기대 버전 " + expectedVersion + ", 현재 버전 " + actualVersion + ")");
+        this.aggregateId = aggregateId;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    public String getAggregateId() {
+        return aggregateId;
+    }
+
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public int getActualVersion() {
+        return actualVersion;
+    }
+}
+
+// 계좌 하나의 이벤트 스트림 (append only 배열 + 시간 인덱스)
+// - 인덱스 i의 이벤트 = 버전 i+1 -> 버전 조회는 위치 계산만으로 끝
+// - maxTimestamps[i] = 0..i 구간 최대 발생 시각 (비감소) -> "T 시점까지" = 이분 탐색
+//   (시계가 뒤로 가더라도 스트림 앞부분(prefix)만 시점 결과로 취급)
+// - 배열이 커질 때는 새 배열로 복사하므로, 이전에 만든 뷰는 기존 배열을 그대로 안전하게 읽음
+class EventStream {
+    private DomainEvent[] events = new DomainEvent[16];
+    private long[] maxTimestamps = new long[16];
+    // volatile 쓰기로 배열/원소 쓰기를 읽는 쪽에 공개
+    private volatile int size;
+
+    // 스트림 꼬리 버전이 기대 버전과 같을 때만 추가 (계좌별 모니터로 직렬화)
+    synchronized void append(DomainEvent event, int expectedVersion) {
+        int n = size;
+        if (n != expectedVersion) {
+            throw new ConcurrencyException(event.getAggregateId(), expectedVersion, n);
+        }
+        if (event.getVersion() != expectedVersion + 1) {
+            throw new IllegalArgumentException("이벤트 버전 불일치: " + event.getVersion() + " (기대 " + (expectedVersion + 1) + ")");
+        }
+        if (n == events.length) {
+            events = Arrays.copyOf(events, n * 2);
+            maxTimestamps = Arrays.copyOf(maxTimestamps, n * 2);
+        }
+        events[n] = event;
+        maxTimestamps[n] = n == 0 ? event.getTimestamp() : Math.max(maxTimestamps[n - 1], event.getTimestamp());
+        size = n + 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // timestamp 이하 구간의 길이
+    int countUntil(long timestamp) {
+        int n = size;
+        long[] timestamps = maxTimestamps;
+
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // [from, to) 읽기 전용 뷰 (범위는 현재 크기로 잘라냄)
+    List<DomainEvent> view(int from, int to) {
+        int n = size;
+        DomainEvent[] snapshot = events;
+        int start = Math.max(0, from);
+        int end = Math.min(to, n);
+        if (start >= end) {
+            return Collections.emptyList();
+        }
+        return new AbstractList<>() {
+            @Override
+            public DomainEvent get(int index) {
+                Objects.checkIndex(index, end - start);
+                return snapshot[start + index];
+            }
+
+            @Override
+            public int size() {
+                return end - start;
+            }
+        };
+    }
+}
+
+
+// 계좌 스냅샷 (특정 버전 시점의 상태)
+// timestamp는 마지막으로 반영된 이벤트의 발생 시각 -> 시점 조회 시 기준점으로 사용
+class AccountSnapshot {
+    private final String accountId;
+    private final String owner;
+    private final int balance;
+    private final int version;
+    private final long timestamp;
+
+    public AccountSnapshot(String accountId, String owner, int balance, int version, long timestamp) {
+        this.accountId = accountId;
+        this.owner = owner;
+        this.balance = balance;
+        this.version = version;
+        this.timestamp = timestamp;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public int getBalance() {
+        return balance;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
+
+// 스냅샷 저장소 (이벤트 스트림 옆에 계좌별로 보관)
+interface SnapshotStore {
+    void save(AccountSnapshot snapshot);
+    // 가장 최근 스냅샷
+    Optional<AccountSnapshot> findLatest(String aggregateId);
+    // 특정 시점 이전에 찍힌 스냅샷 중 가장 최근 것
+    Optional<AccountSnapshot> findLatestAt(String aggregateId, long timestamp);
+    // 특정 버전 이하 스냅샷 중 가장 최근 것
+    Optional<AccountSnapshot> findLatestAtVersion(String aggregateId, int version);
+}
+
+// 스냅샷 저장소 구현체 (계좌별 버전순 리스트, 조회는 이진 탐색)
+class InMemorySnapshotStore implements SnapshotStore {
+
+    // 스냅샷은 드물게 추가되고 자주 읽힘 -> 쓰기 시 복사 리스트
+    private final Map<String, List<AccountSnapshot>> snapshots = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(AccountSnapshot snapshot) {
+        List<AccountSnapshot> list =
+                snapshots.computeIfAbsent(snapshot.getAccountId(), k -> new CopyOnWriteArrayList<>());
+
+        synchronized (list) {
+            // 같은/이전 버전 스냅샷은 무시 (버전 순서 유지)
+            if (!list.isEmpty() && list.get(list.size() - 1).getVersion() >= snapshot.getVersion()) {
+                return;
+            }
+            list.add(snapshot);
+        }
+    }
+
+    @Override
+    public Optional<AccountSnapshot> findLatest(String aggregateId) {
+        List<AccountSnapshot> list = snapshots.get(aggregateId);
+        if (list == null || list.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(list.get(list.size() - 1));
+    }
+
+    @Override
+    public Optional<AccountSnapshot> findLatestAt(String aggregateId, long timestamp) {
+        return findLast(aggregateId, snapshot -> snapshot.getTimestamp() <= timestamp);
+    }
+
+    @Override
+    public Optional<AccountSnapshot> findLatestAtVersion(String aggregateId, int version) {
+        return findLast(aggregateId, snapshot -> snapshot.getVersion() <= version);
+    }
+
+    // 조건을 만족하는 마지막 스냅샷 (버전 순 = 시간 순이므로 조건은 앞에서부터 참 -> 이분 탐색)
+    private Optional<AccountSnapshot> findLast(String aggregateId, Predicate<AccountSnapshot> condition) {
+        List<AccountSnapshot> list = snapshots.get(aggregateId);
+        if (list == null || list.isEmpty()) {
+            return Optional.empty();
+        }
+
+        int low = 0;
+        int high = list.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (condition.test(list.get(mid))) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found < 0 ? Optional.empty() : Optional.of(list.get(found));
+    }
+}
+
+
+// 계좌 잔액 조회 모델 항목 (불변, 갱신 시 교체)
+class AccountBalance {
+    private final String accountId;
+    private final String owner;
+    private final int balance;
+    private final int version;
+
+    public AccountBalance(String accountId, String owner, int balance, int version) {
+        this.accountId = accountId;
+        this.owner = owner;
+        this.balance = balance;
+        this.version = version;
+    }
+
+    // 다음 버전 이벤트 하나를 반영한 새 항목
+    AccountBalance apply(DomainEvent event) {
+        if (event instanceof MoneyDepositedEvent) {
+            return new AccountBalance(accountId, owner, balance + ((MoneyDepositedEvent) event).getAmount(), event.getVersion());
+        }
+        if (event instanceof MoneyWithdrawnEvent) {
+            return new AccountBalance(accountId, owner, balance - ((MoneyWithdrawnEvent) event).getAmount(), event.getVersion());
+        }
+        return new AccountBalance(accountId, owner, balance, event.getVersion());
+    }
+
+    static AccountBalance from(BankAccount account) {
+        return new AccountBalance(account.getAccountId(), account.getOwner(), account.getBalance(), account.getVersion());
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public int getBalance() {
+        return balance;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+}
+
+// 잔액 조회 모델 (CQRS 읽기 측)
+// - 저장 성공 직후 apply로 갱신, 조회는 맵 한 번 -> O(1)
+// - 같은 계좌의 저장이 동시에 끝나 반영 순서가 뒤바뀌어도, 버전 비교로 오래된 반영은 버리고
+//   빠진 버전은 저장소에서 읽어 채우므로 항상 연속된 버전까지만 반영됨
+class AccountBalanceView {
+    private final EventStore eventStore;
+    private final Map<String, AccountBalance> balances = new ConcurrentHashMap<>();
+
+    AccountBalanceView(EventStore eventStore) {
+        this.eventStore = eventStore;
+    }
+
+    void apply(DomainEvent event) {
+        String accountId = event.getAggregateId();
+        balances.compute(accountId, (id, current) -> {
+            int currentVersion = current == null ? 0 : current.getVersion();
+            if (event.getVersion() <= currentVersion) {
+                return current;   // 이미 반영됨 (늦게 도착한 반영)
+            }
+            if (event.getVersion() == currentVersion + 1) {
+                if (current != null) {
+                    return current.apply(event);
+                }
+                if (event instanceof AccountOpenedEvent) {
+                    return new AccountBalance(id, ((AccountOpenedEvent) event).getOwner(), 0, event.getVersion());
+                }
+            }
+            return catchUp(id, current);
+        });
+    }
+
+    Optional<AccountBalance> find(String accountId) {
+        return Optional.ofNullable(balances.get(accountId));
+    }
+
+    // minVersion 이상이 반영된 항목 반환 (다른 서비스 인스턴스가 같은 저장소에 쓴 경우 등)
+    AccountBalance awaitVersion(String accountId, int minVersion) {
+        AccountBalance current = balances.get(accountId);
+        if (current != null && current.getVersion() >= minVersion) {
+            return current;
+        }
+        AccountBalance caughtUp = balances.compute(accountId, (id, existing) -> catchUp(id, existing));
+        if (caughtUp == null || caughtUp.getVersion() < minVersion) {
+            throw new IllegalStateException("아직 저장되지 않은 버전: " + accountId + " v" + minVersion);
+        }
+        return caughtUp;
+    }
+
+    // 계좌별로 독립 -> 병렬 재구성 (loader: 스냅샷 + 꼬리 재생)
+    // 재구성 중 들어온 실시간 반영보다 오래된 값은 덮어쓰지 않음
+    void rebuild(Function<String, BankAccount> loader) {
+        eventStore.getAggregateIds().parallelStream().forEach(accountId -> {
+            AccountBalance rebuilt = AccountBalance.from(loader.apply(accountId));
+            balances.merge(accountId, rebuilt,
+                    (existing, fresh) -> fresh.getVersion() > existing.getVersion() ? fresh : existing);
+        });
+    }
+
+    // 현재 반영 버전 이후 이벤트를 저장소에서 읽어 반영
+    private AccountBalance catchUp(String accountId, AccountBalance current) {
+        int fromVersion = current == null ? 0 : current.getVersion();
+        List<DomainEvent> missed = eventStore.getEventsAfter(accountId, fromVersion);
+        if (missed.isEmpty()) {
+            return current;
+        }
+        AccountBalance result = current;
+        int i = 0;
+        if (result == null) {
+            DomainEvent first = missed.get(i++);
+            if (!(first instanceof AccountOpenedEvent)) {
+                throw new IllegalStateException("계좌 개설 이벤트가 없습니다: " + accountId);
+            }
+            result = new AccountBalance(accountId, ((AccountOpenedEvent) first).getOwner(), 0, first.getVersion());
+        }
+        for (; i < missed.size(); i++) {
+            result = result.apply(missed.get(i));
+        }
+        return result;
     }
 }
 
@@ -246,73 +669,172 @@ class InMemoryEventStore implements EventStore {
 // 이벤트 소싱 방식으로 변경 (리팩터링)
 // 기존에는 상태를 직접 변경 -> 이벤트를 발행
 class BankAccountService {
+    // 기본 스냅샷 주기 (이벤트 N개마다)
+    private static final int DEFAULT_SNAPSHOT_INTERVAL = 100;
+    // 동시 수정 충돌 시 재시도 횟수
+    private static final int MAX_APPEND_ATTEMPTS = 10;
+
     private final EventStore eventStore;
+    private final SnapshotStore snapshotStore;
+    private final int snapshotInterval;
+    private final LongAdder conflictRetries = new LongAdder();
+    // 잔액 조회 모델 (저장 성공 직후 갱신)
+    private final AccountBalanceView balanceView;
 
     public BankAccountService() {
-        this.eventStore = new InMemoryEventStore();
+        this(new InMemoryEventStore(), new InMemorySnapshotStore(), DEFAULT_SNAPSHOT_INTERVAL);
     }
 
-    // 계좌 개설 (이벤트 발행)
+    public BankAccountService(EventStore eventStore, SnapshotStore snapshotStore, int snapshotInterval) {
+        this.eventStore = eventStore;
+        this.snapshotStore = snapshotStore;
+        this.snapshotInterval = snapshotInterval;
+        this.balanceView = new AccountBalanceView(eventStore);
+        // 기존 이벤트가 있는 저장소(FileEventStore 재시작 등)면 조회 모델부터 채움
+        balanceView.rebuild(this::loadAccount);
+    }
+
+    // 계좌 개설 (이벤트 발행) - 기대 버전 0 -> 이미 있는 계좌면 충돌
     public void openAccount(String accountId, String owner) {
         AccountOpenedEvent event = new AccountOpenedEvent(accountId, owner, 1);
 
-        eventStore.save(event);
+        eventStore.save(event, 0);
+        balanceView.apply(event);
 
         System.out.println("✓ 계좌 개설: " + accountId);
     }
 
-    // 입금 (이벤트 발행)
-    public void deposit(String accountId, int amount) {
-        // 현재 계좌 상태 복원
-        BankAccount account = loadAccount(accountId);
-        
-        // 새버전으로 이벤트 생성
-        int newVersion = account.getVersion() + 1;
-        MoneyDepositedEvent event = new MoneyDepositedEvent(accountId, amount, newVersion);
-
-        // 이벤트 저장
-        eventStore.save(event);
+    // 입금 (이벤트 발행) - 저장된 버전 반환 (getBalance(accountId, version)로 read-your-writes)
+    public int deposit(String accountId, int amount) {
+        // 새버전으로 이벤트 생성 후 저장 (충돌 시 최신 상태로 재시도)
+        int version = appendWithRetry(accountId, account ->
+                new MoneyDepositedEvent(accountId, amount, account.getVersion() + 1));
 
         System.out.println("✓ 입금: " + amount + "원");
+        return version;
     }
     
     // 출금 (이벤트 발행 + 비지니스 검증)
-    public void withdraw(String accountId, int amount) {
-        // 현재 계좌 상태 복원
+    public int withdraw(String accountId, int amount) {
+        int version = appendWithRetry(accountId, account -> {
+            // 비지니스 규칙 검증 (재시도마다 최신 잔액으로 다시 검증)
+            if(account.getBalance() < amount) {
+                throw new RuntimeException("잔액 부족");
+            }
+            return new MoneyWithdrawnEvent(accountId, amount, account.getVersion() + 1);
+        });
+
+        System.out.println("✓ 출금: " + amount + "원");
+        return version;
+    }
+
+    // 상태 복원 -> 명령 실행 -> 기대 버전으로 저장
+    // 충돌하면 전체를 다시 재생하지 않고, 그 사이 추가된 이벤트만 반영해서 빠르게 재시도
+    private int appendWithRetry(String accountId, Function<BankAccount, DomainEvent> command) {
         BankAccount account = loadAccount(accountId);
-        
-        // 비지니스 규칙 검증
-        if(account.getBalance() < amount) {
-            throw new RuntimeException("잔액 부족");
+        // 개설되지 않은 계좌에 이벤트가 저장되면 그 계좌는 조회 모델/재생 모두 실패 -> 저장 전에 거부
+        if (account.getVersion() == 0) {
+            throw new IllegalArgumentException("존재하지 않는 계좌: " + accountId);
         }
 
-        // 이벤트 발행
-        int newVersion = account.getVersion() + 1;
-        MoneyWithdrawnEvent event = new MoneyWithdrawnEvent(accountId, amount, newVersion);
-        eventStore.save(event);
+        for (int attempt = 1; ; attempt++) {
+            DomainEvent event = command.apply(account);
+            try {
+                eventStore.save(event, account.getVersion());
+                balanceView.apply(event);
+                snapshotIfDue(account, event);
+                return event.getVersion();
+            } catch (ConcurrencyException e) {
+                if (attempt >= MAX_APPEND_ATTEMPTS) {
+                    throw e;
+                }
+                conflictRetries.increment();
+                for (DomainEvent missed : eventStore.getEventsAfter(accountId, account.getVersion())) {
+                    account.apply(missed);
+                }
+            }
+        }
+    }
 
-        System.out.println("✓ 출금: " + amount + "원");
+    // 누적 충돌 재시도 횟수
+    public long getConflictRetries() {
+        return conflictRetries.sum();
     }
 
-    // 잔액 조회
+    // 이미 복원된 상태에 방금 저장한 이벤트만 반영해서 스냅샷 (추가 재생 없음)
+    private void snapshotIfDue(BankAccount account, DomainEvent event) {
+        if (snapshotInterval <= 0 || event.getVersion() % snapshotInterval != 0) {
+            return;
+        }
+        account.apply(event);
+        snapshotStore.save(account.toSnapshot());
+    }
+
+    // 수동 스냅샷 (예: 배치 작업, 대량 이벤트 유입 직후)
+    public void snapshot(String accountId) {
+        snapshotStore.save(loadAccount(accountId).toSnapshot());
+    }
+
+    // 잔액 조회 (조회 모델에서 O(1), 이벤트 재생 없음)
     public int getBalance(String accountId) {
-        BankAccount account = loadAccount(accountId);
-        return account.getBalance();
+        return balanceView.find(accountId)
+                .map(AccountBalance::getBalance)
+                .orElseGet(() -> loadAccount(accountId).getBalance());
+    }
+
+    // 잔액 조회 (read-your-writes) - 조회 모델이 minVersion보다 뒤처졌으면 저장소에서 따라잡은 뒤 반환
+    public int getBalance(String accountId, int minVersion) {
+        return balanceView.awaitVersion(accountId, minVersion).getBalance();
+    }
+
+    // 조회 모델 재구성 (계좌별 병렬 재생)
+    public void rebuildBalanceView() {
+        balanceView.rebuild(this::loadAccount);
     }
     
-    // 계좌 로드 (이벤트 재생)
+    // 계좌 로드 (최근 스냅샷 + 이후 이벤트만 재생)
     public BankAccount loadAccount(String accountId) {
-        List<DomainEvent> events = eventStore.getEvents(accountId);
-        return BankAccount.fromEvents(events);
+        Optional<AccountSnapshot> snapshot = snapshotStore.findLatest(accountId);
+        if (snapshot.isEmpty()) {
+            return BankAccount.fromEvents(eventStore.getEvents(accountId));
+        }
+
+        List<DomainEvent> tail = eventStore.getEventsAfter(accountId, snapshot.get().getVersion());
+        return BankAccount.fromSnapshot(snapshot.get(), tail);
     }
 
-    // 특정 시점의 계좌 잔액 조회
+    // 특정 시점의 계좌 잔액 조회 (그 시점 이전 스냅샷 + 시점까지의 이벤트만 재생)
     public int getBalanceAt(String accountId, long timestamp) {
-        List<DomainEvent> events = eventStore.getEventsUtil(accountId, timestamp);
-        BankAccount account = BankAccount.fromEvents(events);
+        Optional<AccountSnapshot> snapshot = snapshotStore.findLatestAt(accountId, timestamp);
+        if (snapshot.isEmpty()) {
+            return BankAccount.fromEvents(eventStore.getEventsUtil(accountId, timestamp)).getBalance();
+        }
+
+        List<DomainEvent> tail =
+                eventStore.getEventsAfterUtil(accountId, snapshot.get().getVersion(), timestamp);
+        BankAccount account = BankAccount.fromSnapshot(snapshot.get(), tail);
 
         return account.getBalance();
     }
+
+    // 특정 버전 시점의 계좌 잔액 조회
+    public int getBalanceAtVersion(String accountId, int version) {
+        Optional<AccountSnapshot> snapshot = snapshotStore.findLatestAtVersion(accountId, version);
+        if (snapshot.isEmpty()) {
+            return BankAccount.fromEvents(eventStore.getEventsUntilVersion(accountId, version)).getBalance();
+        }
+
+        List<DomainEvent> events = eventStore.getEventsUntilVersion(accountId, version);
+        List<DomainEvent> tail = events.subList(Math.min(snapshot.get().getVersion(), events.size()), events.size());
+        return BankAccount.fromSnapshot(snapshot.get(), tail).getBalance();
+    }
+
+    // 여러 계좌의 특정 시점 잔액 일괄 조회 (월말 리포트 등) - 계좌별로 독립이므로 병렬 처리
+    public Map<String, Integer> getBalancesAt(Collection<String> accountIds, long timestamp) {
+        return accountIds.parallelStream()
+                .distinct()
+                .collect(Collectors.toConcurrentMap(id -> id, id -> getBalanceAt(id, timestamp)));
+    }
     
     
     // 전체 이벤트 이력 확인
@@ -356,6 +878,7 @@ class BankAccount {
     private String owner;
     private int balance;
     private int version;
+    private long lastEventTimestamp;
 
     public BankAccount() {
         this.balance = 0;
@@ -383,6 +906,7 @@ class BankAccount {
 
         // 버전 업데이트
         this.version = event.getVersion();
+        this.lastEventTimestamp = event.getTimestamp();
     }
     
     // 이벤트 리스트로부터 계좌 구성 (정적 이벤트)
@@ -396,6 +920,26 @@ class BankAccount {
         return account;
     }
 
+    // 스냅샷에서 시작해 이후 이벤트만 재생
+    public static BankAccount fromSnapshot(AccountSnapshot snapshot, List<DomainEvent> tail) {
+        BankAccount account = new BankAccount();
+        account.accountId = snapshot.getAccountId();
+        account.owner = snapshot.getOwner();
+        account.balance = snapshot.getBalance();
+        account.version = snapshot.getVersion();
+        account.lastEventTimestamp = snapshot.getTimestamp();
+
+        for (DomainEvent event : tail) {
+            account.apply(event);
+        }
+
+        return account;
+    }
+
+    public AccountSnapshot toSnapshot() {
+        return new AccountSnapshot(accountId, owner, balance, version, lastEventTimestamp);
+    }
+
     public String getAccountId() {
         return accountId;
     }
@@ -0,0 +1,155 @@
+package org.example.cleancode.Y_2025.day45;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Day 45 FileEventStore 복구 확인
+ *
+ * - 작은 세그먼트(4KB)에 계좌 20개 x 이벤트 51개 기록 -> 세그먼트 롤오버 여러 번
+ * - 다시 열어 계좌별 이벤트 ID 목록이 그대로인지 확인 (세그먼트 스캔으로 인덱스 재구성)
+ * - 마지막 레코드 뒤에 잘린 레코드(찢어진 쓰기)를 붙인 뒤 열기 -> 무시되고, 그 자리에 새 이벤트를 이어 씀
+ * - 마지막 레코드 내용을 손상시킨 뒤 열기 -> CRC 불일치로 그 이벤트만 버려짐
+ * 하나라도 다르면 IllegalStateException
+ */
+public class Day45FileEventStoreRecovery {
+
+    private static final int SEGMENT_SIZE = 4 * 1024;
+    private static final int ACCOUNTS = 20;
+    private static final int DEPOSITS = 50;
+    private static final int SEGMENT_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("day45-events");
+
+        // 1. 기록 + 롤오버
+        Map<String, List<String>> expected;
+        try (FileEventStore store = new FileEventStore(directory, SEGMENT_SIZE)) {
+            for (int i = 0; i < ACCOUNTS; i++) {
+                store.save(new AccountOpenedEvent(accountId(i), "owner-" + i, 1), 0);
+            }
+            for (int d = 0; d < DEPOSITS; d++) {
+                for (int i = 0; i < ACCOUNTS; i++) {
+                    store.save(new MoneyDepositedEvent(accountId(i), 100 + d, d + 2), d + 1);
+                }
+            }
+            check(store.segmentCount() > 1, "롤오버가 일어나지 않음: segments=" + store.segmentCount());
+            expected = eventIds(store);
+            System.out.printf("기록: events=%d, segments=%d%n", ACCOUNTS * (DEPOSITS + 1), store.segmentCount());
+        }
+
+        // 2. 재시작 복구
+        try (FileEventStore store = new FileEventStore(directory, SEGMENT_SIZE)) {
+            check(eventIds(store).equals(expected), "재시작 후 이벤트 불일치");
+            System.out.printf("재시작: segments=%d, 이벤트 일치%n", store.segmentCount());
+        }
+
+        // 3. 찢어진 쓰기: 마지막 레코드 뒤에 헤더만 있고 내용이 잘린 레코드
+        Path last = lastSegment(directory);
+        List<Integer> offsets = recordOffsets(last);
+        int end = recordEnd(last, offsets.get(offsets.size() - 1));
+        write(last, end, ByteBuffer.allocate(RECORD_HEADER_SIZE + 10).putInt(64).putInt(0x12345678).flip());
+
+        String accountId = accountId(0);
+        try (FileEventStore store = new FileEventStore(directory, SEGMENT_SIZE)) {
+            check(eventIds(store).equals(expected), "찢어진 꼬리 복구 후 이벤트 불일치");
+            int version = store.getEvents(accountId).size();
+            MoneyDepositedEvent next = new MoneyDepositedEvent(accountId, 999, version + 1);
+            store.save(next, version);
+            expected.get(accountId).add(next.getEventId());
+        }
+        try (FileEventStore store = new FileEventStore(directory, SEGMENT_SIZE)) {
+            check(eventIds(store).equals(expected), "찢어진 꼬리 위에 이어 쓴 이벤트 불일치");
+            System.out.println("찢어진 쓰기: 꼬리 무시 + 그 자리에 이어 쓴 이벤트 복구");
+        }
+
+        // 4. 마지막 레코드 손상 -> 그 이벤트만 버려짐 (이어 쓴 이벤트가 새 세그먼트로 넘어갔을 수 있어 다시 찾음)
+        last = lastSegment(directory);
+        offsets = recordOffsets(last);
+        int lastRecord = offsets.get(offsets.size() - 1);
+        ByteBuffer flipped = read(last, lastRecord + RECORD_HEADER_SIZE, 1);
+        write(last, lastRecord + RECORD_HEADER_SIZE, ByteBuffer.wrap(new byte[]{(byte) ~flipped.get(0)}));
+
+        List<String> account = expected.get(accountId);
+        account.remove(account.size() - 1);
+        try (FileEventStore store = new FileEventStore(directory, SEGMENT_SIZE)) {
+            check(eventIds(store).equals(expected), "손상된 레코드 복구 후 이벤트 불일치");
+            System.out.println("손상된 레코드: CRC 불일치 -> 마지막 이벤트만 버려짐");
+        }
+        System.out.println("복구 확인 완료: " + directory);
+    }
+
+    // 계좌 ID 순으로 이벤트 ID 목록
+    private static Map<String, List<String>> eventIds(FileEventStore store) {
+        Map<String, List<String>> ids = new TreeMap<>();
+        for (String aggregateId : store.getAggregateIds()) {
+            ids.put(aggregateId, store.getEvents(aggregateId).stream()
+                    .map(DomainEvent::getEventId)
+                    .collect(Collectors.toCollection(ArrayList::new)));
+        }
+        return ids;
+    }
+
+    private static Path lastSegment(Path directory) throws IOException {
+        try (Stream<Path> list = Files.list(directory)) {
+            return list.filter(p -> p.getFileName().toString().startsWith("segment-"))
+                    .max(Path::compareTo)
+                    .orElseThrow(() -> new IllegalStateException("세그먼트 없음: " + directory));
+        }
+    }
+
+    // 레코드 시작 위치 목록 (length = 0 이 나오면 끝)
+    private static List<Integer> recordOffsets(Path segment) throws IOException {
+        List<Integer> offsets = new ArrayList<>();
+        int position = SEGMENT_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= SEGMENT_SIZE) {
+            int length = read(segment, position, 4).getInt();
+            if (length <= 0) {
+                break;
+            }
+            offsets.add(position);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return offsets;
+    }
+
+    private static int recordEnd(Path segment, int offset) throws IOException {
+        return offset + RECORD_HEADER_SIZE + read(segment, offset, 4).getInt();
+    }
+
+    private static ByteBuffer read(Path file, long position, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            channel.read(buffer, position);
+            return buffer.flip();
+        }
+    }
+
+    private static void write(Path file, long position, ByteBuffer data) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(data, position);
+            channel.force(false);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private static String accountId(int i) {
+        return "ACC-" + i;
+    }
+}
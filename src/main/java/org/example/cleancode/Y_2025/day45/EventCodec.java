@@ -0,0 +1,140 @@
+package org.example.cleancode.Y_2025.day45;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * 계좌 이벤트 바이너리 코덱 (ByteBuffer 직접 인코딩/디코딩)
+ *
+ * 레코드 형식:
+ *   [header:1]  상위 3비트 = 스키마 버전, 하위 5비트 = 이벤트 타입
+ *   [eventId:16] UUID 원본 16바이트 (문자열 36자 대신)
+ *   [aggregateId] 사전 참조 varint (n > 0 -> 사전 n-1번), 0이면 뒤에 문자열 정의가 이어지고 다음 번호로 등록
+ *   [timestamp]  varint (long)
+ *   [version]    varint
+ *   [타입별 필드]  금액 = zigzag varint, 문자열 = varint 길이 + UTF-8 (BinaryEncoding)
+ *
+ * 스키마 진화 규칙:
+ * - 필드는 끝에만 추가하고, 추가할 때 해당 타입의 스키마 버전을 올린다
+ * - 디코더는 자기보다 낮은 버전이면 없는 필드를 기본값으로 채우고,
+ *   높은 버전이면 아는 필드까지만 읽고 나머지는 무시한다 (레코드 길이는 저장소/전송 계층이 관리)
+ * - 필드 삭제/순서 변경/의미 변경은 새 타입 번호로 정의한다
+ *
+ * 사전(aggregateId)은 스트림 단위 상태 -> 같은 로그/복제 스트림을 처음부터 순서대로 읽으면 항상 같은 번호가 된다.
+ * 인코더와 디코더가 한 사전을 공유하므로, 저장소는 복구 스캔 중 디코딩만으로 사전을 재구성한다.
+ */
+class EventCodec {
+
+    private static final int TYPE_MASK = 0x1F;
+    private static final int VERSION_SHIFT = 5;
+
+    private static final int ACCOUNT_OPENED = 1;
+    private static final int MONEY_DEPOSITED = 2;
+    private static final int MONEY_WITHDRAWN = 3;
+
+    // 타입별 현재 스키마 버전
+    private static final int ACCOUNT_OPENED_SCHEMA = 1;
+    private static final int MONEY_DEPOSITED_SCHEMA = 1;
+    private static final int MONEY_WITHDRAWN_SCHEMA = 1;
+
+    private final AggregateDictionary dictionary;
+
+    EventCodec() {
+        this(new AggregateDictionary());
+    }
+
+    EventCodec(AggregateDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    AggregateDictionary dictionary() {
+        return dictionary;
+    }
+
+    // 버퍼가 모자라면 BufferOverflowException (호출자가 버퍼를 키워 재시도)
+    // 새 aggregateId는 인코딩 시점에 사전에 등록됨 -> 기록 실패 시 dictionary().truncate(mark)로 되돌릴 것
+    void encode(DomainEvent event, ByteBuffer out) {
+        if (event instanceof AccountOpenedEvent) {
+            writeHeader(out, ACCOUNT_OPENED, ACCOUNT_OPENED_SCHEMA, event);
+            BinaryEncoding.writeString(out, ((AccountOpenedEvent) event).getOwner());
+        } else if (event instanceof MoneyDepositedEvent) {
+            writeHeader(out, MONEY_DEPOSITED, MONEY_DEPOSITED_SCHEMA, event);
+            BinaryEncoding.writeVarInt(out, BinaryEncoding.zigzag(((MoneyDepositedEvent) event).getAmount()));
+        } else if (event instanceof MoneyWithdrawnEvent) {
+            writeHeader(out, MONEY_WITHDRAWN, MONEY_WITHDRAWN_SCHEMA, event);
+            BinaryEncoding.writeVarInt(out, BinaryEncoding.zigzag(((MoneyWithdrawnEvent) event).getAmount()));
+        } else {
+            throw new IllegalArgumentException("알 수 없는 이벤트: " + event.getClass().getSimpleName());
+        }
+    }
+
+    DomainEvent decode(ByteBuffer in) {
+        int header = in.get() & 0xFF;
+        int type = header & TYPE_MASK;
+        int schema = header >>> VERSION_SHIFT;
+
+        String eventId = new UUID(in.getLong(), in.getLong()).toString();
+        String aggregateId = readAggregateId(in);
+        long timestamp = BinaryEncoding.readVarLong(in);
+        int version = (int) BinaryEncoding.readVarLong(in);
+
+        switch (type) {
+            case ACCOUNT_OPENED:
+                checkSchema(type, schema);
+                return new AccountOpenedEvent(eventId, aggregateId, BinaryEncoding.readString(in), timestamp, version);
+            case MONEY_DEPOSITED:
+                checkSchema(type, schema);
+                return new MoneyDepositedEvent(eventId, aggregateId,
+                        BinaryEncoding.unzigzag(BinaryEncoding.readVarLong(in)), timestamp, version);
+            case MONEY_WITHDRAWN:
+                checkSchema(type, schema);
+                return new MoneyWithdrawnEvent(eventId, aggregateId,
+                        BinaryEncoding.unzigzag(BinaryEncoding.readVarLong(in)), timestamp, version);
+            default:
+                throw new IllegalStateException("알 수 없는 이벤트 타입: " + type);
+        }
+    }
+
+    private void writeHeader(ByteBuffer out, int type, int schema, DomainEvent event) {
+        out.put((byte) ((schema << VERSION_SHIFT) | type));
+
+        UUID eventId = UUID.fromString(event.getEventId());
+        out.putLong(eventId.getMostSignificantBits());
+        out.putLong(eventId.getLeastSignificantBits());
+
+        writeAggregateId(out, event.getAggregateId());
+        BinaryEncoding.writeVarLong(out, event.getTimestamp());
+        BinaryEncoding.writeVarInt(out, event.getVersion());
+    }
+
+    private void writeAggregateId(ByteBuffer out, String aggregateId) {
+        int id = dictionary.idOf(aggregateId);
+        if (id >= 0) {
+            BinaryEncoding.writeVarInt(out, id + 1);
+            return;
+        }
+        BinaryEncoding.writeVarInt(out, 0);
+        BinaryEncoding.writeString(out, aggregateId);
+        dictionary.register(aggregateId);
+    }
+
+    private String readAggregateId(ByteBuffer in) {
+        int ref = (int) BinaryEncoding.readVarLong(in);
+        if (ref > 0) {
+            return dictionary.valueOf(ref - 1);
+        }
+        // 정의: 처음 읽는 경우에만 등록 (임의 위치 재읽기 시에는 이미 등록되어 있음)
+        String aggregateId = BinaryEncoding.readString(in);
+        if (dictionary.idOf(aggregateId) < 0) {
+            dictionary.register(aggregateId);
+        }
+        return aggregateId;
+    }
+
+    // 이 디코더보다 새 스키마도 허용 -> 아는 필드까지만 읽음 (추가 필드는 레코드 끝에 있으므로 무시 가능)
+    private static void checkSchema(int type, int schema) {
+        if (schema == 0) {
+            throw new IllegalStateException("잘못된 스키마 버전: type=" + type);
+        }
+    }
+}
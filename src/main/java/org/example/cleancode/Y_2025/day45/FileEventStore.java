@@ -0,0 +1,558 @@
+package org.example.cleancode.Y_2025.day45;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 세그먼트 파일 기반 이벤트 저장소
+ *
+ * - 고정 크기 세그먼트 파일에 append only로 기록, 공간이 모자라면 다음 세그먼트로 롤오버
+ * - 그룹 커밋: 기록은 바로 채널에 쓰고, 전용 스레드가 그동안 쌓인 기록을 fsync 한 번으로 반영
+ *   save는 자기 기록이 fsync 될 때까지 대기 후 반환 (fsync 중 들어온 기록은 다음 fsync에 함께)
+ * - 읽기는 세그먼트 전체를 mmap 해 둔 버퍼에서 바로 디코딩
+ * - 계좌 ID -> (세그먼트 위치, 오프셋) 인덱스로 한 계좌의 이벤트만 읽음
+ * - 인덱스에 시각도 함께 보관 -> 시점 조회는 이분 탐색 후 필요한 레코드만 디코딩
+ * - 재시작 시 세그먼트를 스캔해 인덱스 재구성, CRC가 맞지 않는 꼬리(찢어진 쓰기)는 잘라냄
+ *   세그먼트 번호는 파일 이름에서 읽음 -> 중간 파일이 없어도 다음 세그먼트는 가장 큰 번호 다음 (기존 파일을 덮어쓰지 않음)
+ *
+ * 레코드 형식: [length:int][crc32:int][payload:length bytes] (payload = EventCodec)
+ * 세그먼트 헤더: [magic:int][formatVersion:int]
+ */
+class FileEventStore implements EventStore, AutoCloseable {
+
+    private static final int MAGIC = 0x45564C47;            // "EVLG"
+    // 2: EventCodec 바이너리 형식
+    private static final int FORMAT_VERSION = 2;
+    private static final int SEGMENT_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+
+    // 번호 순 (번호는 파일 이름, 인덱스에는 이 목록의 위치를 보관)
+    private final List<Segment> segments = new ArrayList<>();
+    // aggregateId 사전은 로그 전체에 걸친 상태 -> 복구 스캔에서 재구성
+    private final EventCodec codec = new EventCodec();
+    // 인코딩용 재사용 버퍼 (save는 직렬화되어 있으므로 하나로 충분)
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    // 계좌별 이벤트 위치 (버전 순)
+    private final Map<String, PointerList> index = new HashMap<>();
+
+    // 그룹 커밋 상태 (기록/인덱스는 this 모니터, fsync 진행 상황은 lock)
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private long appendedSequence;
+    private long durableSequence;
+    private IOException syncError;
+    private boolean closed;
+    private final Thread flusher;
+
+    public FileEventStore(Path directory, int segmentSize) {
+        if (segmentSize <= SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("세그먼트 크기가 너무 작습니다: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("이벤트 저장소 열기 실패: " + directory, e);
+        }
+
+        this.flusher = new Thread(this::flushLoop, "event-store-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // 기록은 전역 직렬화(단일 로그), fsync 대기는 모니터 밖에서 -> 대기 중에도 다른 save가 기록을 이어감
+    @Override
+    public void save(DomainEvent event, int expectedVersion) {
+        awaitDurable(append(event, expectedVersion));
+    }
+
+    // 기대 버전 검사는 인덱스 크기로 판단, 기록 순번 반환
+    private synchronized long append(DomainEvent event, int expectedVersion) {
+        checkWritable();
+        PointerList existing = index.get(event.getAggregateId());
+        int currentVersion = existing == null ? 0 : existing.size();
+        if (currentVersion != expectedVersion) {
+            throw new ConcurrencyException(event.getAggregateId(), expectedVersion, currentVersion);
+        }
+
+        int dictionaryMark = codec.dictionary().size();
+        ByteBuffer payload = encode(event);
+        int recordSize = RECORD_HEADER_SIZE + payload.remaining();
+        if (recordSize > segmentSize - SEGMENT_HEADER_SIZE) {
+            codec.dictionary().truncate(dictionaryMark);
+            throw new IllegalArgumentException("이벤트가 세그먼트보다 큽니다: " + recordSize + " bytes");
+        }
+
+        try {
+            Segment segment = activeSegment();
+            if (segment.remaining() < recordSize) {
+                // 롤오버 전 현재 세그먼트는 반드시 디스크에 반영 (flusher는 활성 세그먼트만 fsync)
+                segment.force();
+                segment = openSegment(segment.number + 1);
+            }
+
+            int offset = segment.append(payload);
+            index.computeIfAbsent(event.getAggregateId(), k -> new PointerList())
+                    .add(segments.size() - 1, offset, event.getTimestamp());
+
+            lock.lock();
+            try {
+                pending.signal();
+                return ++appendedSequence;
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException e) {
+            // 기록되지 않은 사전 정의는 되돌림 (재시작 후 번호가 어긋나지 않도록)
+            codec.dictionary().truncate(dictionaryMark);
+            throw new UncheckedIOException("이벤트 저장 실패: " + event.getEventId(), e);
+        }
+    }
+
+    // scratch 버퍼에 바로 인코딩, 모자라면 두 배로 키워 재시도
+    private ByteBuffer encode(DomainEvent event) {
+        int dictionaryMark = codec.dictionary().size();
+        while (true) {
+            scratch.clear();
+            try {
+                codec.encode(event, scratch);
+                return scratch.flip();
+            } catch (BufferOverflowException e) {
+                codec.dictionary().truncate(dictionaryMark);
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    @Override
+    public synchronized List<DomainEvent> getEvents(String aggregateId) {
+        return read(aggregateId, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized List<DomainEvent> getEventsUtil(String aggregateId, long timestamp) {
+        return read(aggregateId, 0, countUntil(aggregateId, timestamp));
+    }
+
+    @Override
+    public synchronized List<DomainEvent> getEventsUntilVersion(String aggregateId, int version) {
+        return read(aggregateId, 0, version);
+    }
+
+    // 버전은 1부터 연속 -> 버전 v 이후 = 포인터 인덱스 v부터
+    @Override
+    public synchronized List<DomainEvent> getEventsAfter(String aggregateId, int afterVersion) {
+        return read(aggregateId, afterVersion, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized List<DomainEvent> getEventsAfterUtil(String aggregateId, int afterVersion, long timestamp) {
+        return read(aggregateId, afterVersion, countUntil(aggregateId, timestamp));
+    }
+
+    @Override
+    public synchronized Set<String> getAggregateIds() {
+        return new HashSet<>(index.keySet());
+    }
+
+    // 지금까지 기록된 이벤트가 모두 fsync 될 때까지 대기
+    public void flush() {
+        long target;
+        lock.lock();
+        try {
+            target = appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(target);
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        // 새 기록을 막은 뒤 flusher 종료 (this -> lock 순서 유지)
+        synchronized (this) {
+            lock.lock();
+            try {
+                closed = true;
+                pending.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (Segment segment : segments) {
+                segment.close();
+            }
+            segments.clear();
+        }
+    }
+
+    // ---- 그룹 커밋 ----
+
+    private void flushLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                while (appendedSequence == durableSequence && !closed) {
+                    pending.awaitUninterruptibly();
+                }
+                if (appendedSequence == durableSequence) {
+                    return;   // closed
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // 롤오버된 이전 세그먼트는 save에서 이미 fsync -> 활성 세그먼트만 반영하면 target까지 durable
+            Segment segment;
+            long target;
+            synchronized (this) {
+                segment = segments.get(segments.size() - 1);
+                lock.lock();
+                try {
+                    target = appendedSequence;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            IOException error = null;
+            try {
+                segment.force();
+            } catch (IOException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    syncError = error;
+                } else {
+                    durableSequence = target;
+                }
+                durable.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void awaitDurable(long sequence) {
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (syncError != null) {
+                    throw new UncheckedIOException("fsync 실패", syncError);
+                }
+                durable.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkWritable() {
+        lock.lock();
+        try {
+            if (syncError != null) {
+                throw new UncheckedIOException("fsync 실패", syncError);
+            }
+            if (closed) {
+                throw new IllegalStateException("닫힌 이벤트 저장소");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    // 포인터 [from, to) 구간의 레코드만 디코딩
+    private List<DomainEvent> read(String aggregateId, int from, int to) {
+        PointerList pointers = index.get(aggregateId);
+        if (pointers == null) {
+            return new ArrayList<>();
+        }
+        int start = Math.max(0, from);
+        int end = Math.min(to, pointers.size());
+        if (start >= end) {
+            return new ArrayList<>();
+        }
+
+        List<DomainEvent> events = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            Segment segment = segments.get(pointers.segment(i));
+            events.add(codec.decode(segment.payloadAt(pointers.offset(i))));
+        }
+        return events;
+    }
+
+    private int countUntil(String aggregateId, long timestamp) {
+        PointerList pointers = index.get(aggregateId);
+        return pointers == null ? 0 : pointers.countUntil(timestamp);
+    }
+
+    private Segment activeSegment() throws IOException {
+        if (segments.isEmpty()) {
+            return openSegment(0);
+        }
+        return segments.get(segments.size() - 1);
+    }
+
+    private Segment openSegment(int number) throws IOException {
+        Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        Segment segment = new Segment(number, path, segmentSize);
+        segments.add(segment);
+        return segment;
+    }
+
+    // 세그먼트 스캔 -> 인덱스 재구성, 마지막 세그먼트의 찢어진 꼬리 정리
+    private void recover() throws IOException {
+        List<Integer> numbers;
+        try (Stream<Path> list = Files.list(directory)) {
+            numbers = list.map(p -> segmentNumber(p.getFileName().toString()))
+                    .filter(number -> number >= 0)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        for (int number : numbers) {
+            Segment segment = openSegment(number);
+            int position = segments.size() - 1;
+            int validEnd = segment.scan((offset, payload) -> {
+                DomainEvent event = codec.decode(payload);
+                index.computeIfAbsent(event.getAggregateId(), k -> new PointerList())
+                        .add(position, offset, event.getTimestamp());
+            });
+            segment.truncateAfter(validEnd);
+        }
+    }
+
+    // segment-00000012.log -> 12 (세그먼트 파일이 아니면 -1)
+    private static int segmentNumber(String fileName) {
+        if (!fileName.startsWith(SEGMENT_PREFIX) || !fileName.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        String digits = fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length());
+        if (digits.isEmpty() || !digits.chars().allMatch(Character::isDigit)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        void visit(int offset, ByteBuffer payload);
+    }
+
+    // 하나의 세그먼트 파일 (쓰기는 FileChannel, 읽기는 mmap)
+    private static final class Segment {
+        private final int number;
+        private final FileChannel channel;
+        private final MappedByteBuffer mapped;
+        private final int size;
+        private int writePosition;
+
+        Segment(int number, Path path, int size) throws IOException {
+            this.number = number;
+            this.size = size;
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            if (channel.size() < size) {
+                // 고정 크기로 미리 확보 (빈 공간은 0 -> 스캔 종료 지점)
+                channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+            }
+            this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            // 새 파일이거나 헤더 기록 전에 중단된 파일 -> 헤더부터 기록
+            if (mapped.getInt(0) == 0) {
+                ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION);
+                header.flip();
+                channel.write(header, 0);
+            } else if (mapped.getInt(0) != MAGIC) {
+                throw new IOException("세그먼트 헤더 손상: " + path);
+            } else if (mapped.getInt(4) != FORMAT_VERSION) {
+                // v1(EventSerializer) 리더는 제거됨 -> EventCodec으로 잘못 읽지 않도록 열기 자체를 거부
+                throw new IOException(String.format("지원하지 않는 세그먼트 형식 v%d (현재 v%d): %s",
+                        mapped.getInt(4), FORMAT_VERSION, path));
+            }
+            this.writePosition = SEGMENT_HEADER_SIZE;
+        }
+
+        int remaining() {
+            return size - writePosition;
+        }
+
+        int append(ByteBuffer payload) throws IOException {
+            int length = payload.remaining();
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE).putInt(length).putInt((int) crc.getValue());
+            header.flip();
+
+            int offset = writePosition;
+            ByteBuffer[] record = {header, payload.duplicate()};
+            long written = 0;
+            while (written < RECORD_HEADER_SIZE + length) {
+                channel.position(offset + written);
+                written += channel.write(record);
+            }
+            writePosition += RECORD_HEADER_SIZE + length;
+            return offset;
+        }
+
+        ByteBuffer payloadAt(int offset) {
+            int length = mapped.getInt(offset);
+            return mapped.slice(offset + RECORD_HEADER_SIZE, length);
+        }
+
+        // 유효한 레코드를 순서대로 방문하고, 마지막 유효 레코드의 끝 위치 반환
+        int scan(RecordVisitor visitor) {
+            int position = SEGMENT_HEADER_SIZE;
+            while (position + RECORD_HEADER_SIZE <= size) {
+                int length = mapped.getInt(position);
+                if (length <= 0 || position + RECORD_HEADER_SIZE + length > size) {
+                    break;
+                }
+                ByteBuffer payload = mapped.slice(position + RECORD_HEADER_SIZE, length);
+                CRC32 crc = new CRC32();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != mapped.getInt(position + 4)) {
+                    break;  // 찢어진 쓰기 또는 손상 -> 이후는 버림
+                }
+                visitor.visit(position, payload);
+                position += RECORD_HEADER_SIZE + length;
+            }
+            return position;
+        }
+
+        // 유효 끝 이후를 0으로 덮어 다음 스캔이 쓰레기를 읽지 않도록 함
+        void truncateAfter(int validEnd) throws IOException {
+            writePosition = validEnd;
+            int dirty = size - validEnd;
+            if (dirty > 0 && !isZero(validEnd)) {
+                channel.write(ByteBuffer.wrap(new byte[dirty]), validEnd);
+                channel.force(false);
+            }
+        }
+
+        private boolean isZero(int from) {
+            for (int i = from; i < size; i++) {
+                if (mapped.get(i) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void force() throws IOException {
+            channel.force(false);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // (세그먼트 위치, 오프셋) 쌍을 long 하나로 묶어 박싱 없이 보관
+    // maxTimestamps[i] = 0..i 구간 최대 발생 시각 (비감소) -> 시점 조회 이분 탐색
+    private static final class PointerList {
+        private long[] pointers = new long[8];
+        private long[] maxTimestamps = new long[8];
+        private int size;
+
+        void add(int segment, int offset, long timestamp) {
+            if (size == pointers.length) {
+                pointers = Arrays.copyOf(pointers, size * 2);
+                maxTimestamps = Arrays.copyOf(maxTimestamps, size * 2);
+            }
+            pointers[size] = ((long) segment << 32) | (offset & 0xFFFFFFFFL);
+            maxTimestamps[size] = size == 0 ? timestamp : Math.max(maxTimestamps[size - 1], timestamp);
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int segment(int i) {
+            return (int) (pointers[i] >>> 32);
+        }
+
+        int offset(int i) {
+            return (int) pointers[i];
+        }
+
+        // timestamp 이하 구간의 길이
+        int countUntil(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (maxTimestamps[mid] <= timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
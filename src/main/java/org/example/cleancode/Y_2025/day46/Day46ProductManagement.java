@@ -2,6 +2,10 @@ package org.example.cleancode.Y_2025.day46;
 
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Day 46: 상품 관리 시스템
@@ -14,10 +18,15 @@ import java.util.*;
  * - 통계 조회 시 매번 계산 (비효율)
  * - 읽기 전용 데이터에 쓰기 락 발생
  * - 확장성 제한 (읽기/쓰기 독립 스케일링 불가)
+ *
+ * 성능 개선:
+ * - 쓰기는 이벤트 로그 append만, 뷰는 뷰별 소비 스레드에서 비동기 반영 (ProjectionEngine)
+ * - 이벤트 로그와 복제 스트림은 바이너리 코덱으로 인코딩한 레코드 (ProductEventCodec)
+ * - 재고 부족 뷰는 재고 순 정렬 인덱스, 카테고리 통계는 LongAdder, 조회는 복사 없는 뷰
  */
 public class Day46ProductManagement {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
         ProductService service = new ProductService();
 
         // 상품 등록
@@ -29,11 +38,16 @@ public class Day46ProductManagement {
         service.updateStock("P001", 8);
         service.updateStock("P002", 45);
 
+        // 뷰는 비동기로 반영되므로 조회 전에 따라잡을 때까지 대기
+        service.awaitProjections();
+
         // 조회 (문제: 매번 계산, 비효율적)
         service.printProductList();
         service.printCategoryStats();
         service.printLowStockAlert();
 
+        // 복제: 인코딩된 레코드를 그대로 팔로워 로그로
+        service.replicateTo(new EventLog());
     }
 
 }
@@ -65,6 +79,18 @@ class ProductCreatedEvent implements DomainEvent {
         this.timestamp = System.currentTimeMillis();
     }
 
+    // 코덱/로그에서 읽어온 이벤트 복원용
+    ProductCreatedEvent(String eventId, String productId, String name, int price, String category,
+                        int stock, long timestamp) {
+        this.eventId = eventId;
+        this.productId = productId;
+        this.name = name;
+        this.price = price;
+        this.category = category;
+        this.stock = stock;
+        this.timestamp = timestamp;
+    }
+
     @Override
     public String getEventId() {
         return eventId;
@@ -117,6 +143,15 @@ class StockUpdatedEvent implements DomainEvent {
         this.timestamp = System.currentTimeMillis();
     }
 
+    // 코덱/로그에서 읽어온 이벤트 복원용
+    StockUpdatedEvent(String eventId, String productId, int oldStock, int newStock, long timestamp) {
+        this.eventId = eventId;
+        this.productId = productId;
+        this.oldStock = oldStock;
+        this.newStock = newStock;
+        this.timestamp = timestamp;
+    }
+
     @Override
     public String getEventId() {
         return eventId;
@@ -202,11 +237,31 @@ class Product {
 }
 
 // 상품 목록 뷰 (DTO)
-class ProductListView {
+// 상품별 상태만 가지므로 서로 다른 상품은 동시에 반영해도 안전 -> 병렬 재구성 가능
+class ProductListView implements Projection {
     private final Map<String, ProductSummary> products;
 
     public ProductListView() {
-        this.products = new HashMap<>();
+        this.products = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void handle(DomainEvent event) {
+        if (event instanceof ProductCreatedEvent) {
+            on((ProductCreatedEvent) event);
+        } else if (event instanceof StockUpdatedEvent) {
+            on((StockUpdatedEvent) event);
+        }
+    }
+
+    @Override
+    public void reset() {
+        products.clear();
+    }
+
+    @Override
+    public boolean supportsParallelRebuild() {
+        return true;
     }
 
     // 스톡 생성
@@ -230,9 +285,9 @@ class ProductListView {
         }
     }
 
-    // 조회
-    public List<ProductSummary> getAll() {
-        return new ArrayList<>(products.values());
+    // 조회 (복사 없는 읽기 전용 뷰)
+    public Collection<ProductSummary> getAll() {
+        return Collections.unmodifiableCollection(products.values());
     }
 }
 
@@ -241,7 +296,8 @@ class ProductListView {
 class ProductSummary {
     private final String id;
     private final String name;
-    private int stock;
+    // 뷰 소비 스레드가 쓰고 조회 스레드가 읽음
+    private volatile int stock;
 
     public ProductSummary(String id, String name, int stock) {
         this.id = id;
@@ -267,22 +323,18 @@ class ProductSummary {
 }
 
 // 카테고리 통계 (DTO)
+// 여러 소비자/재구성 파티션이 동시에 더해도 유실 없도록 LongAdder(내부 스트라이핑) 사용
 class CategoryStats {
     // 상품 수
-    private int productCount;
+    private final LongAdder productCount = new LongAdder();
     
     // 재고 가치 (price * stock)
-    private long totalValue;
-
-    public CategoryStats() {
-        this.productCount = 0;
-        this.totalValue = 0;
-    }
+    private final LongAdder totalValue = new LongAdder();
 
     // 상품 추가 시 호출
     public void addProduct(int price, int stock) {
-        this.productCount++;
-        this.totalValue += (long) price * stock;
+        productCount.increment();
+        totalValue.add((long) price * stock);
     }
     
     
@@ -291,28 +343,49 @@ class CategoryStats {
     public void updateStock(int price, int oldStock, int newStock) {
         long oldValue = (long) price * oldStock;
         long newValue = (long) price * newStock;
-        this.totalValue = this.totalValue - oldValue + newValue;
+        totalValue.add(newValue - oldValue);
     }
 
     public int getProductCount() {
-        return productCount;
+        return productCount.intValue();
     }
 
     public long getTotalValue() {
-        return totalValue;
+        return totalValue.sum();
     }
 }
 
 
 // 카테고리 통계 뷰
-class CategoryStatsView {
+// 통계는 교환 가능한 덧셈만 하므로 여러 상품을 동시에 반영해도 안전 -> 병렬 재구성 가능
+class CategoryStatsView implements Projection {
     private final Map<String, CategoryStats> stats;
     // 상품 정보 캐시 (price를 알기 위한)
     private final Map<String, ProductInfo> productCache;
 
     public CategoryStatsView() {
-        this.stats = new HashMap<>();
-        this.productCache = new HashMap<>();
+        this.stats = new ConcurrentHashMap<>();
+        this.productCache = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void handle(DomainEvent event) {
+        if (event instanceof ProductCreatedEvent) {
+            on((ProductCreatedEvent) event);
+        } else if (event instanceof StockUpdatedEvent) {
+            on((StockUpdatedEvent) event);
+        }
+    }
+
+    @Override
+    public void reset() {
+        stats.clear();
+        productCache.clear();
+    }
+
+    @Override
+    public boolean supportsParallelRebuild() {
+        return true;
     }
 
     // 상품 생성 이벤트
@@ -359,8 +432,9 @@ class CategoryStatsView {
         return stats.get(category);
     }
 
+    // 복사 없는 읽기 전용 뷰 (값은 조회 시점 기준으로 계속 갱신됨)
     public Map<String, CategoryStats> getAllStats() {
-        return new HashMap<>(stats);
+        return Collections.unmodifiableMap(stats);
     }
 }
 
@@ -387,65 +461,104 @@ class ProductInfo {
 
 // 재고 부족 상품 자동 필터링
 // 목표: 재고 10개 미만 상품을 자동으로 필터링!
-class LowStockView {
+// 전체 상품을 (재고, 상품ID) 순으로 정렬한 인덱스로 관리
+// -> "가장 급한 N개" / 재고 구간 조회가 O(log n + k), 조회 결과는 복사 없는 읽기 전용 뷰
+class LowStockView implements Projection {
     private static final int LOW_STOCK_THRESHOLD = 10;
+    private static final Comparator<ProductSummary> BY_STOCK =
+            Comparator.comparingInt(ProductSummary::getStock).thenComparing(ProductSummary::getId);
 
-    // 재고 부족 상품만 저장 (자동 필터링)
-    private final Map<String, ProductSummary> lowStockProducts;
-    
-    // 상품 정보 캐시 추가
-    private final Map<String, String> productNames;
+    // 재고 순 정렬 인덱스 (원소는 갱신하지 않고 교체 -> 정렬 키 불변)
+    private final ConcurrentSkipListSet<ProductSummary> byStock = new ConcurrentSkipListSet<>(BY_STOCK);
+    // 상품별 현재 인덱스 원소 (교체 시 이전 원소 제거용, 상품명 조회 겸용)
+    private final Map<String, ProductSummary> current = new ConcurrentHashMap<>();
+
+    @Override
+    public void handle(DomainEvent event) {
+        if (event instanceof ProductCreatedEvent) {
+            on((ProductCreatedEvent) event);
+        } else if (event instanceof StockUpdatedEvent) {
+            on((StockUpdatedEvent) event);
+        }
+    }
+
+    @Override
+    public void reset() {
+        byStock.clear();
+        current.clear();
+    }
 
-    public LowStockView() {
-        this.lowStockProducts = new HashMap<>();
-        this.productNames = new HashMap<>();
+    // 상품별 상태만 가짐 -> 병렬 재구성 가능
+    @Override
+    public boolean supportsParallelRebuild() {
+        return true;
     }
 
     // 재고 생성 이벤트
     public void on(ProductCreatedEvent event) {
-        // 상품명 캐시 저장
-        productNames.put(event.getProductId(), event.getName());
+        index(new ProductSummary(event.getProductId(), event.getName(), event.getStock()));
 
         if(event.getStock() < LOW_STOCK_THRESHOLD) {
-            ProductSummary summary = new ProductSummary(
-                event.getProductId(),
-                    event.getName(),
-                    event.getStock()
-            );
-            lowStockProducts.put(event.getProductId(), summary);
             System.out.println("📊 LowStockView 업데이트 (추가: " + event.getName() + ")");
         }
     }
     
     // 재고 업데이트 이벤트
     public void on(StockUpdatedEvent event) {
-        String productId = event.getProductId();
-
-        if (event.getNewStock() < LOW_STOCK_THRESHOLD) {
-            String name = productNames.get(event.getProductId());
-            if(name != null) {
-                ProductSummary summary = new ProductSummary(
-                    event.getProductId(),
-                        name,
-                        event.getNewStock()
-                );
-
-                lowStockProducts.put(event.getProductId(), summary);
-                System.out.println("📊 LowStockView 업데이트 (추가)");
-            }
+        ProductSummary previous = current.get(event.getProductId());
+        if (previous == null) {
+            return;
+        }
 
+        index(new ProductSummary(previous.getId(), previous.getName(), event.getNewStock()));
 
-        } else {
-            // 재고가 충분했으면 제거
-            if(lowStockProducts.remove(productId) != null ) {
-                System.out.println("📊 LowStockView 업데이트 (제거: " + productId + ")");
-            }
+        boolean wasLow = previous.getStock() < LOW_STOCK_THRESHOLD;
+        boolean isLow = event.getNewStock() < LOW_STOCK_THRESHOLD;
+        if (isLow) {
+            System.out.println("📊 LowStockView 업데이트 (추가)");
+        } else if (wasLow) {
+            System.out.println("📊 LowStockView 업데이트 (제거: " + event.getProductId() + ")");
+        }
+    }
+
+    // 같은 상품은 한 스레드에서만 갱신됨 (소비 스레드 또는 재구성 파티션)
+    private void index(ProductSummary summary) {
+        ProductSummary previous = current.put(summary.getId(), summary);
+        if (previous != null) {
+            byStock.remove(previous);
+        }
+        byStock.add(summary);
+    }
 
+    // 재고 부족 상품 (재고 적은 순)
+    public Collection<ProductSummary> getLowStockProducts() {
+        return getBelow(LOW_STOCK_THRESHOLD);
+    }
+
+    // 재고 threshold 미만 상품 (재고 적은 순)
+    public Collection<ProductSummary> getBelow(int threshold) {
+        return Collections.unmodifiableSet(byStock.headSet(new ProductSummary("", "", threshold)));
+    }
+
+    // 재고 [minStock, maxStock) 구간 상품 (재고 적은 순)
+    public Collection<ProductSummary> getInStockRange(int minStock, int maxStock) {
+        if (minStock >= maxStock) {
+            return Collections.emptySet();
         }
+        return Collections.unmodifiableSet(byStock.subSet(
+                new ProductSummary("", "", minStock), new ProductSummary("", "", maxStock)));
     }
 
-    public List<ProductSummary> getLowStockProducts() {
-        return new ArrayList<>(lowStockProducts.values());
+    // 재고가 가장 적은 N개
+    public List<ProductSummary> getMostCritical(int n) {
+        List<ProductSummary> result = new ArrayList<>(Math.min(n, 64));
+        for (ProductSummary summary : byStock) {
+            if (result.size() >= n) {
+                break;
+            }
+            result.add(summary);
+        }
+        return result;
     }
 
 }
@@ -453,6 +566,7 @@ class LowStockView {
 
 
 // 목표: ProductService가 Command를 받아서 → 이벤트 발행 → 뷰들 자동 업데이트
+// 쓰기 경로는 로그 append만 부담, 뷰 반영은 ProjectionEngine 소비 스레드가 담당
 class ProductService {
     // 문제: 읽기/쓰기가 같은 저장소
     private Map<String, Product> products = new HashMap<>();
@@ -461,6 +575,33 @@ class ProductService {
     private CategoryStatsView categoryStatsView = new CategoryStatsView();
     private LowStockView lowStockView = new LowStockView();
 
+    private final EventLog eventLog = new EventLog();
+    private final ProjectionEngine projections = new ProjectionEngine(eventLog);
+
+    public ProductService() {
+        projections.register("productList", productListView);
+        projections.register("categoryStats", categoryStatsView);
+        projections.register("lowStock", lowStockView);
+    }
+
+    // 팔로워 로그가 끝까지 따라잡을 때까지 복제 배치 전송 (받은 이벤트가 원본과 같은지 확인)
+    public void replicateTo(EventLog follower) {
+        while (follower.size() < eventLog.size()) {
+            follower.appendRecords(eventLog.readRecords(follower.size(), 256));
+        }
+        for (long i = 0; i < follower.size(); i++) {
+            if (!follower.get(i).getEventId().equals(eventLog.get(i).getEventId())) {
+                throw new IllegalStateException("복제 불일치: position " + i);
+            }
+        }
+        System.out.printf("%n✓ 복제: 이벤트 %d건, %d bytes%n", follower.size(), follower.byteSize());
+    }
+
+    // 모든 뷰가 지금까지의 쓰기를 반영할 때까지 대기
+    public void awaitProjections() throws InterruptedException {
+        projections.awaitCaughtUp(5, TimeUnit.SECONDS);
+    }
+
     // Command: 쓰기 작업
     public void createProduct(String id, String name, int price,
                               String category, int stock) {
@@ -473,10 +614,8 @@ class ProductService {
             id, name, price, category, stock
         );
 
-        // 이벤트 발행 후 뷰 추가
-        productListView.on(event);
-        categoryStatsView.on(event);
-        lowStockView.on(event);
+        // 이벤트 발행 (뷰 반영은 비동기)
+        eventLog.append(event);
         
         System.out.println("✓ 상품 등록: " + name);
     }
@@ -492,10 +631,8 @@ class ProductService {
                 id, oldStock, newStock
             );
 
-            // 이벤트 발행 후 뷰 추가
-            productListView.on(event);
-            categoryStatsView.on(event);
-            lowStockView.on(event);
+            // 이벤트 발행 (뷰 반영은 비동기)
+            eventLog.append(event);
 
 
             System.out.println("✓ 재고 업데이트: " + id);
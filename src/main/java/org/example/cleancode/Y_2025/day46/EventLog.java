@@ -0,0 +1,166 @@
+package org.example.cleancode.Y_2025.day46;
+
+import org.example.cleancode.Y_2025.day45.BinaryEncoding;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 상품 이벤트 로그 (append only, 위치 = 0부터 증가하는 순번)
+ *
+ * - 이벤트는 ProductEventCodec으로 인코딩한 레코드로 보관 (이벤트 객체 + UUID 문자열 대신 레코드당 수십 바이트), 읽을 때 디코딩
+ * - 레코드는 byte[] 하나에 이어 붙이고 위치별 시작 오프셋만 int[]로 보관
+ *   배열이 커질 때 새 배열로 복사하므로 읽는 쪽은 락 없이 기존 위치를 읽을 수 있음
+ * - 인코딩 중 사전에 등록된 정의는 기록 실패 시 되돌림 (mark / truncate) -> 이후 번호가 어긋나지 않음
+ * - 복제: readRecords로 인코딩된 레코드를 그대로 보내고, 팔로워는 appendRecords로 디코딩해 확인한 뒤 바이트 그대로 보관
+ *   사전은 스트림 단위 -> 팔로워가 0번부터 순서대로 받으면 같은 번호가 되므로 다시 인코딩하지 않음
+ *   (팔로워 로그에는 append 하지 않음, 직접 쓰면 사전 번호가 리더와 어긋남)
+ *
+ * 복제 배치 형식: [from varint] + ([length varint][record]) 반복
+ */
+class EventLog {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final ProductEventCodec codec = new ProductEventCodec();
+
+    // 읽는 쪽은 size를 먼저 읽은 뒤 배열을 읽음 (volatile -> 교체된 배열의 내용까지 보임)
+    private volatile byte[] data = new byte[64 * 1024];
+    // offsets[i] = 레코드 i 시작, offsets[size] = 끝
+    private volatile int[] offsets = new int[1024 + 1];
+    private volatile long size;
+
+    long append(DomainEvent event) {
+        lock.lock();
+        try {
+            int n = (int) size;
+            int start = offsets[n];
+            int mark = codec.dictionary().size();
+            while (true) {
+                ByteBuffer out = ByteBuffer.wrap(data, start, data.length - start);
+                try {
+                    codec.encode(event, out);
+                    return publish(n, out.position());
+                } catch (BufferOverflowException e) {
+                    codec.dictionary().truncate(mark);
+                    data = Arrays.copyOf(data, data.length * 2);
+                } catch (RuntimeException e) {
+                    codec.dictionary().truncate(mark);
+                    throw e;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    // 인코딩된 레코드 전체 크기
+    int byteSize() {
+        int current = (int) size;
+        return offsets[current];
+    }
+
+    DomainEvent get(long position) {
+        long current = size;
+        if (position >= current) {
+            throw new IndexOutOfBoundsException("position " + position + ", size " + current);
+        }
+        int[] starts = offsets;
+        int p = (int) position;
+        return codec.decode(ByteBuffer.wrap(data, starts[p], starts[p + 1] - starts[p]));
+    }
+
+    // position 이후 이벤트가 생길 때까지 대기 후 현재 크기 반환 (타임아웃 시 그대로 반환)
+    long awaitBeyond(long position, long timeout, TimeUnit unit) throws InterruptedException {
+        if (size > position) {
+            return size;
+        }
+        lock.lock();
+        try {
+            long nanos = unit.toNanos(timeout);
+            while (size <= position && nanos > 0) {
+                nanos = appended.awaitNanos(nanos);
+            }
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 복제 배치: from부터 최대 maxRecords개 레코드를 인코딩된 바이트 그대로
+    ByteBuffer readRecords(long from, int maxRecords) {
+        long current = size;
+        if (from > current) {
+            throw new IndexOutOfBoundsException("from " + from + ", size " + current);
+        }
+        int[] starts = offsets;
+        byte[] records = data;
+        int first = (int) from;
+        int end = (int) Math.min(current, from + maxRecords);
+
+        // varint 최대 5바이트 (from 포함)
+        ByteBuffer batch = ByteBuffer.allocate(5 + (end - first) * 5 + starts[end] - starts[first]);
+        BinaryEncoding.writeVarLong(batch, from);
+        for (int p = first; p < end; p++) {
+            int length = starts[p + 1] - starts[p];
+            BinaryEncoding.writeVarInt(batch, length);
+            batch.put(records, starts[p], length);
+        }
+        return batch.flip();
+    }
+
+    // 팔로워: 복제 배치를 순서대로 디코딩해 확인(사전 재구성)한 뒤 바이트 그대로 추가, 추가한 건수 반환
+    // 배치 시작 위치가 현재 끝과 다르면 IllegalStateException (빠진 구간 / 중복 전송)
+    int appendRecords(ByteBuffer batch) {
+        lock.lock();
+        try {
+            long from = BinaryEncoding.readVarLong(batch);
+            if (from != size) {
+                throw new IllegalStateException("복제 위치 불일치: 배치 " + from + ", 로그 끝 " + size);
+            }
+            int count = 0;
+            while (batch.hasRemaining()) {
+                int length = (int) BinaryEncoding.readVarLong(batch);
+                ByteBuffer record = batch.slice(batch.position(), length);
+                int mark = codec.dictionary().size();
+                try {
+                    codec.decode(record.duplicate());
+                } catch (RuntimeException e) {
+                    codec.dictionary().truncate(mark);
+                    throw new IllegalStateException("복제 레코드 손상: position " + size, e);
+                }
+
+                int n = (int) size;
+                int start = offsets[n];
+                if (data.length - start < length) {
+                    data = Arrays.copyOf(data, Math.max(data.length * 2, start + length));
+                }
+                record.get(data, start, length);
+                publish(n, start + length);
+                batch.position(batch.position() + length);
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // lock 보유 상태에서 호출: 레코드 n의 끝을 기록하고 공개
+    private long publish(int n, int end) {
+        if (n + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[n + 1] = end;
+        size = n + 1;
+        appended.signalAll();
+        return n;
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.cleancode.Y_2025.day46;
+
+import org.example.cleancode.Y_2025.day45.AggregateDictionary;
+import org.example.cleancode.Y_2025.day45.BinaryEncoding;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * 상품 이벤트 바이너리 코덱 (Day45 EventCodec과 같은 형식 규칙, 저수준 인코딩은 BinaryEncoding 공유)
+ *
+ * 레코드 형식:
+ *   [header:1]   상위 3비트 = 스키마 버전, 하위 5비트 = 이벤트 타입
+ *   [eventId:16] UUID 원본 16바이트
+ *   [productId]  사전 참조 varint (n > 0 -> 사전 n-1번), 0이면 문자열 정의가 이어짐
+ *   [timestamp]  varint (long)
+ *   ProductCreated: name(문자열) price(zigzag) category(사전 참조) stock(zigzag)
+ *   StockUpdated:   oldStock(zigzag) newStock(zigzag)
+ *
+ * 스키마 진화: 필드는 끝에만 추가 + 스키마 버전 증가, 디코더는 아는 필드까지만 읽음.
+ * 삭제/순서 변경은 새 타입 번호로. productId와 category는 같은 사전을 공유 (스트림 단위 상태).
+ */
+class ProductEventCodec {
+
+    private static final int TYPE_MASK = 0x1F;
+    private static final int VERSION_SHIFT = 5;
+
+    private static final int PRODUCT_CREATED = 1;
+    private static final int STOCK_UPDATED = 2;
+
+    private static final int PRODUCT_CREATED_SCHEMA = 1;
+    private static final int STOCK_UPDATED_SCHEMA = 1;
+
+    private final AggregateDictionary dictionary = new AggregateDictionary();
+
+    AggregateDictionary dictionary() {
+        return dictionary;
+    }
+
+    // 버퍼가 모자라면 BufferOverflowException (호출자가 버퍼를 키워 재시도)
+    // 새 productId / category는 인코딩 중에 사전에 등록됨 -> 기록 실패 시 dictionary().truncate(mark)로 되돌릴 것
+    void encode(DomainEvent event, ByteBuffer out) {
+        if (event instanceof ProductCreatedEvent) {
+            ProductCreatedEvent e = (ProductCreatedEvent) event;
+            writeHeader(out, PRODUCT_CREATED, PRODUCT_CREATED_SCHEMA, event);
+            BinaryEncoding.writeString(out, e.getName());
+            BinaryEncoding.writeVarInt(out, BinaryEncoding.zigzag(e.getPrice()));
+            writeDictionary(out, e.getCategory());
+            BinaryEncoding.writeVarInt(out, BinaryEncoding.zigzag(e.getStock()));
+        } else if (event instanceof StockUpdatedEvent) {
+            StockUpdatedEvent e = (StockUpdatedEvent) event;
+            writeHeader(out, STOCK_UPDATED, STOCK_UPDATED_SCHEMA, event);
+            BinaryEncoding.writeVarInt(out, BinaryEncoding.zigzag(e.getOldStock()));
+            BinaryEncoding.writeVarInt(out, BinaryEncoding.zigzag(e.getNewStock()));
+        } else {
+            throw new IllegalArgumentException("알 수 없는 이벤트: " + event.getClass().getSimpleName());
+        }
+    }
+
+    // 처음 보는 정의는 사전에 등록 -> 사전을 바꿀 수 있는 디코딩(스트림을 처음부터 읽는 쪽)은 쓰기 락 안에서
+    DomainEvent decode(ByteBuffer in) {
+        int header = in.get() & 0xFF;
+        int type = header & TYPE_MASK;
+        if ((header >>> VERSION_SHIFT) == 0) {
+            throw new IllegalStateException("잘못된 스키마 버전: type=" + type);
+        }
+
+        String eventId = new UUID(in.getLong(), in.getLong()).toString();
+        String productId = readDictionary(in);
+        long timestamp = BinaryEncoding.readVarLong(in);
+
+        switch (type) {
+            case PRODUCT_CREATED: {
+                String name = BinaryEncoding.readString(in);
+                int price = BinaryEncoding.unzigzag(BinaryEncoding.readVarLong(in));
+                String category = readDictionary(in);
+                int stock = BinaryEncoding.unzigzag(BinaryEncoding.readVarLong(in));
+                return new ProductCreatedEvent(eventId, productId, name, price, category, stock, timestamp);
+            }
+            case STOCK_UPDATED: {
+                int oldStock = BinaryEncoding.unzigzag(BinaryEncoding.readVarLong(in));
+                int newStock = BinaryEncoding.unzigzag(BinaryEncoding.readVarLong(in));
+                return new StockUpdatedEvent(eventId, productId, oldStock, newStock, timestamp);
+            }
+            default:
+                throw new IllegalStateException("알 수 없는 이벤트 타입: " + type);
+        }
+    }
+
+    private void writeHeader(ByteBuffer out, int type, int schema, DomainEvent event) {
+        out.put((byte) ((schema << VERSION_SHIFT) | type));
+
+        UUID eventId = UUID.fromString(event.getEventId());
+        out.putLong(eventId.getMostSignificantBits());
+        out.putLong(eventId.getLeastSignificantBits());
+
+        writeDictionary(out, event.getAggregateId());
+        BinaryEncoding.writeVarLong(out, event.getTimestamp());
+    }
+
+    private void writeDictionary(ByteBuffer out, String value) {
+        int id = dictionary.idOf(value);
+        if (id >= 0) {
+            BinaryEncoding.writeVarInt(out, id + 1);
+            return;
+        }
+        BinaryEncoding.writeVarInt(out, 0);
+        BinaryEncoding.writeString(out, value);
+        dictionary.register(value);
+    }
+
+    private String readDictionary(ByteBuffer in) {
+        int ref = (int) BinaryEncoding.readVarLong(in);
+        if (ref > 0) {
+            return dictionary.valueOf(ref - 1);
+        }
+        // 정의: 처음 읽는 경우에만 등록 (임의 위치 재읽기 시에는 이미 등록되어 있음)
+        String value = BinaryEncoding.readString(in);
+        if (dictionary.idOf(value) < 0) {
+            dictionary.register(value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,226 @@
+package org.example.cleancode.Y_2025.day46;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * 비동기 프로젝션 엔진
+ *
+ * - 쓰기 경로는 EventLog.append 한 번만 수행 (뷰 갱신 비용 없음)
+ * - 뷰마다 전용 소비 스레드가 로그를 순서대로 읽어 반영하고, 처리 위치를 체크포인트로 기록
+ * - 등록 시 저장된 체크포인트가 있으면 그 위치부터 이어서 반영 (뷰 상태가 체크포인트와 함께 보존된다는 전제)
+ *   체크포인트가 없거나 로그보다 앞서 있으면, 또는 뷰 로직이 바뀌면(rebuild) 로그 전체를 다시 재생해 재구성
+ * - 재생 구간은 로그를 한 번만 읽어 productId 기준 파티션별 위치 목록으로 나눈 뒤 파티션마다 병렬 반영
+ *   (뷰가 허용할 때만, 같은 상품 이벤트는 한 파티션 안에서 순서대로)
+ */
+class ProjectionEngine implements AutoCloseable {
+
+    private final EventLog log;
+    private final CheckpointStore checkpoints;
+    private final int rebuildPartitions;
+    private final Map<String, ProjectionConsumer> consumers = new LinkedHashMap<>();
+
+    ProjectionEngine(EventLog log) {
+        this(log, new InMemoryCheckpointStore(), Runtime.getRuntime().availableProcessors());
+    }
+
+    ProjectionEngine(EventLog log, CheckpointStore checkpoints, int rebuildPartitions) {
+        this.log = log;
+        this.checkpoints = checkpoints;
+        this.rebuildPartitions = Math.max(1, rebuildPartitions);
+    }
+
+    // 뷰 등록: 체크포인트부터 현재 로그 끝까지 따라잡은 뒤 실시간 소비 시작
+    synchronized void register(String name, Projection projection) {
+        if (consumers.containsKey(name)) {
+            throw new IllegalArgumentException("이미 등록된 프로젝션: " + name);
+        }
+        start(name, projection, checkpoints.load(name));
+    }
+
+    // 뷰 로직이 바뀐 경우: 소비 중지 -> 초기화 후 재구성 -> 소비 재개
+    synchronized void rebuild(String name) {
+        ProjectionConsumer old = consumers.remove(name);
+        if (old == null) {
+            throw new IllegalArgumentException("등록되지 않은 프로젝션: " + name);
+        }
+        old.stopAndJoin();
+        start(name, old.projection, 0);
+    }
+
+    private void start(String name, Projection projection, long checkpoint) {
+        long position = catchUp(name, projection, checkpoint, log.size());
+        ProjectionConsumer consumer = new ProjectionConsumer(name, projection, position);
+        consumers.put(name, consumer);
+        consumer.start();
+    }
+
+    // 체크포인트 기준 지연 건수
+    long lag(String name) {
+        return log.size() - checkpoints.load(name);
+    }
+
+    // 모든 뷰가 현재 로그 끝까지 반영될 때까지 대기 (조회 직전 읽기 일관성이 필요할 때)
+    boolean awaitCaughtUp(long timeout, TimeUnit unit) throws InterruptedException {
+        long target = log.size();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (String name : consumers.keySet()) {
+            while (checkpoints.load(name) < target) {
+                if (System.nanoTime() >= deadline) {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        consumers.values().forEach(ProjectionConsumer::stopAndJoin);
+        consumers.clear();
+    }
+
+    // [from, end) 반영 (from = 0 이거나 체크포인트가 로그보다 앞서 있으면 초기화 후 처음부터)
+    private long catchUp(String name, Projection projection, long from, long end) {
+        if (from <= 0 || from > end) {
+            projection.reset();
+            from = 0;
+        }
+
+        int count = (int) (end - from);
+        if (projection.supportsParallelRebuild() && rebuildPartitions > 1 && count > 1) {
+            replayPartitioned(projection, from, count);
+        } else {
+            for (long i = from; i < end; i++) {
+                projection.handle(log.get(i));
+            }
+        }
+
+        checkpoints.save(name, end);
+        return end;
+    }
+
+    // 로그를 한 번 읽어(디코딩도 한 번) 파티션별 위치 목록을 만든 뒤(계수 정렬, 로그 순서 유지) 파티션마다 병렬 반영
+    private void replayPartitioned(Projection projection, long from, int count) {
+        int partitions = rebuildPartitions;
+        DomainEvent[] events = new DomainEvent[count];
+        int[] partitionOf = new int[count];
+        // starts[p] ~ starts[p + 1]: 파티션 p의 위치 구간
+        int[] starts = new int[partitions + 1];
+        for (int i = 0; i < count; i++) {
+            events[i] = log.get(from + i);
+            int partition = Math.floorMod(events[i].getAggregateId().hashCode(), partitions);
+            partitionOf[i] = partition;
+            starts[partition + 1]++;
+        }
+        for (int p = 0; p < partitions; p++) {
+            starts[p + 1] += starts[p];
+        }
+        int[] positions = new int[count];
+        int[] next = Arrays.copyOf(starts, partitions);
+        for (int i = 0; i < count; i++) {
+            positions[next[partitionOf[i]]++] = i;
+        }
+
+        IntStream.range(0, partitions).parallel().forEach(partition -> {
+            for (int k = starts[partition]; k < starts[partition + 1]; k++) {
+                projection.handle(events[positions[k]]);
+            }
+        });
+    }
+
+    // 뷰 하나의 소비 스레드
+    private final class ProjectionConsumer implements Runnable {
+        private static final int BATCH_SIZE = 256;
+
+        private final String name;
+        private final Projection projection;
+        private final Thread thread;
+        private volatile boolean running = true;
+        private long position;
+
+        ProjectionConsumer(String name, Projection projection, long position) {
+            this.name = name;
+            this.projection = projection;
+            this.position = position;
+            this.thread = new Thread(this, "projection-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void stopAndJoin() {
+            running = false;
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    long available = log.awaitBeyond(position, 100, TimeUnit.MILLISECONDS);
+                    long end = Math.min(available, position + BATCH_SIZE);
+                    for (long i = position; i < end; i++) {
+                        projection.handle(log.get(i));
+                    }
+                    if (end > position) {
+                        position = end;
+                        checkpoints.save(name, position);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    // 같은 이벤트에서 계속 실패하므로 소비 중단 -> 수정 후 rebuild(name)
+                    System.out.println("❌ 프로젝션 실패: " + name + " @" + position + " - " + e.getMessage());
+                    return;
+                }
+            }
+        }
+    }
+}
+
+// 이벤트를 받아 읽기 모델을 갱신하는 뷰
+interface Projection {
+    void handle(DomainEvent event);
+
+    // 재구성 전 상태 초기화
+    void reset();
+
+    // 서로 다른 상품의 이벤트를 동시에 반영해도 안전한 뷰만 true
+    default boolean supportsParallelRebuild() {
+        return false;
+    }
+}
+
+// 뷰별 처리 위치 저장소
+interface CheckpointStore {
+    void save(String projection, long position);
+
+    long load(String projection);
+}
+
+class InMemoryCheckpointStore implements CheckpointStore {
+    private final Map<String, Long> positions = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(String projection, long position) {
+        positions.put(projection, position);
+    }
+
+    @Override
+    public long load(String projection) {
+        return positions.getOrDefault(projection, 0L);
+    }
+}
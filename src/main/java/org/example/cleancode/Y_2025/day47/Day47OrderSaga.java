@@ -1,7 +1,20 @@
 package org.example.cleancode.Y_2025.day47;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Day 47: 주문 처리 시스템 (분산 트랜잭션)
@@ -20,6 +33,12 @@ import java.util.List;
  * - 보상 로직이 비즈니스 로직과 섞여있음
  * - 재시도 전략 없음
  * - 상태 추적 불가
+ *
+ * 성능 개선:
+ * - Saga를 의존 관계 DAG로 정의 -> 독립 Step(결제/재고)은 제한된 스레드 풀에서 동시에 실행
+ * - 보상도 의존 관계 역순을 지키는 범위에서 동시에 실행
+ * - 결과에 Step별 시작 시점/실행/보상 시간 기록
+ * - SagaRuntime: 여러 Saga 동시 실행 + 진행 상황을 저널(FileSagaLog)에 기록, 재시작 시 이어서 실행/보상
  */
 public class Day47OrderSaga {
 
@@ -207,66 +226,364 @@ class ScheduleDeliveryStep implements SagaStep {
     }
 }
 
-// 오케스트레이터가 관리 (실행할 Step 리스트, 실행 결과)
+// 오케스트레이터가 관리 (실행할 Step DAG, 실행 결과)
+// - Step은 의존하는 Step이 모두 끝나면 실행 -> 서로 독립인 Step은 제한된 스레드 풀에서 동시에 실행
+// - 실패하면 새 Step은 시작하지 않고, 이미 실행 중인 Step이 끝난 뒤 완료된 Step만 보상
+// - 보상은 의존 관계의 역순: 자신에게 의존하는 Step의 보상이 끝나야 보상 (서로 독립이면 동시에)
+// - 전체 지연 = 단계 지연의 합이 아니라 임계 경로(critical path)
 class SagaOrchestrator {
-    // Step들 순서대로 저장
-    List<SagaStep> steps = new ArrayList<>();
-    
-    // Step 추가
+    // Step은 대부분 원격 호출(I/O 대기) -> 코어 수보다 넉넉하게, 대신 상한은 둠
+    private static final ExecutorService SHARED_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2), runnable -> {
+                Thread thread = new Thread(runnable, "saga-step");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Executor executor;
+
+    // Step들 등록 순서대로 저장 (의존 대상은 항상 먼저 등록됨 -> 등록 순서 = 위상 순서, 순환 불가)
+    private final List<StepNode> nodes = new ArrayList<>();
+    private final Map<SagaStep, StepNode> nodeByStep = new IdentityHashMap<>();
+
+    public SagaOrchestrator() {
+        this(SHARED_EXECUTOR);
+    }
+
+    public SagaOrchestrator(Executor executor) {
+        this.executor = executor;
+    }
+
+    // Step 추가 (의존 Step 지정 없음 -> 직전에 등록한 Step 다음에 실행, 기존 순차 방식과 동일)
     public void addStep(SagaStep step) {
-        steps.add(step);
-        System.out.println("📌 Step 등록: " + step.getStepName());
+        if (nodes.isEmpty()) {
+            addStep(step, new SagaStep[0]);
+        } else {
+            addStep(step, nodes.get(nodes.size() - 1).step);
+        }
+    }
+
+    // Step 추가 (dependsOn이 모두 성공한 뒤 실행, 비어 있으면 바로 실행)
+    public void addStep(SagaStep step, SagaStep... dependsOn) {
+        if (nodeByStep.containsKey(step)) {
+            throw new IllegalArgumentException("이미 등록된 Step: " + step.getStepName());
+        }
+
+        StepNode node = new StepNode(step, nodes.size() + 1);
+        for (SagaStep dependency : dependsOn) {
+            StepNode parent = nodeByStep.get(dependency);
+            if (parent == null) {
+                throw new IllegalArgumentException("먼저 등록되지 않은 의존 Step: " + dependency.getStepName());
+            }
+            node.dependencies.add(parent);
+            parent.dependents.add(node);
+        }
+
+        nodes.add(node);
+        nodeByStep.put(step, node);
+        System.out.println("📌 Step 등록: " + step.getStepName()
+                + (dependsOn.length == 0 ? "" : " (선행: " + names(node.dependencies) + ")"));
     }
 
     public SagaExecutionResult execute() {
-        System.out.println("\n🚀 Saga 실행 시작 (총 " + steps.size() + "단계)\n");
+        return executeAsync().join();
+    }
 
-        List<SagaStep> executedSteps = new ArrayList<>();
+    // 호출 스레드를 막지 않는 실행 (여러 Saga를 동시에 돌릴 때)
+    public CompletableFuture<SagaExecutionResult> executeAsync() {
+        return executeAsync(SagaListener.NONE, Set.of());
+    }
 
-        for (int i = 0; i < steps.size(); i++) {
-            SagaStep step = steps.get(i);
+    // 실행 (단계 번호는 등록 순서 1부터)
+    // completedSteps: 이미 완료된 단계 (재시작 복구 시 이어서 실행) -> 다시 실행하지 않음
+    public CompletableFuture<SagaExecutionResult> executeAsync(SagaListener listener, Set<Integer> completedSteps) {
+        System.out.println("\n🚀 Saga 실행 시작 (총 " + nodes.size() + "단계)\n");
 
-            try {
+        SagaRun run = new SagaRun(listener, completedSteps);
+        Map<StepNode, CompletableFuture<Void>> executions = new IdentityHashMap<>();
+        for (StepNode node : nodes) {
+            if (completedSteps.contains(node.index)) {
+                executions.put(node, CompletableFuture.completedFuture(null));
+                continue;
+            }
+            executions.put(node, allOf(node.dependencies, executions)
+                    .thenRunAsync(() -> run.execute(node), executor));
+        }
 
-                step.execute();
-                executedSteps.add(step);
+        return allSettled(executions.values())
+                .thenCompose(ignored -> run.aborted
+                        ? compensateAll(run)
+                        : CompletableFuture.completedFuture(null))
+                .thenApply(ignored -> run.result());
+    }
 
-            } catch (Exception e) {
-                System.out.println("❌ " + (i + 1) + "단계 실패: "
-                        + e.getMessage());
+    // 실행 없이 보상만 수행 (재시작 복구 시 중단된 Saga 되돌리기)
+    // steps: 효과가 남아 있을 수 있는 단계 (완료 또는 결과 불명)
+    public CompletableFuture<SagaExecutionResult> compensateAsync(SagaListener listener, Set<Integer> steps,
+                                                                  String reason) {
+        SagaRun run = new SagaRun(listener, steps);
+        run.abort(reason);
+        return compensateAll(run).thenApply(ignored -> run.result());
+    }
 
-                compensateAll(executedSteps);
+    // 완료된 Step만 보상, 자신에게 의존하는 Step의 보상이 끝난 뒤 시작
+    private CompletableFuture<Void> compensateAll(SagaRun run) {
+        System.out.println("\n🔄 보상 트랜잭션 시작");
 
-                return SagaExecutionResult.failure(
-                        i + 1,
-                        steps.size(),
-                        step.getStepName(),
-                        e.getMessage()
-                );
+        Map<StepNode, CompletableFuture<Void>> compensations = new IdentityHashMap<>();
+        // 의존하는 쪽이 항상 나중에 등록되므로 역순으로 돌면 보상 선행 조건이 먼저 만들어짐
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            StepNode node = nodes.get(i);
+            if (run.timings[node.index - 1].getStatus() != StepStatus.COMPLETED) {
+                continue;
             }
+            List<StepNode> completedDependents = new ArrayList<>();
+            for (StepNode dependent : node.dependents) {
+                if (compensations.containsKey(dependent)) {
+                    completedDependents.add(dependent);
+                }
+            }
+            compensations.put(node, allSettled(futuresOf(completedDependents, compensations))
+                    .thenRunAsync(() -> run.compensate(node), executor));
         }
+        return allSettled(compensations.values());
+    }
 
-        System.out.println("\n🎉 Saga 완료! (" + steps.size() + "/"
-                + steps.size() + " 단계 성공)\n");
+    private static CompletableFuture<Void> allOf(List<StepNode> dependencies,
+                                                 Map<StepNode, CompletableFuture<Void>> futures) {
+        return CompletableFuture.allOf(futuresOf(dependencies, futures).toArray(new CompletableFuture<?>[0]));
+    }
 
-        return SagaExecutionResult.success(steps.size());
+    private static List<CompletableFuture<Void>> futuresOf(List<StepNode> nodes,
+                                                          Map<StepNode, CompletableFuture<Void>> futures) {
+        List<CompletableFuture<Void>> result = new ArrayList<>(nodes.size());
+        for (StepNode node : nodes) {
+            result.add(futures.get(node));
+        }
+        return result;
     }
 
-    private void compensateAll(List<SagaStep> executedSteps) {
-        System.out.println("\n🔄 보상 트랜잭션 시작");
+    // 실패 여부와 관계없이 모두 끝날 때까지 대기
+    private static CompletableFuture<Void> allSettled(Collection<CompletableFuture<Void>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, error) -> null);
+    }
+
+    private static String names(List<StepNode> nodes) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (StepNode node : nodes) {
+            joiner.add(node.step.getStepName());
+        }
+        return joiner.toString();
+    }
 
-        for (int i = executedSteps.size() - 1; i >= 0; i--) {
-            SagaStep step = executedSteps.get(i);
+    private static final class StepNode {
+        private final SagaStep step;
+        private final int index;
+        private final List<StepNode> dependencies = new ArrayList<>();
+        private final List<StepNode> dependents = new ArrayList<>();
 
+        private StepNode(SagaStep step, int index) {
+            this.step = step;
+            this.index = index;
+        }
+    }
+
+    // 실행 1회분 상태 (오케스트레이터는 재사용 가능, 실행마다 새로 생성)
+    private final class SagaRun {
+        private final long startNanos = System.nanoTime();
+        private final SagaListener listener;
+        private final StepTiming[] timings = new StepTiming[nodes.size()];
+        // 처음 실패한 Step (이후 Step은 시작하지 않음)
+        private final AtomicReference<StepNode> failure = new AtomicReference<>();
+        private volatile boolean aborted;
+        private volatile String failureReason;
+
+        private SagaRun(SagaListener listener, Set<Integer> completedSteps) {
+            this.listener = listener;
+            for (StepNode node : nodes) {
+                timings[node.index - 1] = completedSteps.contains(node.index)
+                        ? StepTiming.completed(node.step.getStepName(), 0, 0)
+                        : StepTiming.skipped(node.step.getStepName());
+            }
+        }
+
+        private void abort(String reason) {
+            failureReason = reason;
+            aborted = true;
+        }
+
+        private void execute(StepNode node) {
+            if (aborted) {
+                throw new CancellationException("선행 실패로 건너뜀: " + node.step.getStepName());
+            }
+
+            long begin = System.nanoTime();
             try {
+                listener.onStepStarted(node.index);
+                node.step.execute();
+            } catch (Exception e) {
+                timings[node.index - 1] = StepTiming.failed(node.step.getStepName(),
+                        offsetMillis(begin), elapsedMillis(begin));
+                fail(node, e.getMessage());
+                listener.onStepFailed(node.index, e.getMessage());
+                System.out.println("❌ " + node.index + "단계 실패: " + e.getMessage());
+                throw new CompletionException(e);
+            }
 
-                step.compensate();
+            timings[node.index - 1] = StepTiming.completed(node.step.getStepName(),
+                    offsetMillis(begin), elapsedMillis(begin));
+            try {
+                listener.onStepCompleted(node.index);
+            } catch (RuntimeException e) {
+                // 실행은 끝났으므로 완료 상태 유지 -> 보상 대상에 포함
+                fail(node, e.getMessage());
+                throw new CompletionException(e);
+            }
+        }
 
+        private void fail(StepNode node, String reason) {
+            if (failure.compareAndSet(null, node)) {
+                abort(reason);
+            }
+        }
+
+        private void compensate(StepNode node) {
+            StepTiming executed = timings[node.index - 1];
+            long begin = System.nanoTime();
+            try {
+                listener.onCompensationStarted(node.index);
+                node.step.compensate();
+                timings[node.index - 1] = executed.compensated(elapsedMillis(begin), true);
+                listener.onCompensated(node.index, true);
             } catch (Exception e) {
-                System.out.println("  ⚠️ 보상 중 오류: " + step.getStepName()
+                timings[node.index - 1] = executed.compensated(elapsedMillis(begin), false);
+                listener.onCompensated(node.index, false);
+                System.out.println("  ⚠️ 보상 중 오류: " + node.step.getStepName()
                         + " - " + e.getMessage());
             }
         }
+
+        private SagaExecutionResult result() {
+            List<StepTiming> stepTimings = List.of(timings);
+            long elapsed = elapsedMillis(startNanos);
+            if (!aborted) {
+                System.out.println("\n🎉 Saga 완료! (" + nodes.size() + "/"
+                        + nodes.size() + " 단계 성공)\n");
+                return SagaExecutionResult.success(nodes.size(), stepTimings, elapsed);
+            }
+
+            int completed = 0;
+            for (StepTiming timing : timings) {
+                if (timing.getStatus() != StepStatus.FAILED && timing.getStatus() != StepStatus.SKIPPED) {
+                    completed++;
+                }
+            }
+            // 실패 Step 없이 중단된 경우(복구 보상) 실패 단계는 0
+            StepNode failed = failure.get();
+            return SagaExecutionResult.failure(failed == null ? 0 : failed.index, completed, nodes.size(),
+                    failed == null ? null : failed.step.getStepName(), failureReason, stepTimings, elapsed);
+        }
+
+        private long offsetMillis(long begin) {
+            return TimeUnit.NANOSECONDS.toMillis(begin - startNanos);
+        }
+
+        private long elapsedMillis(long begin) {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        }
+    }
+}
+
+// Step 실행/보상 진행 알림 (단계 번호는 등록 순서 1부터, Step을 실행하는 스레드에서 호출)
+// 예외를 던지면 해당 Step 실행이 실패로 처리됨 (예: 저널 기록 실패 시 실행하지 않음)
+interface SagaListener {
+    SagaListener NONE = new SagaListener() {
+    };
+
+    default void onStepStarted(int step) {
+    }
+
+    default void onStepCompleted(int step) {
+    }
+
+    default void onStepFailed(int step, String reason) {
+    }
+
+    default void onCompensationStarted(int step) {
+    }
+
+    default void onCompensated(int step, boolean success) {
+    }
+}
+
+// Step 실행 상태
+enum StepStatus {
+    COMPLETED,              // 실행 성공
+    FAILED,                 // 실행 실패
+    SKIPPED,                // 선행 Step 실패 등으로 실행하지 않음
+    COMPENSATED,            // 실행 성공 후 보상 완료
+    COMPENSATION_FAILED     // 실행 성공 후 보상 실패 (수동 처리 필요)
+}
+
+// Step별 시간 기록 (startOffset = Saga 시작 기준 시작 시각)
+class StepTiming {
+    private final String stepName;
+    private final StepStatus status;
+    private final long startOffsetMillis;
+    private final long executeMillis;
+    private final long compensateMillis;
+
+    private StepTiming(String stepName, StepStatus status,
+                       long startOffsetMillis, long executeMillis, long compensateMillis) {
+        this.stepName = stepName;
+        this.status = status;
+        this.startOffsetMillis = startOffsetMillis;
+        this.executeMillis = executeMillis;
+        this.compensateMillis = compensateMillis;
+    }
+
+    static StepTiming skipped(String stepName) {
+        return new StepTiming(stepName, StepStatus.SKIPPED, 0, 0, 0);
+    }
+
+    static StepTiming completed(String stepName, long startOffsetMillis, long executeMillis) {
+        return new StepTiming(stepName, StepStatus.COMPLETED, startOffsetMillis, executeMillis, 0);
+    }
+
+    static StepTiming failed(String stepName, long startOffsetMillis, long executeMillis) {
+        return new StepTiming(stepName, StepStatus.FAILED, startOffsetMillis, executeMillis, 0);
+    }
+
+    StepTiming compensated(long compensateMillis, boolean success) {
+        return new StepTiming(stepName, success ? StepStatus.COMPENSATED : StepStatus.COMPENSATION_FAILED,
+                startOffsetMillis, executeMillis, compensateMillis);
+    }
+
+    public String getStepName() {
+        return stepName;
+    }
+
+    public StepStatus getStatus() {
+        return status;
+    }
+
+    public long getStartOffsetMillis() {
+        return startOffsetMillis;
+    }
+
+    public long getExecuteMillis() {
+        return executeMillis;
+    }
+
+    public long getCompensateMillis() {
+        return compensateMillis;
+    }
+
+    @Override
+    public String toString() {
+        String text = stepName + " [" + status + "] +" + startOffsetMillis + "ms, 실행 " + executeMillis + "ms";
+        return compensateMillis > 0 ? text + ", 보상 " + compensateMillis + "ms" : text;
     }
 }
 
@@ -281,6 +598,10 @@ class SagaExecutionResult {
     private final String failedStepName;
     private final String failureReason;
 
+    // Step별 시간 (등록 순서), Saga 전체 소요 시간
+    private final List<StepTiming> stepTimings;
+    private final long elapsedMillis;
+
 
     // private 생성자
     // 외부에서 직접 생성하지 못하도록(팩터리 메서드만 사용)
@@ -289,40 +610,63 @@ class SagaExecutionResult {
                                 int totalSteps,
                                 int failedStep,
                                 String failedStepName,
-                                String failureReason) {
+                                String failureReason,
+                                List<StepTiming> stepTimings,
+                                long elapsedMillis) {
         this.success = success;
         this.completedSteps = completedSteps;
         this.totalSteps = totalSteps;
         this.failedStep = failedStep;
         this.failedStepName = failedStepName;
         this.failureReason = failureReason;
+        this.stepTimings = stepTimings;
+        this.elapsedMillis = elapsedMillis;
     }
 
     // 성공
     public static SagaExecutionResult success(int totalSteps) {
+        return success(totalSteps, List.of(), 0);
+    }
+
+    public static SagaExecutionResult success(int totalSteps, List<StepTiming> stepTimings, long elapsedMillis) {
         return new SagaExecutionResult(
                 true,
                 totalSteps,
                 totalSteps,
                 0,
                 null,
-                null
+                null,
+                stepTimings,
+                elapsedMillis
         );
     }
     
     
-    // 실패
+    // 실패 (순차 실행 기준: 실패 단계 이전은 모두 완료)
     public static SagaExecutionResult failure(int failedStep,
                                               int totalSteps,
                                               String stepName,
                                               String reason) {
+        return failure(failedStep, failedStep - 1, totalSteps, stepName, reason, List.of(), 0);
+    }
+
+    // 실패 (병렬 실행 기준: 완료 단계 수를 따로 받음)
+    public static SagaExecutionResult failure(int failedStep,
+                                              int completedSteps,
+                                              int totalSteps,
+                                              String stepName,
+                                              String reason,
+                                              List<StepTiming> stepTimings,
+                                              long elapsedMillis) {
         return new SagaExecutionResult(
                 false,
-                failedStep - 1,
+                completedSteps,
                 totalSteps,
                 failedStep,
                 stepName,
-                reason
+                reason,
+                stepTimings,
+                elapsedMillis
         );
     }
 
@@ -350,25 +694,51 @@ class SagaExecutionResult {
         return failureReason;
     }
 
+    public List<StepTiming> getStepTimings() {
+        return stepTimings;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
     public void printSummary() {
         if (success) {
             System.out.println("✅ Saga 성공: " + completedSteps + "/"
-                    + totalSteps + " 단계 완료");
+                    + totalSteps + " 단계 완료 (" + elapsedMillis + "ms)");
         } else {
-            System.out.println("❌ Saga 실패");
+            System.out.println("❌ Saga 실패 (" + elapsedMillis + "ms)");
             System.out.println("   완료: " + completedSteps + "/" + totalSteps);
             System.out.println("   실패 단계: " + failedStep + ". " + failedStepName);
             System.out.println("   실패 사유: " + failureReason);
         }
+        for (StepTiming timing : stepTimings) {
+            System.out.println("   - " + timing);
+        }
     }
 }
 
 
 class OrderService {
-    private OrderRepository orderRepo = new OrderRepository();
-    private PaymentService paymentService = new PaymentService();
-    private InventoryService inventoryService = new InventoryService();
-    private DeliveryService deliveryService = new DeliveryService();
+    // SagaRuntime에 등록하는 주문 Saga 종류 이름
+    static final String CHECKOUT_SAGA = "checkout";
+
+    private final OrderRepository orderRepo;
+    private final PaymentService paymentService;
+    private final InventoryService inventoryService;
+    private final DeliveryService deliveryService;
+
+    public OrderService() {
+        this(new OrderRepository(), new PaymentService(), new InventoryService(), new DeliveryService());
+    }
+
+    public OrderService(OrderRepository orderRepo, PaymentService paymentService,
+                        InventoryService inventoryService, DeliveryService deliveryService) {
+        this.orderRepo = orderRepo;
+        this.paymentService = paymentService;
+        this.inventoryService = inventoryService;
+        this.deliveryService = deliveryService;
+    }
 
     // 문제: 단계별 실패 시 롤백 로직이 복잡함
     public void processOrder(String orderId, String userId, int amount) {
@@ -422,48 +792,68 @@ class OrderService {
     public void processOrderWithSaga(String orderId, String userId, int amount) {
         System.out.println("=== Saga 방식 주문 처리: " + orderId + " ===");
 
-        SagaOrchestrator saga = new SagaOrchestrator();
-        
+        SagaOrchestrator saga = checkoutSaga(new SagaOrchestrator(), orderId, userId, amount);
+
+        // Saga 실행
+        SagaExecutionResult result = saga.execute();
+
+        if(result.isSuccess()) {
+            orderRepo.updateStatus(orderId, "COMPLETED");
+        } else {
+            orderRepo.updateStatus(orderId, "FAILED");
+        }
+
+        // 결과 요약 출력
+        result.printSummary();
+    }
+
+    // SagaRuntime용 정의 (payload = "주문ID,사용자ID,금액")
+    public SagaDefinition checkoutDefinition() {
+        return (payload, executor) -> {
+            String[] fields = payload.split(",");
+            return checkoutSaga(new SagaOrchestrator(executor), fields[0], fields[1], Integer.parseInt(fields[2]));
+        };
+    }
+
+    static String checkoutPayload(String orderId, String userId, int amount) {
+        return orderId + "," + userId + "," + amount;
+    }
+
+    // 주문 생성 -> (결제 || 재고) -> 배송
+    private SagaOrchestrator checkoutSaga(SagaOrchestrator saga, String orderId, String userId, int amount) {
         // 1단계 주문 생성
-        saga.addStep(new CreateOrderStep(
+        SagaStep createOrder = new CreateOrderStep(
                 orderRepo,      // OrderRepository
                 orderId,        // 주문 ID
                 userId,         // 사용자 ID
                 amount          // 금액
-        ));
+        );
+        saga.addStep(createOrder, new SagaStep[0]);
 
         
-        // 2단계 결제 처리
-        saga.addStep(new ChargePaymentStep(
+        // 2단계 결제 처리 (주문 생성 이후)
+        SagaStep chargePayment = new ChargePaymentStep(
                 paymentService, // PaymentService
                 userId,         // 사용자 ID
                 amount          // 결제 금액
-        ));
+        );
+        saga.addStep(chargePayment, createOrder);
 
-        // 3단계 재고 차감
-        saga.addStep(new ReserveInventoryStep(
+        // 3단계 재고 차감 (주문 생성 이후, 결제와는 독립 -> 결제와 동시에 실행)
+        SagaStep reserveInventory = new ReserveInventoryStep(
                 inventoryService,   // InventoryService
                 orderId,            // 주문 ID
                 2                   // 수량 (기존 코드에서 하드코딩된 값)
-        ));
+        );
+        saga.addStep(reserveInventory, createOrder);
         
-        // 4단계 배송 등록
+        // 4단계 배송 등록 (결제, 재고 모두 끝난 뒤)
         saga.addStep(new ScheduleDeliveryStep(
                 deliveryService,    // DeliveryService
                 orderId             // 주문 ID
-        ));
-
-        // Saga 실행
-        SagaExecutionResult result = saga.execute();
-
-        if(result.isSuccess()) {
-            orderRepo.updateStatus(orderId, "COMPLETED");
-        } else {
-            orderRepo.updateStatus(orderId, "FAILED");
-        }
+        ), chargePayment, reserveInventory);
 
-        // 결과 요약 출력
-        result.printSummary();
+        return saga;
     }
 }
 
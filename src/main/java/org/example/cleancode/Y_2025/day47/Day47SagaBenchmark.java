@@ -0,0 +1,251 @@
+package org.example.cleancode.Y_2025.day47;
+
+import org.example.cleancode.Y_2025.day41.SilentPrintStream;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Day 47 Saga 실행기 처리량 / 복구 시간 측정
+ *
+ * 1) 처리량: 무작위로 실패하는 결제/재고 스텁으로 Saga N개를 동시에 실행 (스레드 수별 sagas/s, 지연 p50/p99)
+ * 2) 복구: 스텁 호출 일부를 영원히 멈추게 해 실행 도중 "장애"를 만든 뒤 저널만 남기고 버림
+ *    -> 같은 저널로 새 실행기를 열어 recover() 시간 측정
+ *    -> 주문마다 결제/재고/배송이 전부 남았거나 전부 없는지(보상 누락 없음) 검증
+ * 인자: Saga 수 (기본값 20,000)
+ */
+public class Day47SagaBenchmark {
+
+    private static final int[] WORKER_THREADS = {16, 64, 256};
+    private static final int MAX_IN_FLIGHT = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        int sagas = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        PrintStream console = System.out;
+
+        console.printf("sagas=%,d, maxInFlight=%,d%n", sagas, MAX_IN_FLIGHT);
+        // Saga/스텁의 건별 로그 출력은 측정에서 제외 (락 없이 버리는 스트림 -> println 락 경합을 측정하지 않음)
+        System.setOut(new SilentPrintStream());
+        try {
+            for (int threads : WORKER_THREADS) {
+                console.println(throughput(sagas, threads));
+            }
+            console.println(recovery(sagas / 4, 64));
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static String throughput(int sagas, int threads) throws Exception {
+        Path journal = Files.createTempFile("saga-bench", ".log");
+        Ledger ledger = new Ledger();
+        try (SagaRuntime runtime = newRuntime(new FileSagaLog(journal), threads, ledger)) {
+            runtime.recover();
+
+            long start = System.nanoTime();
+            List<CompletableFuture<SagaExecutionResult>> results = new ArrayList<>(sagas);
+            for (int i = 0; i < sagas; i++) {
+                results.add(runtime.start(OrderService.CHECKOUT_SAGA,
+                        OrderService.checkoutPayload("ORD-" + i, "USER-" + i, 1_000)));
+            }
+            long[] latencies = new long[sagas];
+            for (int i = 0; i < sagas; i++) {
+                latencies[i] = results.get(i).join().getElapsedMillis();
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            Arrays.sort(latencies);
+
+            return String.format("threads=%3d  sagas/s=%,9.0f  p50=%3dms  p99=%4dms  completed=%,6d  aborted=%,6d  consistent=%s",
+                    threads, sagas / seconds, latencies[sagas / 2], latencies[(int) (sagas * 0.99)],
+                    runtime.getCompletedCount(), runtime.getAbortedCount(), ledger.consistent(sagas));
+        } finally {
+            Files.deleteIfExists(journal);
+        }
+    }
+
+    private static String recovery(int sagas, int threads) throws Exception {
+        Path journal = Files.createTempFile("saga-bench", ".log");
+        Ledger ledger = new Ledger();
+
+        // 장애 전: 스텁 호출의 일부가 효과를 남긴 직후 멈춤 -> 스레드가 하나씩 묶이다가 결국 전부 멈춤
+        ledger.hangRate = 0.03;
+        FileSagaLog crashedLog = new FileSagaLog(journal);
+        SagaRuntime crashed = newRuntime(crashedLog, threads, ledger);
+        crashed.recover();
+        for (int i = 0; i < sagas; i++) {
+            crashed.start(OrderService.CHECKOUT_SAGA,
+                    OrderService.checkoutPayload("ORD-" + i, "USER-" + i, 1_000));
+        }
+        awaitQuiet(crashed);
+        long finishedBeforeCrash = crashed.getCompletedCount() + crashed.getAbortedCount();
+        // 프로세스 장애 흉내: 저널만 닫고 실행기는 복구가 끝날 때까지 그대로 둠
+        ledger.hangRate = 0;
+        crashedLog.close();
+
+        try (SagaRuntime restarted = newRuntime(new FileSagaLog(journal), threads, ledger)) {
+            RecoveryReport report = restarted.recover();
+            return String.format("recovery: finishedBeforeCrash=%,d  hungCalls=%,d  %s  journalBytes=%,d  consistent=%s",
+                    finishedBeforeCrash, ledger.hungCalls.sum(), report, Files.size(journal),
+                    ledger.consistent(sagas));
+        } finally {
+            // 결과를 낸 뒤 장애 전 실행기 정리 (멈춘 스레드 인터럽트, 닫힌 저널에는 더 기록하지 못함)
+            crashed.shutdownNow();
+            Files.deleteIfExists(journal);
+        }
+    }
+
+    private static SagaRuntime newRuntime(SagaLog journal, int threads, Ledger ledger) {
+        SagaRuntime runtime = new SagaRuntime(journal, threads, MAX_IN_FLIGHT);
+        OrderService service = new OrderService(new OrderRepository(), new StubPaymentService(ledger),
+                new StubInventoryService(ledger), new StubDeliveryService(ledger));
+        runtime.register(OrderService.CHECKOUT_SAGA, service.checkoutDefinition());
+        return runtime;
+    }
+
+    // 종료 건수가 200ms 동안 변하지 않으면 더 진행할 수 없는 상태로 봄
+    private static void awaitQuiet(SagaRuntime runtime) throws InterruptedException {
+        long last = -1;
+        while (true) {
+            Thread.sleep(200);
+            long finished = runtime.getCompletedCount() + runtime.getAbortedCount();
+            if (finished == last) {
+                return;
+            }
+            last = finished;
+        }
+    }
+
+    // 스텁 서비스가 공유하는 외부 시스템 상태 (재시작 후에도 유지)
+    private static final class Ledger {
+        private final Map<String, Integer> charges = new ConcurrentHashMap<>();
+        private final Set<String> reservations = ConcurrentHashMap.newKeySet();
+        private final Set<String> deliveries = ConcurrentHashMap.newKeySet();
+        private final LongAdder hungCalls = new LongAdder();
+        private final CountDownLatch never = new CountDownLatch(1);
+        private volatile double hangRate;
+
+        // 외부 호출 지연 (0.2 ~ 1ms, Thread.sleep(0, nanos)는 1ms로 올림되므로 parkNanos)
+        private void call() {
+            LockSupport.parkNanos(200_000 + ThreadLocalRandom.current().nextInt(800_000));
+        }
+
+        // 효과를 남긴 뒤 응답 없이 멈춤 (결과 불명 상태 재현)
+        private void maybeHang() {
+            if (hangRate > 0 && ThreadLocalRandom.current().nextDouble() < hangRate) {
+                hungCalls.increment();
+                try {
+                    never.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        // 주문마다 결제/재고/배송이 전부 있거나 전부 없어야 함
+        private boolean consistent(int sagas) {
+            for (int i = 0; i < sagas; i++) {
+                boolean charged = charges.containsKey("USER-" + i);
+                if (charged != reservations.contains("ORD-" + i) || charged != deliveries.contains("ORD-" + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // 스텁은 모두 멱등: 이미 반영된 요청은 실패 없이 같은 결과 (복구 시 재실행 대비)
+    private static final class StubPaymentService extends PaymentService {
+        private final Ledger ledger;
+
+        private StubPaymentService(Ledger ledger) {
+            this.ledger = ledger;
+        }
+
+        @Override
+        public void charge(String userId, int amount) throws Exception {
+            ledger.call();
+            if (ledger.charges.containsKey(userId)) {
+                return;   // 이미 처리된 요청 -> 같은 결과
+            }
+            if (ThreadLocalRandom.current().nextDouble() < 0.05) {
+                throw new Exception("결제 거절");
+            }
+            ledger.charges.put(userId, amount);
+            ledger.maybeHang();
+        }
+
+        @Override
+        public void refund(String userId, int amount) {
+            ledger.call();
+            ledger.charges.remove(userId);
+            ledger.maybeHang();
+        }
+    }
+
+    private static final class StubInventoryService extends InventoryService {
+        private final Ledger ledger;
+
+        private StubInventoryService(Ledger ledger) {
+            this.ledger = ledger;
+        }
+
+        @Override
+        public void reserve(String orderId, int quantity) throws Exception {
+            ledger.call();
+            if (ledger.reservations.contains(orderId)) {
+                return;
+            }
+            if (ThreadLocalRandom.current().nextDouble() < 0.10) {
+                throw new Exception("재고 부족");
+            }
+            ledger.reservations.add(orderId);
+            ledger.maybeHang();
+        }
+
+        @Override
+        public void cancelReserve(String orderId) {
+            ledger.call();
+            ledger.reservations.remove(orderId);
+            ledger.maybeHang();
+        }
+    }
+
+    private static final class StubDeliveryService extends DeliveryService {
+        private final Ledger ledger;
+
+        private StubDeliveryService(Ledger ledger) {
+            this.ledger = ledger;
+        }
+
+        @Override
+        public void schedule(String orderId) throws Exception {
+            ledger.call();
+            if (ledger.deliveries.contains(orderId)) {
+                return;
+            }
+            if (ThreadLocalRandom.current().nextDouble() < 0.02) {
+                throw new Exception("배송사 오류");
+            }
+            ledger.deliveries.add(orderId);
+            ledger.maybeHang();
+        }
+
+        @Override
+        public void cancel(String orderId) {
+            ledger.call();
+            ledger.deliveries.remove(orderId);
+        }
+    }
+}
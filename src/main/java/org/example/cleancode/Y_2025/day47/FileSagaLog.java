@@ -0,0 +1,368 @@
+package org.example.cleancode.Y_2025.day47;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Saga 저널 (append only 로컬 파일)
+ *
+ * - 여러 Saga 스레드가 동시에 append -> 메모리 버퍼에 모아 두고 전용 스레드가 한 번에 write + fsync (그룹 커밋)
+ * - durable = true 인 기록은 fsync가 끝날 때까지 대기 (외부 효과가 생기기 전 "시작" 기록용)
+ * - 재시작 시 처음부터 읽어 복구, CRC가 맞지 않는 꼬리(찢어진 쓰기)는 잘라냄
+ *
+ * 레코드 형식: [length:int][crc32:int][payload]
+ * payload: [type:1][sagaId:8][step:4] + SAGA_STARTED면 [sagaType 문자열][payload 문자열] (문자열 = int 길이 + UTF-8)
+ */
+class FileSagaLog implements SagaLog {
+
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path file;
+    private final FileChannel channel;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    // append 된 기록이 쌓이는 버퍼 (flusher가 가져갈 때 교체)
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private long appendedSequence;
+    private long durableSequence;
+    private IOException writeError;
+    private boolean closed;
+
+    private final Thread flusher;
+
+    FileSagaLog(Path file) {
+        this.file = file;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            this.channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(validLength());
+            channel.truncate(channel.position());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Saga 저널 열기 실패: " + file, e);
+        }
+
+        this.flusher = new Thread(this::flushLoop, "saga-log-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public void append(SagaRecord record, boolean waitDurable) {
+        byte[] payload = encode(record);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        long sequence;
+        lock.lock();
+        try {
+            checkWritable();
+            ensureCapacity(RECORD_HEADER_SIZE + payload.length);
+            buffer.putInt(payload.length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(payload);
+            sequence = ++appendedSequence;
+            pending.signal();
+
+            if (!waitDurable) {
+                return;
+            }
+            while (durableSequence < sequence) {
+                checkWritable();
+                durable.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<SagaRecord> readAll() {
+        lock.lock();
+        try {
+            List<SagaRecord> records = new ArrayList<>();
+            scan(records);
+            return records;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Saga 저널 읽기 실패: " + file, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 모든 Saga가 종료된 뒤(복구 직후)에만 호출 -> 저널을 비워 크기를 되돌림
+    @Override
+    public void reset() {
+        lock.lock();
+        try {
+            awaitFlushed();
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Saga 저널 초기화 실패: " + file, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            awaitFlushed();
+            closed = true;
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Saga 저널 닫기 실패: " + file, e);
+        }
+    }
+
+    // ---- 그룹 커밋 ----
+
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long target;
+            lock.lock();
+            try {
+                while (appendedSequence == durableSequence && !closed) {
+                    pending.awaitUninterruptibly();
+                }
+                if (appendedSequence == durableSequence) {
+                    return;   // closed
+                }
+                batch = buffer.flip();
+                buffer = ByteBuffer.allocate(batch.capacity());
+                target = appendedSequence;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    writeError = error;
+                } else {
+                    durableSequence = target;
+                }
+                durable.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // lock 보유 상태에서 호출
+    private void awaitFlushed() {
+        while (durableSequence < appendedSequence) {
+            checkWritable();
+            try {
+                durable.await(10, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Saga 저널 flush 대기 중 인터럽트", e);
+            }
+        }
+    }
+
+    private void checkWritable() {
+        if (writeError != null) {
+            throw new UncheckedIOException("Saga 저널 기록 실패: " + file, writeError);
+        }
+        if (closed) {
+            throw new IllegalStateException("닫힌 Saga 저널");
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (buffer.remaining() >= size) {
+            return;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+        larger.put(buffer.flip());
+        buffer = larger;
+    }
+
+    // ---- 읽기 / 복구 ----
+
+    // 정상 레코드가 끝나는 위치
+    private long validLength() throws IOException {
+        return scan(null);
+    }
+
+    private long scan(List<SagaRecord> out) throws IOException {
+        long size = channel.size();
+        ByteBuffer data = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+        channel.read(data, 0);
+        data.flip();
+
+        int valid = 0;
+        while (data.remaining() >= RECORD_HEADER_SIZE) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length <= 0 || length > data.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            data.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            if (out != null) {
+                out.add(decode(payload));
+            }
+            valid = data.position();
+        }
+        return valid;
+    }
+
+    private static byte[] encode(SagaRecord record) {
+        byte[] sagaType = bytes(record.getSagaType());
+        byte[] payload = bytes(record.getPayload());
+        boolean started = record.getType() == SagaRecordType.SAGA_STARTED;
+
+        ByteBuffer out = ByteBuffer.allocate(1 + 8 + 4 + (started ? 8 + sagaType.length + payload.length : 0));
+        out.put((byte) record.getType().ordinal());
+        out.putLong(record.getSagaId());
+        out.putInt(record.getStep());
+        if (started) {
+            out.putInt(sagaType.length).put(sagaType);
+            out.putInt(payload.length).put(payload);
+        }
+        return out.array();
+    }
+
+    private static SagaRecord decode(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        SagaRecordType type = SagaRecordType.values()[in.get()];
+        long sagaId = in.getLong();
+        int step = in.getInt();
+        if (type != SagaRecordType.SAGA_STARTED) {
+            return new SagaRecord(type, sagaId, step, null, null);
+        }
+        return new SagaRecord(type, sagaId, step, string(in), string(in));
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
+
+// Saga 저널
+interface SagaLog extends AutoCloseable {
+    // waitDurable = true면 디스크 반영까지 대기
+    void append(SagaRecord record, boolean waitDurable);
+
+    // 기록된 순서대로 전체 조회 (복구용)
+    List<SagaRecord> readAll();
+
+    // 진행 중인 Saga가 없을 때 저널 비우기
+    void reset();
+
+    @Override
+    void close();
+}
+
+enum SagaRecordType {
+    SAGA_STARTED,
+    STEP_STARTED,
+    STEP_COMPLETED,
+    STEP_FAILED,
+    COMPENSATION_STARTED,
+    COMPENSATED,
+    COMPENSATION_FAILED,
+    SAGA_COMPLETED,
+    SAGA_ABORTED
+}
+
+// 저널 레코드 (step은 단계 번호, Saga 단위 레코드면 0)
+class SagaRecord {
+    private final SagaRecordType type;
+    private final long sagaId;
+    private final int step;
+    private final String sagaType;
+    private final String payload;
+
+    SagaRecord(SagaRecordType type, long sagaId, int step, String sagaType, String payload) {
+        this.type = type;
+        this.sagaId = sagaId;
+        this.step = step;
+        this.sagaType = sagaType;
+        this.payload = payload;
+    }
+
+    static SagaRecord started(long sagaId, String sagaType, String payload) {
+        return new SagaRecord(SagaRecordType.SAGA_STARTED, sagaId, 0, sagaType, payload);
+    }
+
+    static SagaRecord of(SagaRecordType type, long sagaId, int step) {
+        return new SagaRecord(type, sagaId, step, null, null);
+    }
+
+    public SagaRecordType getType() {
+        return type;
+    }
+
+    public long getSagaId() {
+        return sagaId;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public String getSagaType() {
+        return sagaType;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+}
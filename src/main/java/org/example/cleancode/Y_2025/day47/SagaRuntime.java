@@ -0,0 +1,339 @@
+package org.example.cleancode.Y_2025.day47;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 동시 다발 Saga 실행기 (저널 기반 복구)
+ *
+ * - Saga 하나 = SagaOrchestrator 실행 1회, 여러 Saga가 하나의 Step 스레드 풀을 공유
+ * - 동시에 진행 중인 Saga 수는 maxInFlight로 제한 (넘으면 start 호출자가 대기)
+ * - Step 시작/완료/실패, 보상 시작/완료를 SagaLog에 기록
+ *   (Step 시작과 보상 시작은 디스크 반영 후 실행 -> 외부 효과가 있는데 기록이 없는 경우가 없음)
+ * - 재시작 시 recover(): 종료 기록이 없는 Saga를
+ *   실패/보상 기록이 없으면 이어서 실행, 있으면 효과가 남았을 수 있는 단계를 보상
+ *
+ * 복구 시 결과가 불명확한 단계(시작 기록만 있음)는 다시 실행하거나 보상하므로
+ * Step의 execute/compensate는 같은 요청을 두 번 받아도 결과가 같아야 함 (멱등)
+ */
+class SagaRuntime implements AutoCloseable {
+
+    private final SagaLog log;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final Map<String, SagaDefinition> definitions = new ConcurrentHashMap<>();
+    private final AtomicLong nextSagaId = new AtomicLong(1);
+    private volatile boolean recovered;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+
+    SagaRuntime(SagaLog log, int workerThreads, int maxInFlight) {
+        this.log = log;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.executor = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "saga-runtime");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Saga 종류 등록 (복구 시 저널의 sagaType + payload로 같은 Saga를 다시 구성)
+    void register(String sagaType, SagaDefinition definition) {
+        definitions.put(sagaType, definition);
+    }
+
+    CompletableFuture<SagaExecutionResult> start(String sagaType, String payload) {
+        if (!recovered) {
+            throw new IllegalStateException("recover()를 먼저 호출해야 합니다");
+        }
+        SagaDefinition definition = definitionOf(sagaType);
+
+        inFlight.acquireUninterruptibly();
+        try {
+            long sagaId = nextSagaId.getAndIncrement();
+            log.append(SagaRecord.started(sagaId, sagaType, payload), false);
+            SagaOrchestrator saga = definition.create(payload, executor);
+            return track(sagaId, saga.executeAsync(new JournalListener(sagaId), Set.of()));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    // 재시작 복구: 모든 미완료 Saga를 끝까지 처리한 뒤 반환 (start 전에 한 번 호출)
+    synchronized RecoveryReport recover() {
+        long begin = System.nanoTime();
+
+        Map<Long, SagaState> states = new LinkedHashMap<>();
+        long maxSagaId = 0;
+        for (SagaRecord record : log.readAll()) {
+            states.computeIfAbsent(record.getSagaId(), SagaState::new).apply(record);
+            maxSagaId = Math.max(maxSagaId, record.getSagaId());
+        }
+        nextSagaId.set(Math.max(nextSagaId.get(), maxSagaId + 1));
+
+        List<CompletableFuture<SagaExecutionResult>> resumed = new ArrayList<>();
+        List<CompletableFuture<SagaExecutionResult>> compensated = new ArrayList<>();
+        int unknown = 0;
+        for (SagaState state : states.values()) {
+            if (state.terminal) {
+                continue;
+            }
+            SagaDefinition definition = definitions.get(state.sagaType);
+            if (definition == null) {
+                unknown++;
+                System.out.println("⚠️ 복구 불가 (등록되지 않은 Saga 종류): " + state.sagaType + " #" + state.sagaId);
+                continue;
+            }
+
+            inFlight.acquireUninterruptibly();
+            SagaOrchestrator saga = definition.create(state.payload, executor);
+            JournalListener listener = new JournalListener(state.sagaId);
+            if (state.aborting) {
+                compensated.add(track(state.sagaId, saga.compensateAsync(listener, state.stepsToCompensate(),
+                        "재시작 복구: 중단된 Saga 보상")));
+            } else {
+                resumed.add(track(state.sagaId, saga.executeAsync(listener, state.completedSteps)));
+            }
+        }
+
+        int resumedSucceeded = 0;
+        boolean allTerminal = unknown == 0;
+        for (CompletableFuture<SagaExecutionResult> future : resumed) {
+            SagaExecutionResult result = future.handle((r, e) -> r).join();
+            allTerminal &= result != null;
+            if (result != null && result.isSuccess()) {
+                resumedSucceeded++;
+            }
+        }
+        for (CompletableFuture<SagaExecutionResult> future : compensated) {
+            allTerminal &= future.handle((r, e) -> r).join() != null;
+        }
+
+        // 진행 중인 Saga가 하나도 없으면 저널을 비움 (저널 크기가 재시작마다 초기화됨)
+        if (allTerminal) {
+            log.reset();
+        }
+        recovered = true;
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        return new RecoveryReport(states.size(), resumed.size(), resumedSucceeded, compensated.size(),
+                unknown, elapsedMillis);
+    }
+
+    long getCompletedCount() {
+        return completed.sum();
+    }
+
+    long getAbortedCount() {
+        return aborted.sum();
+    }
+
+    // 진행 중인 Saga가 끝날 때까지 기다린 뒤 종료
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    // 진행 중인 Saga를 기다리지 않고 실행기만 즉시 종료 (멈춘 호출은 인터럽트, 저널은 그대로)
+    void shutdownNow() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private SagaDefinition definitionOf(String sagaType) {
+        SagaDefinition definition = definitions.get(sagaType);
+        if (definition == null) {
+            throw new IllegalArgumentException("등록되지 않은 Saga 종류: " + sagaType);
+        }
+        return definition;
+    }
+
+    // 종료 기록 + 진행 중 Saga 수 반환
+    private CompletableFuture<SagaExecutionResult> track(long sagaId,
+                                                         CompletableFuture<SagaExecutionResult> execution) {
+        return execution.whenComplete((result, error) -> {
+            try {
+                if (result != null) {
+                    log.append(SagaRecord.of(result.isSuccess()
+                            ? SagaRecordType.SAGA_COMPLETED : SagaRecordType.SAGA_ABORTED, sagaId, 0), false);
+                    (result.isSuccess() ? completed : aborted).increment();
+                }
+                // error: 종료 기록 없음 -> 다음 재시작 때 복구 대상
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    // Saga 하나의 진행 상황을 저널에 기록
+    private final class JournalListener implements SagaListener {
+        private final long sagaId;
+
+        private JournalListener(long sagaId) {
+            this.sagaId = sagaId;
+        }
+
+        @Override
+        public void onStepStarted(int step) {
+            log.append(SagaRecord.of(SagaRecordType.STEP_STARTED, sagaId, step), true);
+        }
+
+        @Override
+        public void onStepCompleted(int step) {
+            log.append(SagaRecord.of(SagaRecordType.STEP_COMPLETED, sagaId, step), false);
+        }
+
+        @Override
+        public void onStepFailed(int step, String reason) {
+            log.append(SagaRecord.of(SagaRecordType.STEP_FAILED, sagaId, step), false);
+        }
+
+        @Override
+        public void onCompensationStarted(int step) {
+            log.append(SagaRecord.of(SagaRecordType.COMPENSATION_STARTED, sagaId, step), true);
+        }
+
+        @Override
+        public void onCompensated(int step, boolean success) {
+            log.append(SagaRecord.of(success
+                    ? SagaRecordType.COMPENSATED : SagaRecordType.COMPENSATION_FAILED, sagaId, step), false);
+        }
+    }
+
+    // 저널에서 재구성한 Saga 하나의 상태
+    private static final class SagaState {
+        private final long sagaId;
+        private String sagaType;
+        private String payload;
+        private final Set<Integer> startedSteps = new HashSet<>();
+        private final Set<Integer> completedSteps = new HashSet<>();
+        private final Set<Integer> failedSteps = new HashSet<>();
+        private final Set<Integer> compensatedSteps = new HashSet<>();
+        private boolean aborting;
+        private boolean terminal;
+
+        private SagaState(long sagaId) {
+            this.sagaId = sagaId;
+        }
+
+        private void apply(SagaRecord record) {
+            switch (record.getType()) {
+                case SAGA_STARTED:
+                    sagaType = record.getSagaType();
+                    payload = record.getPayload();
+                    break;
+                case STEP_STARTED:
+                    startedSteps.add(record.getStep());
+                    break;
+                case STEP_COMPLETED:
+                    completedSteps.add(record.getStep());
+                    break;
+                case STEP_FAILED:
+                    failedSteps.add(record.getStep());
+                    aborting = true;
+                    break;
+                case COMPENSATION_STARTED:
+                case COMPENSATION_FAILED:
+                    aborting = true;
+                    break;
+                case COMPENSATED:
+                    compensatedSteps.add(record.getStep());
+                    aborting = true;
+                    break;
+                case SAGA_COMPLETED:
+                case SAGA_ABORTED:
+                    terminal = true;
+                    break;
+            }
+        }
+
+        // 효과가 남아 있을 수 있는 단계 = 시작했고, 실패로 끝나지 않았고, 아직 보상되지 않은 단계
+        private Set<Integer> stepsToCompensate() {
+            Set<Integer> steps = new HashSet<>(startedSteps);
+            steps.addAll(completedSteps);
+            steps.removeAll(failedSteps);
+            steps.removeAll(compensatedSteps);
+            return steps;
+        }
+    }
+}
+
+// payload(저널에 기록되는 문자열)로 Saga를 구성 -> 재시작 후에도 같은 Saga를 다시 만들 수 있어야 함
+interface SagaDefinition {
+    SagaOrchestrator create(String payload, Executor executor);
+}
+
+// 복구 결과
+class RecoveryReport {
+    private final int journaledSagas;
+    private final int resumed;
+    private final int resumedSucceeded;
+    private final int compensated;
+    private final int unknown;
+    private final long elapsedMillis;
+
+    RecoveryReport(int journaledSagas, int resumed, int resumedSucceeded, int compensated,
+                   int unknown, long elapsedMillis) {
+        this.journaledSagas = journaledSagas;
+        this.resumed = resumed;
+        this.resumedSucceeded = resumedSucceeded;
+        this.compensated = compensated;
+        this.unknown = unknown;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getJournaledSagas() {
+        return journaledSagas;
+    }
+
+    public int getResumed() {
+        return resumed;
+    }
+
+    public int getResumedSucceeded() {
+        return resumedSucceeded;
+    }
+
+    public int getCompensated() {
+        return compensated;
+    }
+
+    public int getUnknown() {
+        return unknown;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "journaled=" + journaledSagas + ", resumed=" + resumed + " (succeeded " + resumedSucceeded + ")"
+                + ", compensated=" + compensated + ", unknown=" + unknown + ", elapsed=" + elapsedMillis + "ms";
+    }
+}
@@ -1,8 +1,18 @@
 package org.example.cleancode.Y_2026.first_half.april.day103;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 
 /**
@@ -12,50 +22,257 @@ import java.util.concurrent.atomic.AtomicInteger;
  * 2. while 폴링 + 수동 타임아웃 -> await().pollInterval(100, MILLISECONDS).until(...)
  * 3. 실패 시 메시지 불명확 -> await().alias("SMS 전송 확인").until(...)
  * 4. 이벤트 로그 조건 검색 -> until(() -> svc.eventLog.stream().anyMatch(...))
+ *
+ * 발송 구조 개선
+ * - 메시지마다 스레드 점유(sleep) -> 채널별 마이크로 배치 + 비동기 공급자 호출 (BatchingDispatcher)
+ * - 재시도 Thread.sleep 루프 -> 타이머(schedule)로 다음 시도 예약
+ * - 무제한 대기열 -> 채널별 유한 대기열 + 동시 배치 수 제한 (역압)
+ * - eventLog -> 락 없는 링 버퍼 (EventRing)
  */
 public class Day103NotificationService {
-    final ExecutorService executor = Executors.newFixedThreadPool(3);
+    private static final int MAX_RETRY = 3;
+    private static final long RETRY_DELAY_MS = 200;
+
+    // 배치 플러시/재시도 타이머 (메시지 발송 자체는 스레드를 점유하지 않음)
+    final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
     final AtomicBoolean emailSent = new AtomicBoolean(false);
     final AtomicBoolean smsSent = new AtomicBoolean(false);
     final AtomicInteger retryCount = new AtomicInteger(0);
-    final BlockingQueue<String> eventLog = new LinkedBlockingQueue<>();
-
-    public void sendEmail(String to) {
-        executor.submit(() -> {
-            try {
-                Thread.sleep(300);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+    final EventRing eventLog = new EventRing(1024);
+    final BatchingDispatcher dispatcher;
+
+    public Day103NotificationService() {
+        this(new SimulatedChannelProvider(), BatchConfig.defaults());
+    }
+
+    public Day103NotificationService(ChannelProvider provider, BatchConfig config) {
+        this.dispatcher = new BatchingDispatcher(provider, config, executor, eventLog, this::onBatchSent);
+        this.dispatcher.start();
+    }
+
+    // 대기열이 가득 차면 false (호출자가 속도를 늦추거나 다른 경로 선택)
+    public boolean sendEmail(String to) {
+        return dispatcher.offer(Channel.EMAIL, to);
+    }
+
+    public boolean sendSms(String to) {
+        return dispatcher.offer(Channel.SMS, to);
+    }
+
+    // 재시도 간격을 sleep 대신 타이머로 예약 -> 대기 중에는 스레드를 점유하지 않음
+    public void sendWithRetry(String to) {
+        scheduleAttempt(to, 1);
+    }
+
+    private void scheduleAttempt(String to, int attempt) {
+        executor.schedule(() -> {
+            retryCount.incrementAndGet();
+            if (attempt < MAX_RETRY) {
+                scheduleAttempt(to, attempt + 1);
+                return;
             }
+            eventLog.add("RETRY_SUCCESS:" + to);
+        }, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void onBatchSent(Channel channel, List<String> recipients) {
+        if (channel == Channel.EMAIL) {
             emailSent.set(true);
-            eventLog.add("EMAIL_SENT:" + to);
-        });
+        } else {
+            smsSent.set(true);
+        }
+        for (String to : recipients) {
+            eventLog.add(channel + "_SENT:" + to);
+        }
     }
+}
+
+enum Channel {
+    EMAIL, SMS
+}
+
+// 외부 발송 공급자 — 배치 하나를 한 번의 호출로 보내고 비동기로 완료
+interface ChannelProvider {
+    CompletableFuture<Void> sendBatch(Channel channel, List<String> recipients);
+}
+
+// 기존 지연(이메일 300ms, SMS 500ms)을 배치 단위로 흉내내는 공급자
+// 지연은 타이머로 처리하므로 대기 중 스레드를 점유하지 않음
+class SimulatedChannelProvider implements ChannelProvider {
+    @Override
+    public CompletableFuture<Void> sendBatch(Channel channel, List<String> recipients) {
+        long latencyMs = channel == Channel.EMAIL ? 300 : 500;
+        return CompletableFuture.runAsync(() -> { },
+                CompletableFuture.delayedExecutor(latencyMs, TimeUnit.MILLISECONDS));
+    }
+}
+
+// 배치 설정
+// batchSize: 이 크기가 차면 즉시 플러시 / lingerMs: 크기가 안 차도 이 주기마다 플러시
+// queueCapacity: 채널별 대기열 한도 / maxInFlightBatches: 채널별 동시 발송 배치 수
+record BatchConfig(int batchSize, long lingerMs, int queueCapacity, int maxInFlightBatches,
+                   int maxAttempts, long retryBackoffMs) {
+
+    static BatchConfig defaults() {
+        return new BatchConfig(100, 50, 10_000, 4, 3, 200);
+    }
+}
+
+// 채널별 마이크로 배치 발송기
+// - offer: 유한 대기열에 넣기만 하고 즉시 반환 (가득 차면 거절 = 역압)
+// - 배치 크기 도달 또는 linger 주기 경과 시 플러시
+// - 동시 발송 배치 수를 넘으면 대기열에 남겨 둠 -> 대기열이 차면서 호출자에게 역압 전달
+// - 실패한 배치는 타이머로 재시도 예약 (시도 횟수에 비례한 backoff)
+// - 크기 트리거 플러시는 채널당 한 번만 대기열에 올림 (예약 중이면 추가 제출하지 않음)
+class BatchingDispatcher {
+    private final ChannelProvider provider;
+    private final BatchConfig config;
+    private final ScheduledExecutorService scheduler;
+    private final EventRing eventLog;
+    private final BiConsumer<Channel, List<String>> onSent;
+    private final Map<Channel, BlockingQueue<String>> queues = new EnumMap<>(Channel.class);
+    private final Map<Channel, Semaphore> inFlight = new EnumMap<>(Channel.class);
+    private final Map<Channel, AtomicBoolean> flushQueued = new EnumMap<>(Channel.class);
 
-    public void sendSms(String to) {
-        executor.submit(() -> {
-            try {
-                Thread.sleep(500);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+    BatchingDispatcher(ChannelProvider provider, BatchConfig config, ScheduledExecutorService scheduler,
+                       EventRing eventLog, BiConsumer<Channel, List<String>> onSent) {
+        this.provider = provider;
+        this.config = config;
+        this.scheduler = scheduler;
+        this.eventLog = eventLog;
+        this.onSent = onSent;
+        for (Channel channel : Channel.values()) {
+            queues.put(channel, new ArrayBlockingQueue<>(config.queueCapacity()));
+            inFlight.put(channel, new Semaphore(config.maxInFlightBatches()));
+            flushQueued.put(channel, new AtomicBoolean(false));
+        }
+    }
+
+    // 채널별 linger 타이머 시작
+    void start() {
+        for (Channel channel : Channel.values()) {
+            scheduler.scheduleWithFixedDelay(() -> flush(channel, 1),
+                    config.lingerMs(), config.lingerMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    boolean offer(Channel channel, String to) {
+        BlockingQueue<String> queue = queues.get(channel);
+        if (!queue.offer(to)) {
+            eventLog.add(channel + "_REJECTED:" + to);
+            return false;
+        }
+        // 크기 트리거: 배치가 찼으면 linger를 기다리지 않고 플러시
+        if (queue.size() >= config.batchSize()) {
+            scheduleFlush(channel);
+        }
+        return true;
+    }
+
+    // 이미 예약된 플러시가 있으면 그 플러시가 대기열을 비우므로 건너뜀
+    // 실행 직전에 플래그를 내림 -> 플러시 도중 들어온 메시지는 다음 예약이 처리
+    private void scheduleFlush(Channel channel) {
+        AtomicBoolean queued = flushQueued.get(channel);
+        if (queued.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                queued.set(false);
+                flush(channel, config.batchSize());
+            });
+        }
+    }
+
+    int pending(Channel channel) {
+        return queues.get(channel).size();
+    }
+
+    // 대기열을 배치 크기로 잘라 발송 (동시 배치 한도까지만)
+    // minSize: 크기 트리거는 꽉 찬 배치만, linger 트리거는 남은 메시지까지 모두
+    void flush(Channel channel, int minSize) {
+        BlockingQueue<String> queue = queues.get(channel);
+        Semaphore permits = inFlight.get(channel);
+
+        while (queue.size() >= minSize && permits.tryAcquire()) {
+            List<String> batch = new ArrayList<>(config.batchSize());
+            queue.drainTo(batch, config.batchSize());
+            if (batch.isEmpty()) {
+                permits.release();
+                return;
             }
-            smsSent.set(true);
-            eventLog.add("SMS_SENT:" + to);
-        });
+            send(channel, batch, 1);
+        }
     }
 
-    public void sendWithRetry(String to) {
-        executor.submit(() -> {
-            for (int i = 0; i < 3; i++) {
-                retryCount.incrementAndGet();
-                try {
-                    Thread.sleep(200);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return;
-                }
-                if (i == 2) eventLog.add("RETRY_SUCCESS:" + to);
+    private void send(Channel channel, List<String> batch, int attempt) {
+        CompletableFuture<Void> call;
+        try {
+            call = provider.sendBatch(channel, batch);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+
+        call.whenComplete((ignored, error) -> {
+            if (error == null) {
+                complete(channel);
+                onSent.accept(channel, batch);
+                return;
             }
+            if (attempt < config.maxAttempts()) {
+                eventLog.add(channel + "_RETRY:" + attempt + ":" + batch.size());
+                // 재시도 동안 permit 유지 -> 실패가 몰리면 새 배치 발송도 자연히 늦춰짐
+                scheduler.schedule(() -> send(channel, batch, attempt + 1),
+                        config.retryBackoffMs() * attempt, TimeUnit.MILLISECONDS);
+                return;
+            }
+            complete(channel);
+            eventLog.add(channel + "_FAILED:" + batch.size() + ":" + error.getMessage());
         });
     }
+
+    // 발송 슬롯 반환 후, 밀린 배치가 있으면 바로 이어서 플러시
+    private void complete(Channel channel) {
+        inFlight.get(channel).release();
+        if (queues.get(channel).size() >= config.batchSize()) {
+            scheduleFlush(channel);
+        }
+    }
+}
+
+// 락 없는 고정 크기 이벤트 로그 (가장 오래된 항목부터 덮어씀)
+// 쓰기: 시퀀스 getAndIncrement 한 번(재시도 루프 없음) + 슬롯 쓰기 / 읽기: 최근 capacity개 스냅샷
+// 슬롯에 (seq, event)를 함께 저장 -> 시퀀스를 받고 아직 쓰지 않은 슬롯에 남은 이전 바퀴 이벤트는 seq가 달라 건너뜀
+class EventRing {
+    private final AtomicReferenceArray<Slot> slots;
+    private final AtomicLong cursor = new AtomicLong();
+    private final int mask;
+
+    EventRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity는 2의 거듭제곱이어야 합니다: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    void add(String event) {
+        long seq = cursor.getAndIncrement();
+        slots.set((int) (seq & mask), new Slot(seq, event));
+    }
+
+    long size() {
+        return Math.min(cursor.get(), slots.length());
+    }
+
+    Stream<String> stream() {
+        long end = cursor.get();
+        long start = Math.max(0, end - slots.length());
+        return LongStream.range(start, end)
+                .mapToObj(seq -> {
+                    Slot slot = slots.get((int) (seq & mask));
+                    return slot != null && slot.seq() == seq ? slot.event() : null;
+                })
+                .filter(Objects::nonNull);
+    }
+
+    private record Slot(long seq, String event) {
+    }
 }
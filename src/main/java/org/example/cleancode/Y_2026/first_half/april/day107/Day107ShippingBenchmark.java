@@ -0,0 +1,133 @@
+package org.example.cleancode.Y_2026.first_half.april.day107;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Day 107 배송 요청 처리량 측정
+ *
+ * - 로컬 스텁 서버(JDK HttpServer, 응답 지연 고정)에 같은 주문 N건을
+ *   0) 기준: 개선 전 클라이언트 (호출마다 HttpClient 생성 + 문자열 본문 + 정규식 추출) 순차 호출
+ *   1) requestShipping 순차 호출  2) requestShippingBatch 로 보내 처리 시간 비교
+ * - 스텁은 테스트의 WireMock 스텁과 같은 응답 ({"trackingNumber":"TRK-..."})
+ * 인자: 주문 수 (기본값 2,000), 서버 응답 지연 ms (기본값 5)
+ */
+public class Day107ShippingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        long delayMillis = args.length > 1 ? Long.parseLong(args[1]) : 5;
+
+        ExecutorService serverThreads = Executors.newFixedThreadPool(128);
+        HttpServer server = stubServer(delayMillis, serverThreads);
+        try {
+            String baseUrl = "http://localhost:" + server.getAddress().getPort();
+            Day107ShippingClient client = new Day107ShippingClient(baseUrl);
+
+            List<ShippingRequest> requests = new ArrayList<>(orders);
+            for (int i = 0; i < orders; i++) {
+                requests.add(new ShippingRequest("ORD-" + i, "서울시 강남구 " + i));
+            }
+
+            // 워밍업 (커넥션 생성, JIT)
+            client.requestShippingBatch(requests.subList(0, Math.min(200, orders)));
+
+            long start = System.nanoTime();
+            int perCallOk = 0;
+            for (ShippingRequest request : requests) {
+                perCallOk += perCallClientRequest(baseUrl, request.orderId(), request.address()).success() ? 1 : 0;
+            }
+            double perCallSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            start = System.nanoTime();
+            int sequentialOk = 0;
+            for (ShippingRequest request : requests) {
+                sequentialOk += client.requestShipping(request.orderId(), request.address()).success() ? 1 : 0;
+            }
+            double sequentialSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            start = System.nanoTime();
+            int batchOk = 0;
+            for (ShippingResult result : client.requestShippingBatch(requests)) {
+                batchOk += result.success() ? 1 : 0;
+            }
+            double batchSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            System.out.printf("orders=%,d, serverDelay=%dms%n", orders, delayMillis);
+            System.out.printf("perCall     req/s=%,9.0f  ok=%,d  (호출마다 HttpClient 생성)%n",
+                    orders / perCallSeconds, perCallOk);
+            System.out.printf("sequential  req/s=%,9.0f  ok=%,d%n", orders / sequentialSeconds, sequentialOk);
+            System.out.printf("batch       req/s=%,9.0f  ok=%,d%n", orders / batchSeconds, batchOk);
+        } finally {
+            server.stop(0);
+            serverThreads.shutdown();
+        }
+    }
+
+    // 개선 전 Day107ShippingClient.requestShipping 그대로 (비교 기준)
+    private static ShippingResult perCallClientRequest(String baseUrl, String orderId, String address) {
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(1))
+                    .build();
+
+            String body = """
+                    {"orderId":"%s","address":"%s"}
+                    """.formatted(orderId, address);
+
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(baseUrl + "/shipping/request"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .timeout(Duration.ofSeconds(1))
+                    .build();
+
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 200) {
+                String tracking = response.body()
+                        .replaceAll(".*\"trackingNumber\":\"([^\"]+)\".*", "$1");
+                return ShippingResult.success(tracking);
+            }
+            return ShippingResult.fail("HTTP " + response.statusCode());
+        } catch (Exception e) {
+            return ShippingResult.fail(e.getMessage());
+        }
+    }
+
+    private static HttpServer stubServer(long delayMillis, ExecutorService executor) throws IOException {
+        AtomicLong sequence = new AtomicLong();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/shipping/request", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"trackingNumber\":\"TRK-" + sequence.incrementAndGet() + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+        return server;
+    }
+}
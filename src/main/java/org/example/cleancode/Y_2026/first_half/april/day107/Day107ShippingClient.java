@@ -1,56 +1,155 @@
 package org.example.cleancode.Y_2026.first_half.april.day107;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
 
 /**
+ * 배송 요청 클라이언트
  *
- *
+ * 성능 개선
+ * - HttpClient 하나를 프로세스 전체가 공유 (요청마다 생성 X) -> 커넥션 / HTTP/2 세션 재사용
+ * - requestShippingAsync: sendAsync 기반, 호출자 스레드를 막지 않음
+ * - requestShippingBatch: 여러 주문을 동시에 보내 공유 커넥션 위에서 파이프라인 처리 (동시 요청 수 상한 있음)
+ * - trackingNumber는 스트리밍 JSON 파서로 필요한 필드까지만 읽음 (본문 전체 정규식 스캔 X)
+ * - 요청 본문도 JsonGenerator로 작성 (주소에 따옴표 등이 있어도 올바른 JSON)
  */
 public class Day107ShippingClient {
 
-    private final String baseUrl;
+    private static final Duration TIMEOUT = Duration.ofSeconds(1);
+    private static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+    // 모든 인스턴스가 공유 (HTTP/2 가능하면 사용, 아니면 HTTP/1.1로 자동 전환)
+    private static final HttpClient SHARED_CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(TIMEOUT)
+            .build();
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final URI requestUri;
+    private final HttpClient client;
+    private final int maxInFlight;
 
     public Day107ShippingClient(String baseUrl) {
-        this.baseUrl = baseUrl;
+        this(baseUrl, SHARED_CLIENT, DEFAULT_MAX_IN_FLIGHT);
     }
 
-    public ShippingResult requestShipping(String orderId, String address) {
-        try {
-            HttpClient client = HttpClient.newBuilder()
-                    .connectTimeout(Duration.ofSeconds(1))
-                    .build();
+    public Day107ShippingClient(String baseUrl, HttpClient client, int maxInFlight) {
+        this.requestUri = URI.create(baseUrl + "/shipping/request");
+        this.client = client;
+        this.maxInFlight = maxInFlight;
+    }
 
-            String body = """
-                    {"orderId":"%s","address":"%s"}
-                    """.formatted(orderId, address);
+    public ShippingResult requestShipping(String orderId, String address) {
+        return requestShippingAsync(orderId, address).join();
+    }
 
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(baseUrl + "/shipping/request"))
+    // 실패(HTTP 오류, 타임아웃, 파싱 실패)도 예외 대신 ShippingResult.fail로 완료
+    public CompletableFuture<ShippingResult> requestShippingAsync(String orderId, String address) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder()
+                    .uri(requestUri)
                     .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(body))
-                    .timeout(Duration.ofSeconds(1))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody(orderId, address)))
+                    .timeout(TIMEOUT)
                     .build();
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(ShippingResult.fail(e.getMessage()));
+        }
 
-            HttpResponse<String> response =
-                    client.send(request, HttpResponse.BodyHandlers.ofString());
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(Day107ShippingClient::toResult)
+                .exceptionally(error -> ShippingResult.fail(reason(error)));
+    }
 
-            if (response.statusCode() == 200) {
-                // JSON 파싱 생략, trackingNumber만 추출
-                String tracking = response.body()
-                        .replaceAll(".*\"trackingNumber\":\"([^\"]+)\".*", "$1");
-                return ShippingResult.success(tracking);
-            }
+    // 결과는 입력 순서대로, 동시에 보내는 요청은 maxInFlight개까지 (넘으면 앞 요청이 끝날 때까지 대기)
+    public List<ShippingResult> requestShippingBatch(List<ShippingRequest> orders) {
+        Semaphore permits = new Semaphore(maxInFlight);
+        List<CompletableFuture<ShippingResult>> futures = new ArrayList<>(orders.size());
+        for (ShippingRequest order : orders) {
+            permits.acquireUninterruptibly();
+            CompletableFuture<ShippingResult> future = requestShippingAsync(order.orderId(), order.address());
+            future.whenComplete((result, error) -> permits.release());
+            futures.add(future);
+        }
 
+        List<ShippingResult> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<ShippingResult> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    private static ShippingResult toResult(HttpResponse<byte[]> response) {
+        if (response.statusCode() != 200) {
             return ShippingResult.fail("HTTP " + response.statusCode());
+        }
+        try {
+            String tracking = trackingNumber(response.body());
+            return tracking != null
+                    ? ShippingResult.success(tracking)
+                    : ShippingResult.fail("trackingNumber 없음");
+        } catch (IOException e) {
+            return ShippingResult.fail("응답 파싱 실패: " + e.getMessage());
+        }
+    }
+
+    // 최상위 객체의 trackingNumber만 찾으면 바로 중단 (다른 필드의 중첩 값은 건너뜀)
+    static String trackingNumber(byte[] body) throws IOException {
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("trackingNumber".equals(field) && value == JsonToken.VALUE_STRING) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+            return null;
+        }
+    }
 
-        } catch (Exception e) {
-            return ShippingResult.fail(e.getMessage());
+    private static byte[] requestBody(String orderId, String address) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        try (JsonGenerator generator = JSON.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("orderId", orderId);
+            generator.writeStringField("address", address);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return out.toByteArray();
     }
+
+    // 연결 거부 등 메시지 없는 예외는 예외 이름으로
+    private static String reason(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+}
+
+record ShippingRequest(String orderId, String address) {
 }
 
 record ShippingResult(boolean success, String value) {
@@ -1,9 +1,27 @@
 package org.example.cleancode.Y_2026.first_half.january.day65;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -14,6 +32,7 @@ import java.util.stream.Collectors;
  *  함수 분리: 각 단계별 책임 분리
  *  예외 안전성: 부분 실패 상황 명확히 처리
  *  불변성: 중간 상태 안전하게 관리
+ *  자원 격리: 하위 시스템별 전용 풀/벌크헤드/타임아웃 (StageExecutors)
  */
 public class Day65OrderProcessor {
 
@@ -21,6 +40,16 @@ public class Day65OrderProcessor {
     private InventoryService inventoryService;
     private EmailService emailService;
 
+    public Day65OrderProcessor() {
+    }
+
+    public Day65OrderProcessor(PaymentService paymentService, InventoryService inventoryService,
+                               EmailService emailService) {
+        this.paymentService = paymentService;
+        this.inventoryService = inventoryService;
+        this.emailService = emailService;
+    }
+
     // 단건 주문 처리
     private OrderResult processOrder(Order order) {
         OrderResult result = new OrderResult(order.getId());
@@ -68,8 +97,11 @@ public class Day65OrderProcessor {
 
     // 결제 처리
     private Payment processPayment(Order order, OrderResult result, CompensationManager cm) {
+        return applyPayment(paymentService.charge(order.getAmount()), result, cm);
+    }
 
-        Result<Payment, PaymentException> paymentResult = paymentService.charge(order.getAmount());
+    // 결제 결과 반영 (동기/격리 모드 공용)
+    private Payment applyPayment(Result<Payment, PaymentException> paymentResult, OrderResult result, CompensationManager cm) {
 
         if(paymentResult.isFailure()) {
             result.setStatus("PAYMENT_FAILED");
@@ -87,17 +119,31 @@ public class Day65OrderProcessor {
 
     // 재고 차감
     private boolean processInventory(Order order, Payment payment, OrderResult result, CompensationManager cm) {
+        return applyInventory(decreaseAll(order), order, result, cm);
+    }
 
+    // 주문의 모든 품목 재고 차감 (첫 실패에서 중단)
+    private Result<Void, InventoryException> decreaseAll(Order order) {
         for (OrderItem item : order.getItems()) {
             Result<Void, InventoryException> inventoryResult =
                     inventoryService.decreaseStock(item.getProductId(), item.getQuantity());
 
             if(inventoryResult.isFailure()) {
-                result.setStatus("INVENTORY_FAILED");
-                result.setError(inventoryResult.getError().getMessage());
-                return false;
+                return inventoryResult;
             }
         }
+        return Result.success(null);
+    }
+
+    // 재고 차감 결과 반영 (동기/격리 모드 공용)
+    private boolean applyInventory(Result<Void, InventoryException> inventoryResult, Order order,
+                                   OrderResult result, CompensationManager cm) {
+
+        if(inventoryResult.isFailure()) {
+            result.setStatus("INVENTORY_FAILED");
+            result.setError(inventoryResult.getError().getMessage());
+            return false;
+        }
 
         result.setInventoryUpdated(true);
         
@@ -114,9 +160,11 @@ public class Day65OrderProcessor {
 
     // 이메일 발송
     private boolean processEmail(Order order, Payment payment, OrderResult result, CompensationManager cm) {
+        return applyEmail(emailService.sendConfirmation(order.getCustomerEmail(), order.getId()), result);
+    }
 
-        Result<Void, Exception> emailResult =
-                emailService.sendConfirmation(order.getCustomerEmail(), order.getId());
+    // 이메일 발송 결과 반영 (동기/격리 모드 공용)
+    private boolean applyEmail(Result<Void, Exception> emailResult, OrderResult result) {
 
         if(emailResult.isFailure()) {
             result.setStatus("EMAIL_FAILED");
@@ -128,6 +176,118 @@ public class Day65OrderProcessor {
         return true;
 
     }
+
+    // 격리 모드: 하위 시스템별 전용 풀 + 벌크헤드 + 단계별 타임아웃
+    // 공용 ForkJoinPool을 사용하지 않으므로 블로킹 호출이 JVM의 다른 작업을 굶기지 않음
+    public List<OrderResult> processOrders(List<Order> orders, StageExecutors stages) {
+        List<CompletableFuture<OrderResult>> futures = new ArrayList<>(orders.size());
+
+        for (Order order : orders) {
+            // 동시 진행 주문 수 제한 (배치 크기와 무관하게 하위 시스템 벌크헤드를 넘지 않도록 역압)
+            stages.acquireOrderPermit();
+            futures.add(processOrderIsolated(order, stages)
+                    .whenComplete((r, e) -> stages.releaseOrderPermit()));
+        }
+
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+    }
+
+    // 단건 주문 처리 (격리 모드)
+    private CompletableFuture<OrderResult> processOrderIsolated(Order order, StageExecutors stages) {
+        OrderResult result = new OrderResult(order.getId());
+        CompensationManager cm = new CompensationManager();
+
+        return chargeIsolated(order, result, cm, stages)
+                .thenCompose(payment -> payment == null
+                        ? CompletableFuture.completedFuture(false)
+                        : decreaseStockIsolated(order, result, cm, stages))
+                .thenCompose(inventoryOk -> inventoryOk
+                        ? sendEmailIsolated(order, result, stages)
+                        : CompletableFuture.completedFuture(false))
+                .thenCompose(ok -> {
+                    if (ok) {
+                        result.setStatus("SUCCESS");
+                        return CompletableFuture.completedFuture(result);
+                    }
+                    // 롤백은 전용 보상 풀에서 실행 (정방향 작업 뒤에 밀리지 않음)
+                    return stages.compensate(cm).thenApply(v -> result);
+                });
+    }
+
+    // 결제 단계 (격리 모드)
+    private CompletableFuture<Payment> chargeIsolated(Order order, OrderResult result,
+                                                     CompensationManager cm, StageExecutors stages) {
+        CompletableFuture<Result<Payment, PaymentException>> call =
+                stages.call(Stage.PAYMENT, () -> paymentService.charge(order.getAmount()));
+
+        return stages.withTimeout(Stage.PAYMENT, call).handle((paymentResult, error) -> {
+            if (error != null) {
+                failStage(Stage.PAYMENT, error, result);
+                // 타임아웃 이후 뒤늦게 성공한 결제는 보상 풀에서 환불
+                stages.onLateResult(call, late -> {
+                    if (late.isSuccess()) {
+                        paymentService.refund(late.getValue().getId());
+                    }
+                });
+                return null;
+            }
+            return applyPayment(paymentResult, result, cm);
+        });
+    }
+
+    // 재고 단계 (격리 모드)
+    private CompletableFuture<Boolean> decreaseStockIsolated(Order order, OrderResult result,
+                                                            CompensationManager cm, StageExecutors stages) {
+        CompletableFuture<Result<Void, InventoryException>> call =
+                stages.call(Stage.INVENTORY, () -> decreaseAll(order));
+
+        return stages.withTimeout(Stage.INVENTORY, call).handle((inventoryResult, error) -> {
+            if (error != null) {
+                failStage(Stage.INVENTORY, error, result);
+                // 타임아웃 이후 뒤늦게 차감된 재고는 보상 풀에서 복구
+                stages.onLateResult(call, late -> {
+                    if (late.isSuccess()) {
+                        order.getItems().forEach(item ->
+                                inventoryService.increaseStock(item.getProductId(), item.getQuantity()));
+                    }
+                });
+                return false;
+            }
+            return applyInventory(inventoryResult, order, result, cm);
+        });
+    }
+
+    // 이메일 단계 (격리 모드)
+    private CompletableFuture<Boolean> sendEmailIsolated(Order order, OrderResult result, StageExecutors stages) {
+        CompletableFuture<Result<Void, Exception>> call =
+                stages.call(Stage.EMAIL, () -> emailService.sendConfirmation(order.getCustomerEmail(), order.getId()));
+
+        return stages.withTimeout(Stage.EMAIL, call).handle((emailResult, error) -> {
+            if (error != null) {
+                failStage(Stage.EMAIL, error, result);
+                return false;
+            }
+            return applyEmail(emailResult, result);
+        });
+    }
+
+    // 타임아웃/벌크헤드 거절/예외를 단계별 상태로 변환
+    private void failStage(Stage stage, Throwable error, OrderResult result) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+
+        if (cause instanceof TimeoutException) {
+            result.setStatus(stage.name() + "_TIMEOUT");
+        } else if (cause instanceof StageRejectedException) {
+            result.setStatus(stage.name() + "_REJECTED");
+        } else {
+            result.setStatus(stage.name() + "_FAILED");
+        }
+        result.setError(cause.getMessage());
+    }
 }
 
 // 서비스 인터페이스
@@ -172,6 +332,168 @@ class CompensationManager {
 }
 
 
+// 하위 시스템 구분 (전용 풀/벌크헤드/타임아웃 적용 단위)
+enum Stage {
+    PAYMENT, INVENTORY, EMAIL
+}
+
+// 단계별 설정 (워커 스레드 수, 대기열 크기, 호출 타임아웃)
+record StageConfig(int threads, int queueCapacity, Duration timeout) {
+    // 벌크헤드 한도 = 실행 중 + 대기 중 호출 수
+    int maxConcurrentCalls() {
+        return threads + queueCapacity;
+    }
+}
+
+// 벌크헤드 포화로 호출 자체가 거절된 경우
+class StageRejectedException extends RuntimeException {
+    public StageRejectedException(Stage stage) {
+        super(stage + " bulkhead full");
+    }
+}
+
+// 단계별 전용 실행기 묶음
+// - 하위 시스템마다 고정 크기 풀 + 유한 대기열 (공용 ForkJoinPool 미사용)
+// - 벌크헤드: 한 하위 시스템이 느려져도 대기 호출이 한도를 넘으면 즉시 거절
+// - 보상(롤백)은 별도 풀에서 실행되어 정방향 작업 뒤에 밀리지 않음
+// - 단계별 지연 시간 히스토그램 수집
+class StageExecutors implements AutoCloseable {
+
+    private final Map<Stage, StageConfig> configs = new EnumMap<>(Stage.class);
+    private final Map<Stage, ThreadPoolExecutor> pools = new EnumMap<>(Stage.class);
+    private final Map<Stage, Semaphore> bulkheads = new EnumMap<>(Stage.class);
+    private final Map<Stage, LatencyHistogram> latencies = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> timeouts = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> rejections = new EnumMap<>(Stage.class);
+    private final ExecutorService compensationPool;
+    private final Semaphore orderPermits;
+
+    public StageExecutors(Map<Stage, StageConfig> configs, int compensationThreads, int maxInFlightOrders) {
+        for (Stage stage : Stage.values()) {
+            StageConfig config = configs.get(stage);
+            if (config == null) {
+                throw new IllegalArgumentException("설정 누락: " + stage);
+            }
+            this.configs.put(stage, config);
+            this.pools.put(stage, new ThreadPoolExecutor(
+                    config.threads(), config.threads(),
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, config.queueCapacity())),
+                    namedThreads(stage.name().toLowerCase())));
+            this.bulkheads.put(stage, new Semaphore(config.maxConcurrentCalls()));
+            this.latencies.put(stage, new LatencyHistogram());
+            this.timeouts.put(stage, new LongAdder());
+            this.rejections.put(stage, new LongAdder());
+        }
+        this.compensationPool = Executors.newFixedThreadPool(compensationThreads, namedThreads("compensation"));
+        this.orderPermits = new Semaphore(maxInFlightOrders);
+    }
+
+    // 기본 설정: 결제/재고는 짧은 타임아웃, 이메일은 느려도 되지만 동시 호출 제한
+    public static StageExecutors defaults() {
+        Map<Stage, StageConfig> configs = new EnumMap<>(Stage.class);
+        configs.put(Stage.PAYMENT, new StageConfig(8, 32, Duration.ofSeconds(2)));
+        configs.put(Stage.INVENTORY, new StageConfig(8, 32, Duration.ofSeconds(1)));
+        configs.put(Stage.EMAIL, new StageConfig(4, 64, Duration.ofSeconds(3)));
+        return new StageExecutors(configs, 2, 32);
+    }
+
+    // 단계 호출 제출 (벌크헤드 포화 시 즉시 실패한 future 반환, 블로킹 없음)
+    public <T> CompletableFuture<T> call(Stage stage, Supplier<T> task) {
+        Semaphore bulkhead = bulkheads.get(stage);
+        if (!bulkhead.tryAcquire()) {
+            rejections.get(stage).increment();
+            return CompletableFuture.failedFuture(new StageRejectedException(stage));
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            pools.get(stage).execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    future.complete(task.get());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    latencies.get(stage).record(System.nanoTime() - start);
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            rejections.get(stage).increment();
+            return CompletableFuture.failedFuture(new StageRejectedException(stage));
+        }
+        return future;
+    }
+
+    // 단계별 타임아웃 적용 (원본 호출은 계속 진행되므로 사본에만 타임아웃을 건다)
+    public <T> CompletableFuture<T> withTimeout(Stage stage, CompletableFuture<T> call) {
+        return call.copy()
+                .orTimeout(configs.get(stage).timeout().toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((value, error) -> {
+                    if (error instanceof TimeoutException) {
+                        timeouts.get(stage).increment();
+                    }
+                });
+    }
+
+    // 타임아웃으로 포기한 호출이 뒤늦게 끝났을 때 처리 (보상 풀에서 실행)
+    public <T> void onLateResult(CompletableFuture<T> call, Consumer<T> action) {
+        call.thenAcceptAsync(action, compensationPool);
+    }
+
+    // 보상 작업 전체 실행 (전용 풀)
+    public CompletableFuture<Void> compensate(CompensationManager cm) {
+        return CompletableFuture.runAsync(cm::compensateAll, compensationPool);
+    }
+
+    public void acquireOrderPermit() {
+        try {
+            orderPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("주문 처리 대기 중 인터럽트", e);
+        }
+    }
+
+    public void releaseOrderPermit() {
+        orderPermits.release();
+    }
+
+    public LatencyHistogram latency(Stage stage) {
+        return latencies.get(stage);
+    }
+
+    // 단계별 지연 시간/타임아웃/거절 현황
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            sb.append(stage).append(": ").append(latencies.get(stage))
+                    .append(", timeouts=").append(timeouts.get(stage).sum())
+                    .append(", rejected=").append(rejections.get(stage).sum())
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        pools.values().forEach(ExecutorService::shutdown);
+        compensationPool.shutdown();
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + seq.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
+
+
 // Result 타입 도입 -> 성공/실패를 타입으로 명시, 예외 대신 값으로 에러 전달
 class Result<T, E>  {
     // 성공 시 값
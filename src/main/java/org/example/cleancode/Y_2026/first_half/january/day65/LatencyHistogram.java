@@ -0,0 +1,53 @@
+package org.example.cleancode.Y_2026.first_half.january.day65;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// 락 없는 지연 시간 히스토그램 (2의 거듭제곱 마이크로초 버킷)
+// 버킷 i = [2^i, 2^(i+1)) us, 백분위수는 버킷 상한으로 근사
+public class LatencyHistogram {
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Long::max, 0);
+
+    public void record(long nanos) {
+        long micros = Math.max(1, nanos / 1_000);
+        int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        maxMicros.accumulate(micros);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    // 백분위수 (0.0 ~ 1.0), 단위 마이크로초
+    public long percentileMicros(double percentile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min((1L << (i + 1)) - 1, maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count()
+                + ", p50=" + percentileMicros(0.50) + "us"
+                + ", p95=" + percentileMicros(0.95) + "us"
+                + ", p99=" + percentileMicros(0.99) + "us"
+                + ", max=" + maxMicros.get() + "us";
+    }
+}
@@ -1,6 +1,9 @@
 package org.example.cleancode.Y_2026.first_half.march.day102;
 
 
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkhead;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadConfig;
 import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
@@ -8,11 +11,33 @@ import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import io.github.resilience4j.retry.Retry;
 import io.github.resilience4j.retry.RetryConfig;
 import io.github.resilience4j.decorators.Decorators;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import org.example.cleancode.Y_2026.first_half.january.day65.LatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
-import java.util.function.Supplier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 /**
  * Day 102 과제 — Resilience4j: Circuit Breaker
@@ -23,14 +48,46 @@ import java.util.function.Supplier;
  *  3. 복구 확인 로직 없음 -> waitDurationInOpenState + HALF_OPEN 자동 전환
  *  4. fallback 없음 -> CallNotPermittedException 처리로 대체 응답 반환
  *  5. 상태 변화 모니터링 없음 -> cb.getEventPublisher().onStateTransition() 로그
+ *  6. 응답 없는 PG 호출이 호출자 스레드를 무기한 점유 -> TimeLimiter(시도당 시간 제한) + ThreadPoolBulkhead(동시 호출 상한)
+ *  7. 꼬리 지연(p95 이상) -> 헤징: 관측 p95까지 응답이 없으면 같은 멱등 키로 한 번 더 보내고 먼저 성공한 응답 사용
+ *  8. 타임아웃 후 재시도/중복 제출 시 이중 결제 가능 -> IdempotencyStore: 주문 ID + 금액마다 토큰 하나, 성공 결과 재사용,
+ *     동시 중복 요청은 진행 중인 호출 하나를 함께 기다림
+ *
+ * 데코레이터 순서 (안쪽 -> 바깥): Bulkhead -> TimeLimiter -> 헤징 -> Retry -> CircuitBreaker
  */
-public class Day102PaymentClient {
+public class Day102PaymentClient implements AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(Day102PaymentClient.class);
+
+    // 결제 한 건의 전체 대기 한도 (시도 1s x 재시도 2회 + 대기/큐잉 여유)
+    private static final Duration PAYMENT_DEADLINE = Duration.ofSeconds(3);
+    // 관측치가 적을 때 쓰는 헤지 지연
+    private static final Duration DEFAULT_HEDGE_DELAY = Duration.ofMillis(100);
+    private static final int MIN_HEDGE_SAMPLES = 20;
+
     private CircuitBreaker circuitBreaker;
     private Retry retry;
+    private final TimeLimiter timeLimiter;
+    private final ThreadPoolBulkhead bulkhead;
+    // TimeLimiter / 비동기 Retry / 헤지 타이머 공용
+    private final ScheduledExecutorService scheduler;
+
+    private final boolean hedging;
+    private final IdempotencyStore<String> idempotency;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder hedgedAttempts = new LongAdder();
+
+    // PG사 쪽 멱등 처리 시뮬레이션 (같은 키로 다시 오면 같은 결과)
+    private final Map<String, String> pgProcessed = new ConcurrentHashMap<>();
 
     public Day102PaymentClient() {
+        this(true, IdempotencyStore.inMemory(Duration.ofHours(24)));
+    }
+
+    public Day102PaymentClient(boolean hedging, IdempotencyStore<String> idempotency) {
+        this.hedging = hedging;
+        this.idempotency = idempotency;
+
         CircuitBreakerConfig config = CircuitBreakerConfig.custom()
                 .failureRateThreshold(50)
                 .slidingWindowSize(6)
@@ -52,51 +109,287 @@ public class Day102PaymentClient {
                 .waitDuration(Duration.ofMillis(100))
                 .build());
 
+        // 시도 하나당 최대 대기 시간 (넘으면 TimeoutException)
+        // cancelRunningFuture는 future만 취소하고 워커 스레드는 깨우지 않음 -> attempt에서 워커를 직접 인터럽트
+        this.timeLimiter = TimeLimiter.of("payment", TimeLimiterConfig.custom()
+                .timeoutDuration(Duration.ofSeconds(1))
+                .cancelRunningFuture(true)
+                .build());
+
+        // PG 호출 전용 스레드 풀 (호출자 스레드 대신 여기서 대기, 꽉 차면 BulkheadFullException)
+        this.bulkhead = ThreadPoolBulkhead.of("payment", ThreadPoolBulkheadConfig.custom()
+                .coreThreadPoolSize(4)
+                .maxThreadPoolSize(8)
+                .queueCapacity(16)
+                .build());
+
+        this.scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "payment-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     // 외부 PG사 API 호출 (불안정한 서비스 가정)
     public String requestPayment(String orderId, int amount) {
-        log.info("결제 요청: orderId={}, amount={}", orderId, amount);
-
         try {
-            // 외부 API 호출 시뮬레이션 (30% 확률로 실패)
-            Supplier<String> decorated = Decorators.ofSupplier(() -> callExternalPgApi(orderId, amount))
-                    .withRetry(retry)
-                    .withCircuitBreaker(circuitBreaker)
-                    .decorate();
-            String result = decorated.get();
+            String result = requestPaymentAsync(orderId, amount).toCompletableFuture()
+                    .get(PAYMENT_DEADLINE.toMillis(), TimeUnit.MILLISECONDS);
 
             log.info("결제 성공: {}", result);
             return result;
-        } catch (CallNotPermittedException e) {
-            log.warn("Circuit OPEN — 결제 서비스 일시 중단");
-            return "결제 서비스 점검 중입니다. 잠시 후 다시 시도해주세요.";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("결제 대기 중단");
+        } catch (TimeoutException e) {
+            // 진행 중인 호출은 멱등 키로 계속 추적됨 -> 같은 주문 재제출 시 그 결과를 받음
+            log.error("결제 결과 확인 지연: orderId={}", orderId);
+            throw new RuntimeException("결제 결과 확인 지연: 잠시 후 같은 주문으로 다시 조회해주세요.");
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof CallNotPermittedException) {
+                log.warn("Circuit OPEN — 결제 서비스 일시 중단");
+                return "결제 서비스 점검 중입니다. 잠시 후 다시 시도해주세요.";
+            }
+            if (cause instanceof BulkheadFullException) {
+                log.warn("동시 결제 요청 한도 초과");
+                return "결제 요청이 많습니다. 잠시 후 다시 시도해주세요.";
+            }
+            String reason = cause instanceof TimeoutException ? "PG 응답 시간 초과" : cause.getMessage();
+            log.error("결제 실패: {}", reason);
+            throw new RuntimeException("결제 실패: " + reason);
+        }
+    }
+
+    // 호출자 스레드를 막지 않는 결제 요청
+    // 멱등 키는 주문 ID + 금액마다 하나 -> 재시도/헤지/중복 제출 모두 같은 키 사용, 이미 성공했으면 PG 호출 없음
+    public CompletionStage<String> requestPaymentAsync(String orderId, int amount) {
+        log.info("결제 요청: orderId={}, amount={}", orderId, amount);
+
+        return idempotency.executeAsync(orderId + ":" + amount, idempotencyKey ->
+                Decorators.ofCompletionStage(() -> hedgedAttempt(orderId, amount, idempotencyKey))
+                        .withRetry(retry, scheduler)
+                        .withCircuitBreaker(circuitBreaker)
+                        .get());
+    }
+
+    // 헤지 지연 = 관측 p95 (관측치가 적으면 기본값)
+    public Duration getHedgeDelay() {
+        if (latencies.count() < MIN_HEDGE_SAMPLES) {
+            return DEFAULT_HEDGE_DELAY;
+        }
+        return Duration.ofNanos(latencies.percentileMicros(0.95) * 1_000);
+    }
+
+    // 성공한 PG 호출 지연 분위수 (0.0 ~ 1.0, Day65 LatencyHistogram과 같은 기준), 단위 ms
+    public double getLatencyPercentileMillis(double percentile) {
+        return latencies.percentileMicros(percentile) / 1_000.0;
+    }
+
+    public long getLatencySampleCount() {
+        return latencies.count();
+    }
+
+    public long getHedgedAttemptCount() {
+        return hedgedAttempts.sum();
+    }
+
+    public IdempotencyStore<String> getIdempotencyStore() {
+        return idempotency;
+    }
+
+    // Bulkhead 스레드는 데몬이 아님 -> 닫지 않으면 JVM이 종료되지 않음
+    @Override
+    public void close() {
+        try {
+            bulkhead.close();
         } catch (Exception e) {
-            log.error("결제 실패: {}", e.getMessage());
-            // 문제 1: 실패해도 계속 외부 API를 호출함 (장애 전파)
-            // 문제 2: 실패 횟수/비율 추적 없음
-            // 문제 3: 서비스 복구 여부 확인 로직 없음
-            throw new RuntimeException("결제 실패: " + e.getMessage());
+            log.warn("Bulkhead 종료 실패: {}", e.getMessage());
+        }
+        scheduler.shutdownNow();
+    }
+
+    // 헤징: 첫 시도가 p95까지 끝나지 않으면 두 번째 시도 -> 먼저 성공한 쪽 사용, 둘 다 실패하면 실패
+    // 첫 시도가 헤지 전에 실패하면 바로 실패 (재시도는 바깥 Retry가 담당)
+    private CompletableFuture<String> hedgedAttempt(String orderId, int amount, String idempotencyKey) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        // 아직 끝나지 않은 시도 수 (0이 되면 모두 실패)
+        AtomicInteger running = new AtomicInteger(1);
+
+        startAttempt(orderId, amount, idempotencyKey, result, running);
+        if (!hedging) {
+            return result;
+        }
+
+        ScheduledFuture<?> hedge = scheduler.schedule(() -> {
+            int current;
+            do {
+                current = running.get();
+                if (current == 0 || result.isDone()) {
+                    return;
+                }
+            } while (!running.compareAndSet(current, current + 1));
+
+            hedgedAttempts.increment();
+            log.info("헤지 요청: orderId={} (p95 {}ms 초과)", orderId, getHedgeDelay().toMillis());
+            startAttempt(orderId, amount, idempotencyKey, result, running);
+        }, getHedgeDelay().toNanos(), TimeUnit.NANOSECONDS);
+
+        result.whenComplete((value, error) -> hedge.cancel(false));
+        return result;
+    }
+
+    // running은 호출 전에 이미 증가된 상태 -> 시작 자체가 실패해도(BulkheadFullException 등) 반드시 감소
+    private void startAttempt(String orderId, int amount, String idempotencyKey,
+                              CompletableFuture<String> result, AtomicInteger running) {
+        long start = System.nanoTime();
+        CompletionStage<String> stage;
+        try {
+            stage = attempt(orderId, amount, idempotencyKey);
+        } catch (Throwable e) {
+            if (running.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(e));
+            }
+            return;
+        }
+        stage.whenComplete((value, error) -> {
+            if (error == null) {
+                latencies.record(System.nanoTime() - start);
+                result.complete(value);
+            } else if (running.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(error));
+            }
+        });
+    }
+
+    // 시도 1회: Bulkhead 스레드에서 실행 + TimeLimiter 시간 제한
+    // 시간 초과/실패로 끝나면 워커 스레드를 인터럽트 -> 응답 없는 PG 호출이 Bulkhead 스레드를 계속 잡지 않음
+    // (큐에서 기다리던 시도는 시작하지 않고 끝남)
+    private CompletionStage<String> attempt(String orderId, int amount, String idempotencyKey) {
+        InterruptibleCall call = new InterruptibleCall();
+        return Decorators.ofSupplier(() -> {
+                    if (!call.enter()) {
+                        throw new CancellationException("시간 초과로 취소된 시도");
+                    }
+                    try {
+                        return callExternalPgApi(orderId, amount, idempotencyKey);
+                    } finally {
+                        call.exit();
+                    }
+                })
+                .withThreadPoolBulkhead(bulkhead)
+                .withTimeLimiter(timeLimiter, scheduler)
+                .get()
+                .whenComplete((value, error) -> {
+                    if (error != null) {
+                        call.cancel();
+                    }
+                });
+    }
+
+    private String callExternalPgApi(String orderId, int amount, String idempotencyKey) {
+        String processed = pgProcessed.get(idempotencyKey);
+        if (processed != null) {
+            return processed;
+        }
+
+        // 지연 시뮬레이션: 대부분 빠르고, 일부 느리고, 드물게 응답 없음
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double roll = random.nextDouble();
+        long delayMillis = roll < 0.85 ? 20 + random.nextInt(40)
+                : roll < 0.97 ? 150 + random.nextInt(200)
+                : 5_000;
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("PG 호출 취소");
         }
+
+        // 20% 확률로 외부 API 실패 시뮬레이션
+        if (random.nextDouble() < 0.2) {
+            throw new RuntimeException("PG사 연결 오류");
+        }
+        return pgProcessed.computeIfAbsent(idempotencyKey, key -> "PAY-" + orderId + "-" + amount);
     }
 
-    private String callExternalPgApi(String orderId, int amount) {
-        // 50% 확률로 외부 API 실패 시뮬레이션
-        if (Math.random() < 0.5) {
-            throw new RuntimeException("PG사 연결 타임아웃");
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
         }
-        return "PAY-" + orderId + "-" + amount;
+        return cause;
     }
 
-    public static void main(String[] args) {
-        Day102PaymentClient client = new Day102PaymentClient();
+    public static void main(String[] args) throws Exception {
+        Path file = Files.createTempFile("day102-idempotency", ".log");
+        Day102PaymentClient client = new Day102PaymentClient(true,
+                IdempotencyStore.open(file, Duration.ofHours(24), Function.identity(), Function.identity()));
 
-        for (int i = 1; i <= 10; i++) {
+        for (int i = 1; i <= 30; i++) {
             try {
                 System.out.println(i + ". " + client.requestPayment("ORD-" + i, 10000 * i));
             } catch (Exception e) {
                 System.out.println(i + ". 오류: " + e.getMessage());
             }
         }
+
+        // 같은 주문을 동시에 5번 제출 -> PG 호출은 1회
+        List<CompletableFuture<String>> duplicates = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            duplicates.add(client.requestPaymentAsync("ORD-DUP", 5000).toCompletableFuture());
+        }
+        for (CompletableFuture<String> duplicate : duplicates) {
+            System.out.println("중복 제출: " + duplicate.handle((r, e) -> r != null ? r : "오류: " + e.getMessage()).join());
+        }
+        // 이미 성공한 주문 재제출 -> 저장된 결과
+        System.out.println("재제출: " + client.requestPayment("ORD-1", 10000));
+
+        IdempotencyStore<String> store = client.getIdempotencyStore();
+        System.out.printf("멱등 저장소: 항목 %d, PG 호출 %d, 저장 결과 응답 %d, 진행 중 합류 %d%n",
+                store.size(), store.getCallCount(), store.getHitCount(), store.getJoinedCount());
+        store.close();
+
+        // 재시작 후에도 결과 유지
+        try (IdempotencyStore<String> reopened = IdempotencyStore.open(file, Duration.ofHours(24),
+                Function.identity(), Function.identity())) {
+            System.out.println("재시작 후 ORD-1 결과: " + reopened.findResult("ORD-1:10000"));
+        }
+        Files.deleteIfExists(file);
+
+        System.out.printf("지연 p50=%.1fms p95=%.1fms p99=%.1fms (표본 %d), 헤지 지연=%dms, 헤지 요청=%d%n",
+                client.getLatencyPercentileMillis(0.50), client.getLatencyPercentileMillis(0.95),
+                client.getLatencyPercentileMillis(0.99), client.getLatencySampleCount(),
+                client.getHedgeDelay().toMillis(), client.getHedgedAttemptCount());
+        client.close();
+    }
+}
+
+// Bulkhead 워커 스레드에서 실행 중인 호출 하나 (취소 시 그 스레드만 인터럽트)
+final class InterruptibleCall {
+    private Thread worker;
+    private boolean cancelled;
+
+    // 이미 취소됐으면 false (시작하지 않음)
+    synchronized boolean enter() {
+        if (cancelled) {
+            return false;
+        }
+        worker = Thread.currentThread();
+        return true;
+    }
+
+    // 끝난 뒤 들어온 인터럽트는 지움 -> 풀 스레드가 다음 작업에 인터럽트 상태를 들고 가지 않음
+    synchronized void exit() {
+        worker = null;
+        Thread.interrupted();
+    }
+
+    synchronized void cancel() {
+        cancelled = true;
+        if (worker != null) {
+            worker.interrupt();
+        }
     }
 }
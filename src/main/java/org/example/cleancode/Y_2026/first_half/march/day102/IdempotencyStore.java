@@ -0,0 +1,533 @@
+package org.example.cleancode.Y_2026.first_half.march.day102;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * 결제 멱등 처리 저장소 (요청 키 -> 멱등 토큰 / 처리 결과)
+ *
+ * - 요청 키(주문 ID + 금액)마다 멱등 토큰을 하나 발급 -> 재시도/중복 제출 모두 같은 토큰으로 PG 호출
+ * - 이미 성공한 요청: PG 호출 없이 저장된 결과 반환
+ * - 같은 키로 동시에 들어온 요청: 진행 중인 호출 하나의 결과를 함께 기다림 (PG 호출 1회)
+ * - 실패한 요청: 결과는 남기지 않고 토큰만 유지 -> 다음 재시도도 같은 토큰 (타임아웃 후 실제로 결제됐어도 PG가 중복 처리하지 않음)
+ * - TTL 지난 항목은 조회 시 무시, 일정 요청마다 정리
+ * - 파일 백업(선택): 진행 시작/성공을 append only 파일에 기록 -> 재시작 후에도 토큰과 결과 유지
+ *   여러 결제 스레드의 기록을 버퍼에 모아 전용 스레드가 한 번에 write + fsync (그룹 커밋, FileSagaLog와 같은 방식)
+ *   기록은 fsync가 끝난 뒤에야 PG 호출 / 응답으로 이어짐, 기록 실패는 호출 실패로 처리
+ *   성공 기록은 fsync를 기다리지 않고 flusher에 넘김 -> 완료 스레드(bulkhead 워커, 스케줄러)를 막지 않고 flusher가 응답을 완료
+ *   (열 때 CRC가 맞는 레코드까지만 읽고 찢어진 꼬리는 버림, 살아 있는 항목만 다시 써서 파일 크기를 줄임)
+ *
+ * 레코드 형식: [length:int][crc32:int][payload]
+ * payload: [type:1][key][token][expiresAt:8] + 성공이면 [hasResult:1] + 결과가 null이 아니면 [result]
+ * (key, token = DataOutput.writeUTF / result = int 길이 + UTF-8, 64KB 제한 없음)
+ */
+public class IdempotencyStore<T> implements AutoCloseable {
+
+    private static final byte IN_FLIGHT = 1;
+    private static final byte COMPLETED = 2;
+    private static final int PURGE_INTERVAL = 1024;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Map<String, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final Function<T, String> encoder;
+    private final Function<String, T> decoder;
+    private final Path file;
+    private final FileChannel channel;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    // append 된 기록이 쌓이는 버퍼 (flusher가 가져갈 때 교체)
+    private ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+    private long appendedSequence;
+    private long durableSequence;
+    // fsync 후 완료할 비동기 기록 (sequence 순)
+    private final ArrayDeque<DurableWaiter> waiters = new ArrayDeque<>();
+    private IOException writeError;
+    private boolean closed;
+    private final Thread flusher;
+
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+    private final LongAdder calls = new LongAdder();
+
+    private IdempotencyStore(Duration ttl, Path file, Function<T, String> encoder, Function<String, T> decoder) {
+        this.ttlMillis = ttl.toMillis();
+        this.file = file;
+        this.encoder = encoder;
+        this.decoder = decoder;
+        if (file == null) {
+            this.channel = null;
+            this.flusher = null;
+            return;
+        }
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            load();
+            compact();
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("멱등 저장소 열기 실패: " + file, e);
+        }
+
+        this.flusher = new Thread(this::flushLoop, "idempotency-store-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // 메모리 전용 (재시작하면 사라짐)
+    public static <T> IdempotencyStore<T> inMemory(Duration ttl) {
+        return new IdempotencyStore<>(ttl, null, null, null);
+    }
+
+    // 파일 백업 (결과는 encoder/decoder로 문자열 변환해 기록)
+    public static <T> IdempotencyStore<T> open(Path file, Duration ttl,
+                                               Function<T, String> encoder, Function<String, T> decoder) {
+        return new IdempotencyStore<>(ttl, file, encoder, decoder);
+    }
+
+    // call: 멱등 토큰을 받아 PG를 호출 (이 키로 진행 중인 호출이 없고 저장된 결과도 없을 때만 실행)
+    public CompletableFuture<T> executeAsync(String key, Function<String, ? extends CompletionStage<T>> call) {
+        maybePurge();
+        long now = System.currentTimeMillis();
+        CompletableFuture<T> mine = new CompletableFuture<>();
+
+        Entry<T> entry = entries.compute(key, (k, current) -> {
+            // 진행 중인 호출은 TTL이 지났어도 합류 (새 토큰으로 다시 호출하면 PG가 중복 결제로 보지 못함)
+            if (current != null && (current.inFlight != null || current.isCompleted() && !current.isExpired(now))) {
+                return current;
+            }
+            String token = current != null && !current.isExpired(now) ? current.token : UUID.randomUUID().toString();
+            return new Entry<>(token, now + ttlMillis, mine, false, null);
+        });
+
+        if (entry.isCompleted()) {
+            hits.increment();
+            return CompletableFuture.completedFuture(entry.result);
+        }
+        if (entry.inFlight != mine) {
+            joined.increment();
+            return entry.inFlight.thenApply(Function.identity());   // 공유 future를 호출자가 완료시키지 못하게 복사본 반환
+        }
+
+        calls.increment();
+        CompletionStage<T> stage;
+        try {
+            // 토큰이 디스크에 남은 뒤에 PG 호출 (기록 실패 = 호출하지 않고 실패)
+            append(IN_FLIGHT, key, entry);
+            stage = call.apply(entry.token);
+        } catch (Throwable e) {
+            // 어떤 예외든 진행 중 상태로 남으면 같은 키의 요청이 영원히 대기함
+            stage = CompletableFuture.failedFuture(e);
+        }
+        stage.whenComplete((result, error) -> {
+            // 결과 불명 -> 토큰만 남겨 다음 재시도도 같은 토큰 사용
+            Entry<T> tokenOnly = new Entry<>(entry.token, entry.expiresAt, null, false, null);
+            if (error != null) {
+                finish(key, entry, tokenOnly, mine, null, error);
+                return;
+            }
+            Entry<T> completed = new Entry<>(entry.token, entry.expiresAt, null, true, result);
+            CompletableFuture<Void> written;
+            try {
+                written = appendAsync(COMPLETED, key, completed);
+            } catch (Throwable e) {
+                written = CompletableFuture.failedFuture(e);
+            }
+            // 결과 기록 실패도 실패로 응답 (재시도는 같은 토큰 -> PG가 이미 처리한 결제를 돌려줌)
+            written.whenComplete((ignored, writeFailure) -> finish(key, entry,
+                    writeFailure == null ? completed : tokenOnly, mine, result, writeFailure));
+        });
+        return mine.thenApply(Function.identity());
+    }
+
+    // 어떤 경우든 진행 중 상태를 걷어냄 (남으면 같은 키의 요청이 영원히 대기함)
+    private void finish(String key, Entry<T> entry, Entry<T> next, CompletableFuture<T> mine,
+                        T result, Throwable failure) {
+        entries.replace(key, entry, next);
+        if (failure == null) {
+            mine.complete(result);
+        } else {
+            mine.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure);
+        }
+    }
+
+    // 동기 호출용: call은 호출자 스레드에서 실행, 실패 시 call이 던진 예외를 그대로 던짐
+    public T execute(String key, Function<String, T> call) {
+        try {
+            return executeAsync(key, token -> CompletableFuture.completedFuture(call.apply(token))).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // 저장된 성공 결과 (없거나 만료되면 null)
+    public T findResult(String key) {
+        Entry<T> entry = entries.get(key);
+        return entry != null && entry.isCompleted() && !entry.isExpired(System.currentTimeMillis())
+                ? entry.result : null;
+    }
+
+    public int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int before = entries.size();
+        // 진행 중인 항목은 끝날 때까지 유지
+        entries.values().removeIf(entry -> entry.inFlight == null && entry.isExpired(now));
+        return before - entries.size();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // 저장된 결과로 응답한 횟수
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    // 진행 중인 호출에 합류한 횟수
+    public long getJoinedCount() {
+        return joined.sum();
+    }
+
+    // 실제로 PG를 호출한 횟수
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    @Override
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            awaitFlushed();
+            closed = true;
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException("멱등 저장소 닫기 실패: " + file, e);
+        }
+    }
+
+    private void maybePurge() {
+        operations.increment();
+        if (operations.sum() % PURGE_INTERVAL == 0) {
+            purgeExpired();
+        }
+    }
+
+    // ---- 파일 ----
+
+    // 버퍼에 넣고 fsync 될 때까지 대기 (같은 시점의 기록들은 fsync 한 번으로 함께 반영)
+    private void append(byte type, String key, Entry<T> entry) {
+        if (channel == null) {
+            return;
+        }
+        byte[] payload = encode(type, key, entry);
+
+        lock.lock();
+        try {
+            long sequence = enqueue(payload);
+            while (durableSequence < sequence) {
+                checkWritable();
+                durable.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 버퍼에 넣고 바로 반환, fsync가 끝나면 flusher가 future를 완료 (기록 실패면 예외로 완료)
+    private CompletableFuture<Void> appendAsync(byte type, String key, Entry<T> entry) {
+        if (channel == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        byte[] payload = encode(type, key, entry);
+        CompletableFuture<Void> written = new CompletableFuture<>();
+
+        lock.lock();
+        try {
+            waiters.add(new DurableWaiter(enqueue(payload), written));
+        } finally {
+            lock.unlock();
+        }
+        return written;
+    }
+
+    // lock 보유 상태에서 호출
+    private long enqueue(byte[] payload) {
+        checkWritable();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ensureCapacity(RECORD_HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        pending.signal();
+        return ++appendedSequence;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long target;
+            lock.lock();
+            try {
+                while (appendedSequence == durableSequence && !closed) {
+                    pending.awaitUninterruptibly();
+                }
+                if (appendedSequence == durableSequence) {
+                    return;   // closed
+                }
+                batch = buffer.flip();
+                buffer = ByteBuffer.allocate(batch.capacity());
+                target = appendedSequence;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            List<DurableWaiter> done = new ArrayList<>();
+            lock.lock();
+            try {
+                if (error != null) {
+                    writeError = error;
+                    done.addAll(waiters);
+                    waiters.clear();
+                } else {
+                    durableSequence = target;
+                    while (!waiters.isEmpty() && waiters.peek().sequence() <= target) {
+                        done.add(waiters.poll());
+                    }
+                }
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            // 락 밖에서 완료 (응답을 이어 받는 작업이 다음 append를 막지 않도록)
+            for (DurableWaiter waiter : done) {
+                if (error == null) {
+                    waiter.future().complete(null);
+                } else {
+                    waiter.future().completeExceptionally(new UncheckedIOException("멱등 저장소 기록 실패: " + file, error));
+                }
+            }
+            if (error != null) {
+                return;
+            }
+        }
+    }
+
+    // lock 보유 상태에서 호출
+    private void awaitFlushed() {
+        while (durableSequence < appendedSequence) {
+            checkWritable();
+            try {
+                durable.await(10, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("멱등 저장소 flush 대기 중 인터럽트", e);
+            }
+        }
+    }
+
+    private void checkWritable() {
+        if (writeError != null) {
+            throw new UncheckedIOException("멱등 저장소 기록 실패: " + file, writeError);
+        }
+        if (closed) {
+            throw new IllegalStateException("닫힌 멱등 저장소");
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (buffer.remaining() >= size) {
+            return;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+        larger.put(buffer.flip());
+        buffer = larger;
+    }
+
+    // 재시작: 만료되지 않은 항목만 복원 (진행 중이던 항목은 결과 불명 -> 토큰만 복원)
+    // CRC가 맞지 않거나 잘린 레코드에서 멈춤 -> 그 뒤(찢어진 꼬리)는 compact에서 버려짐
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        while (data.remaining() >= RECORD_HEADER_SIZE) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length <= 0 || length > data.remaining()) {
+                return;
+            }
+            byte[] payload = new byte[length];
+            data.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                return;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            byte type = in.readByte();
+            String key = in.readUTF();
+            String token = in.readUTF();
+            long expiresAt = in.readLong();
+            String result = null;
+            if (type == COMPLETED && in.readBoolean()) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                result = new String(bytes, StandardCharsets.UTF_8);
+            }
+            if (expiresAt <= now) {
+                entries.remove(key);
+                continue;
+            }
+            Entry<T> current = entries.get(key);
+            if (type == COMPLETED) {
+                entries.put(key, new Entry<>(token, expiresAt, null, true, result == null ? null : decoder.apply(result)));
+            } else if (current == null || !current.isCompleted()) {
+                entries.put(key, new Entry<>(token, expiresAt, null, false, null));
+            }
+        }
+    }
+
+    // 살아 있는 항목만 새 파일에 쓰고 교체
+    private void compact() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer batch = ByteBuffer.allocate(64 * 1024);
+            for (Map.Entry<String, Entry<T>> e : new LinkedHashMap<>(entries).entrySet()) {
+                Entry<T> entry = e.getValue();
+                byte[] payload = encode(entry.isCompleted() ? COMPLETED : IN_FLIGHT, e.getKey(), entry);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (batch.remaining() < RECORD_HEADER_SIZE + payload.length) {
+                    write(out, batch.flip());
+                    batch = ByteBuffer.allocate(Math.max(batch.capacity(), RECORD_HEADER_SIZE + payload.length));
+                }
+                batch.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            }
+            write(out, batch.flip());
+            out.force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void write(FileChannel out, ByteBuffer batch) throws IOException {
+        while (batch.hasRemaining()) {
+            out.write(batch);
+        }
+    }
+
+    private byte[] encode(byte type, String key, Entry<T> entry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            out.writeUTF(key);
+            out.writeUTF(entry.token);
+            out.writeLong(entry.expiresAt);
+            if (type == COMPLETED) {
+                // null 결과도 성공 (결과 없음 표시만 기록)
+                out.writeBoolean(entry.result != null);
+                if (entry.result != null) {
+                    byte[] result = encoder.apply(entry.result).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(result.length);
+                    out.write(result);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // inFlight != null: 호출 진행 중 / completed: 성공 (result는 null일 수 있음) / 그 외: 토큰만 발급됨 (실패 또는 결과 불명)
+    private static final class Entry<T> {
+        private final String token;
+        private final long expiresAt;
+        private final CompletableFuture<T> inFlight;
+        private final boolean completed;
+        private final T result;
+
+        private Entry(String token, long expiresAt, CompletableFuture<T> inFlight, boolean completed, T result) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+            this.inFlight = inFlight;
+            this.completed = completed;
+            this.result = result;
+        }
+
+        private boolean isCompleted() {
+            return completed;
+        }
+
+        private boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+    }
+
+    private record DurableWaiter(long sequence, CompletableFuture<Void> future) {
+    }
+}
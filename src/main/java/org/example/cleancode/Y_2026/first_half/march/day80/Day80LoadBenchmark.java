@@ -0,0 +1,170 @@
+package org.example.cleancode.Y_2026.first_half.march.day80;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Day 80 상품 상세 동시 요청 처리량 측정 (Stub*Client: 400 ~ 600ms)
+ *
+ * - 동시 요청 수를 늘려 가며 getDetail을 한꺼번에 호출
+ *   1) fixed-4: 예전 구조 (고정 4스레드 풀) -> 풀 크기에 막혀 줄 서다 마감 초과, 기본값 응답이 늘어남
+ *   2) fan-out: 하위 호출마다 가상 스레드 -> 요청 수에 비례해 처리량 증가
+ * - degraded = 하위 호출 하나 이상이 기본값으로 채워진 응답 수
+ * - burst: 인기 상품 몇 개에 동시 요청이 몰릴 때 upstream 호출 수 (진행 중 호출 합치기)
+ * - batch: 상품 N개를 getDetails 한 번 vs getDetail N번 동시 호출
+ * - warm: 같은 burst를 한 번 더 -> 리뷰/추천은 캐시 응답, 재고/가격(500ms)만 기다림
+ * - outage: 가격 API 장애 중 -> 0원 대신 마지막 성공 가격(stale)으로 응답
+ * 인자: 최대 동시 요청 수 (기본값 1,000)
+ */
+public class Day80LoadBenchmark {
+
+    private static final Duration DEADLINE = Duration.ofSeconds(1);
+
+    public static void main(String[] args) throws Exception {
+        int maxConcurrency = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        PrintStream console = System.out;
+
+        // 하위 호출 실패 로그는 측정에서 제외
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int concurrency = 1; concurrency <= maxConcurrency; concurrency *= 10) {
+                ExecutorService fixed = Executors.newFixedThreadPool(4);
+                console.println(run("fixed-4", newService(fixed), concurrency));
+                fixed.shutdownNow();
+
+                ExecutorService fanOut = Day80ProductDetailService.newFanOutExecutor();
+                console.println(run("fan-out", newService(fanOut), concurrency));
+                fanOut.shutdownNow();
+            }
+
+            ExecutorService executor = Day80ProductDetailService.newFanOutExecutor();
+            console.println(burst("burst", newService(executor), maxConcurrency, 10));
+            console.println(batch(newService(executor), 100));
+
+            Day80ProductDetailService warm = newService(executor);
+            burst("burst", warm, maxConcurrency, 10);
+            console.println(burst("warm", warm, maxConcurrency, 10));
+
+            console.println(outage(executor, maxConcurrency, 10));
+            executor.shutdownNow();
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static Day80ProductDetailService newService(ExecutorService executor) {
+        return new Day80ProductDetailService(new StubInventoryClient(), new StubReviewClient(),
+                new StubRecommendClient(), new StubPriceClient(), executor, DEADLINE);
+    }
+
+    private static String run(String mode, Day80ProductDetailService service, int concurrency) throws Exception {
+        // 요청 스레드도 요청 수만큼 (호출자 쪽 풀이 병목이 되지 않도록)
+        ExecutorService callers = Day80ProductDetailService.newFanOutExecutor();
+        long start = System.nanoTime();
+        List<Future<ProductDetailResponse>> responses = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            long productId = i;
+            responses.add(callers.submit(() -> service.getDetail(productId)));
+        }
+        int degraded = 0;
+        for (Future<ProductDetailResponse> response : responses) {
+            degraded += isDegraded(response.get()) ? 1 : 0;
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        callers.shutdown();
+
+        return String.format("%-8s concurrency=%,6d  details/s=%,9.1f  elapsed=%6.0fms  degraded=%,6d",
+                mode, concurrency, concurrency / seconds, seconds * 1000, degraded);
+    }
+
+    // 요청 requests개가 hotProducts개 상품에 몰림
+    private static String burst(String mode, Day80ProductDetailService service, int requests, int hotProducts)
+            throws Exception {
+        long callsBefore = service.getUpstreamCallCount();
+        long hitsBefore = service.getCacheHitCount();
+        ExecutorService callers = Day80ProductDetailService.newFanOutExecutor();
+        long start = System.nanoTime();
+        List<Future<ProductDetailResponse>> responses = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            long productId = i % hotProducts;
+            responses.add(callers.submit(() -> service.getDetail(productId)));
+        }
+        int degraded = 0;
+        for (Future<ProductDetailResponse> response : responses) {
+            degraded += isDegraded(response.get()) ? 1 : 0;
+        }
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+        callers.shutdown();
+
+        return String.format("%-8s requests=%,6d  hotProducts=%d  elapsed=%6.0fms  upstreamCalls=%,d (without coalescing %,d)  cacheHits=%,d  degraded=%,d",
+                mode, requests, hotProducts, millis, service.getUpstreamCallCount() - callsBefore, requests * 4L,
+                service.getCacheHitCount() - hitsBefore, degraded);
+    }
+
+    private static String batch(Day80ProductDetailService service, int products) throws Exception {
+        List<Long> productIds = new ArrayList<>(products);
+        for (long i = 0; i < products; i++) {
+            productIds.add(1_000_000 + i);   // burst와 겹치지 않는 상품
+        }
+        long callsBefore = service.getUpstreamCallCount();
+        long start = System.nanoTime();
+        List<ProductDetailResponse> details = service.getDetails(productIds);
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+        long degraded = details.stream().filter(Day80LoadBenchmark::isDegraded).count();
+
+        return String.format("batch    products=%,6d  elapsed=%6.0fms  upstreamCalls=%,d (getDetail each %,d)  degraded=%,d",
+                products, millis, service.getUpstreamCallCount() - callsBefore, products * 4L, degraded);
+    }
+
+    // 한 번 정상 조회 후 가격 API 장애 -> stale 가격으로 응답하는지
+    private static String outage(ExecutorService executor, int requests, int hotProducts) throws Exception {
+        AtomicBoolean down = new AtomicBoolean();
+        PriceClient flakyPrice = new PriceClient() {
+            private final StubPriceClient delegate = new StubPriceClient();
+
+            @Override
+            public PriceInfo getPrice(Long productId) {
+                if (down.get()) {
+                    throw new IllegalStateException("가격 API 장애");
+                }
+                return delegate.getPrice(productId);
+            }
+        };
+        Day80ProductDetailService service = new Day80ProductDetailService(new StubInventoryClient(),
+                new StubReviewClient(), new StubRecommendClient(), flakyPrice, executor, DEADLINE);
+        burst("outage", service, hotProducts, hotProducts);
+        down.set(true);
+
+        ExecutorService callers = Day80ProductDetailService.newFanOutExecutor();
+        List<Future<ProductDetailResponse>> responses = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            long productId = i % hotProducts;
+            responses.add(callers.submit(() -> service.getDetail(productId)));
+        }
+        int degraded = 0;
+        int stale = 0;
+        for (Future<ProductDetailResponse> response : responses) {
+            ProductDetailResponse detail = response.get();
+            degraded += isDegraded(detail) ? 1 : 0;
+            stale += detail.getStaleSources().contains("price") ? 1 : 0;
+        }
+        callers.shutdown();
+
+        return String.format("outage   requests=%,6d  price down  stale=%,d  degraded=%,d  staleServed=%,d",
+                requests, stale, degraded, service.getStaleServedCount());
+    }
+
+    private static boolean isDegraded(ProductDetailResponse response) {
+        return !response.getInventory().isAvailable()
+                || response.getReviews().getReviewCount() == 0
+                || response.getRecommends().isEmpty()
+                || response.getPrice().getOriginalPrice() == 0;
+    }
+}
@@ -2,15 +2,21 @@ package org.example.cleancode.Y_2026.first_half.march.day80;
 
 import lombok.Builder;
 import lombok.Data;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Day 80 🔥 — CompletableFuture 리팩터링
@@ -19,67 +25,186 @@ import java.util.concurrent.TimeUnit;
  * | **부분 실패 처리 없음** | 하나 실패 시 전체 실패 |
  * | **타임아웃 없음** | 특정 클라이언트 hang 시 무한 대기 |
  * | **스레드 낭비** | 요청 스레드가 I/O 동안 계속 점유 |
+ *
+ * 성능 개선
+ * - 고정 4스레드 풀 -> 하위 호출마다 가상 스레드 (동시 요청 수만큼 팬아웃, 풀 크기에 막혀 줄 서지 않음)
+ *   (가상 스레드가 없는 런타임(Java 21 미만)에서는 데몬 스레드 캐시 풀)
+ * - 호출마다 orTimeout(1s) -> 요청 전체에 마감 시각 하나, 마감이 지나면 남은 하위 호출을 취소(인터럽트)하고 기본값 사용
+ * - 같은 상품 요청이 몰려도 출처별로 진행 중인 호출 하나를 공유 (RequestCoalescer)
+ * - getDetails: 여러 상품을 출처별 배치 엔드포인트로 한 번에 조회
+ *   (배치 메서드를 재정의하지 않은 클라이언트는 상품별 단건 호출을 동시에 팬아웃)
+ * - 실패 시 0원/재고 0 대신 출처별 마지막 성공 값 + staleSources 표시 (재고 1분, 가격 10분, 리뷰/추천 1시간까지)
+ * - 리뷰(600ms)/추천은 캐시로 바로 응답하고 백그라운드 갱신 -> 대부분의 요청이 재고/가격 호출(500ms)만 기다림
  */
 
-@Slf4j
-@RequiredArgsConstructor
 public class Day80ProductDetailService {
-    private final InventoryClient inventoryClient;
-    private final ReviewClient reviewClient;
-    private final RecommendClient recommendClient;
-    private final PriceClient priceClient;
+    private static final Duration DEFAULT_DEADLINE = Duration.ofSeconds(1);
 
-    // 메서드 내에서 실행시 4 * 100 처리 됨
-    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private static final CachePolicy INVENTORY_CACHE = CachePolicy.fallbackOnly(Duration.ofMinutes(1));
+    private static final CachePolicy PRICE_CACHE = CachePolicy.fallbackOnly(Duration.ofMinutes(10));
+    private static final CachePolicy REVIEW_CACHE = CachePolicy.refreshAhead(Duration.ofMinutes(5), Duration.ofHours(1));
+    private static final CachePolicy RECOMMEND_CACHE = CachePolicy.refreshAhead(Duration.ofMinutes(10), Duration.ofHours(1));
 
-    public ProductDetailResponse getDetail(Long productId) {
+    // Executors.newVirtualThreadPerTaskExecutor (Java 21 미만이면 null)
+    // 컴파일 대상 버전을 올리지 않도록 클래스 로딩 시 한 번만 찾아 둠
+    private static final MethodHandle VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
 
-        CompletableFuture<InventoryInfo> inventoryFuture =
-                CompletableFuture.supplyAsync(() -> inventoryClient.getInventory(productId), executor)
-                        .orTimeout(1, TimeUnit.SECONDS)
-                        .exceptionally(e -> {
-                            log.warn("inventory 조회 실패: {}", e.getMessage());
-                            return InventoryInfo.builder().productId(productId).stockCount(0).available(false).build();
-                        });
-
-        CompletableFuture<ReviewSummary> reviewSummaryFuture =
-                CompletableFuture.supplyAsync(() -> reviewClient.getReviews(productId), executor)
-                        .orTimeout(1, TimeUnit.SECONDS)
-                        .exceptionally(e -> {
-                            log.warn("review 조회 실패: {}", e.getMessage());
-                            return ReviewSummary.builder().productId(productId).averageScore(0.0).reviewCount(0).build();
-                        });
-
-        CompletableFuture<List<Product>> recommendsFuture =
-                CompletableFuture.supplyAsync(() -> recommendClient.getRecommends(productId), executor)
-                        .orTimeout(1, TimeUnit.SECONDS)
-                        .exceptionally(e -> {
-                            log.warn("recommend 조회 실패: {}", e.getMessage());
-                            return List.of();
-                        });
-
-        CompletableFuture<PriceInfo> priceFuture =
-                CompletableFuture.supplyAsync(() -> priceClient.getPrice(productId), executor)
-                        .orTimeout(1, TimeUnit.SECONDS)
-                        .exceptionally(e -> {
-                            log.warn("price 조회 실패: {}", e.getMessage());
-                            return PriceInfo.builder()
-                                    .productId(productId).originalPrice(0)
-                                    .discountPrice(0).discountRate(0).build();
-                        });
-
-        CompletableFuture.allOf(inventoryFuture, reviewSummaryFuture, recommendsFuture, priceFuture).join();
+    private final DetailSource<InventoryInfo> inventorySource;
+    private final DetailSource<ReviewSummary> reviewSource;
+    private final DetailSource<List<Product>> recommendSource;
+    private final DetailSource<PriceInfo> priceSource;
 
+    private final long deadlineNanos;
+
+    public Day80ProductDetailService(InventoryClient inventoryClient, ReviewClient reviewClient,
+                                     RecommendClient recommendClient, PriceClient priceClient) {
+        this(inventoryClient, reviewClient, recommendClient, priceClient, newFanOutExecutor(), DEFAULT_DEADLINE);
+    }
 
+    public Day80ProductDetailService(InventoryClient inventoryClient, ReviewClient reviewClient,
+                                     RecommendClient recommendClient, PriceClient priceClient,
+                                     ExecutorService executor, Duration deadline) {
+        this.inventorySource = new DetailSource<>("inventory", inventoryClient::getInventory,
+                batchLoader(inventoryClient, InventoryClient.class, "getInventories", inventoryClient::getInventories),
+                Day80ProductDetailService::defaultInventory, executor, INVENTORY_CACHE, deadline);
+        this.reviewSource = new DetailSource<>("review", reviewClient::getReviews,
+                batchLoader(reviewClient, ReviewClient.class, "getReviewsBatch", reviewClient::getReviewsBatch),
+                Day80ProductDetailService::defaultReviews, executor, REVIEW_CACHE, deadline);
+        this.recommendSource = new DetailSource<>("recommend", recommendClient::getRecommends,
+                batchLoader(recommendClient, RecommendClient.class, "getRecommendsBatch",
+                        recommendClient::getRecommendsBatch),
+                productId -> List.of(), executor, RECOMMEND_CACHE, deadline);
+        this.priceSource = new DetailSource<>("price", priceClient::getPrice,
+                batchLoader(priceClient, PriceClient.class, "getPrices", priceClient::getPrices),
+                Day80ProductDetailService::defaultPrice, executor, PRICE_CACHE, deadline);
+        this.deadlineNanos = deadline.toNanos();
+    }
+
+    public ProductDetailResponse getDetail(Long productId) {
+        long deadline = System.nanoTime() + deadlineNanos;
+
+        // 네 출처를 먼저 모두 시작한 뒤 대기
+        DetailSource.Pending<InventoryInfo> inventory = inventorySource.start(productId);
+        DetailSource.Pending<ReviewSummary> reviews = reviewSource.start(productId);
+        DetailSource.Pending<List<Product>> recommends = recommendSource.start(productId);
+        DetailSource.Pending<PriceInfo> price = priceSource.start(productId);
+
+        Set<String> staleSources = new LinkedHashSet<>();
         return ProductDetailResponse.builder()
-                .inventory(inventoryFuture.join())
-                .reviews(reviewSummaryFuture.join())
-                .recommends(recommendsFuture.join())
-                .price(priceFuture.join())
+                .inventory(inventorySource.await(inventory, productId, deadline, staleSources))
+                .reviews(reviewSource.await(reviews, productId, deadline, staleSources))
+                .recommends(recommendSource.await(recommends, productId, deadline, staleSources))
+                .price(priceSource.await(price, productId, deadline, staleSources))
+                .staleSources(staleSources)
                 .build();
     }
 
+    // 결과는 productIds 순서대로 (마감 시각은 목록 전체에 하나)
+    public List<ProductDetailResponse> getDetails(List<Long> productIds) {
+        long deadline = System.nanoTime() + deadlineNanos;
+
+        Map<Long, DetailSource.Pending<InventoryInfo>> inventories = inventorySource.startAll(productIds);
+        Map<Long, DetailSource.Pending<ReviewSummary>> reviews = reviewSource.startAll(productIds);
+        Map<Long, DetailSource.Pending<List<Product>>> recommends = recommendSource.startAll(productIds);
+        Map<Long, DetailSource.Pending<PriceInfo>> prices = priceSource.startAll(productIds);
+
+        Map<Long, ProductDetailResponse> details = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            details.computeIfAbsent(productId, id -> {
+                Set<String> staleSources = new LinkedHashSet<>();
+                return ProductDetailResponse.builder()
+                        .inventory(inventorySource.await(inventories.get(id), id, deadline, staleSources))
+                        .reviews(reviewSource.await(reviews.get(id), id, deadline, staleSources))
+                        .recommends(recommendSource.await(recommends.get(id), id, deadline, staleSources))
+                        .price(priceSource.await(prices.get(id), id, deadline, staleSources))
+                        .staleSources(staleSources)
+                        .build();
+            });
+        }
+        List<ProductDetailResponse> result = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            result.add(details.get(productId));
+        }
+        return result;
+    }
+
+    // 실제로 보낸 upstream 호출 수 (배치 1회 = 1)
+    public long getUpstreamCallCount() {
+        return inventorySource.getUpstreamCallCount() + reviewSource.getUpstreamCallCount()
+                + recommendSource.getUpstreamCallCount() + priceSource.getUpstreamCallCount();
+    }
+
+    // 진행 중인 호출에 합류해 upstream 호출을 아낀 횟수
+    public long getCoalescedCount() {
+        return inventorySource.getJoinedCount() + reviewSource.getJoinedCount()
+                + recommendSource.getJoinedCount() + priceSource.getJoinedCount();
+    }
+
+    // 캐시로 바로 응답한 횟수 (upstream 호출 없음)
+    public long getCacheHitCount() {
+        return inventorySource.getCacheHitCount() + reviewSource.getCacheHitCount()
+                + recommendSource.getCacheHitCount() + priceSource.getCacheHitCount();
+    }
+
+    // 실패 시 마지막 성공 값으로 대신한 횟수
+    public long getStaleServedCount() {
+        return inventorySource.getStaleServedCount() + reviewSource.getStaleServedCount()
+                + recommendSource.getStaleServedCount() + priceSource.getStaleServedCount();
+    }
+
+    static InventoryInfo defaultInventory(Long productId) {
+        return InventoryInfo.builder().productId(productId).stockCount(0).available(false).build();
+    }
+
+    static ReviewSummary defaultReviews(Long productId) {
+        return ReviewSummary.builder().productId(productId).averageScore(0.0).reviewCount(0).build();
+    }
+
+    static PriceInfo defaultPrice(Long productId) {
+        return PriceInfo.builder()
+                .productId(productId).originalPrice(0)
+                .discountPrice(0).discountRate(0).build();
+    }
+
+    // 클라이언트가 배치 메서드를 재정의했을 때만 배치 호출 (기본 구현은 단건 호출을 순서대로 반복해 마감을 넘김)
+    // null이면 DetailSource가 상품별 단건 호출로 팬아웃
+    static <V> Function<List<Long>, Map<Long, V>> batchLoader(Object client, Class<?> api, String method,
+                                                             Function<List<Long>, Map<Long, V>> batch) {
+        try {
+            boolean overridden = client.getClass().getMethod(method, List.class).getDeclaringClass() != api;
+            return overridden ? batch : null;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(api.getSimpleName() + "에 배치 메서드 없음: " + method, e);
+        }
+    }
+
+    // 가상 스레드 실행기 (Java 21+), 없으면 데몬 스레드 캐시 풀
+    static ExecutorService newFanOutExecutor() {
+        if (VIRTUAL_THREAD_EXECUTOR == null) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "product-detail-fanout");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        try {
+            return (ExecutorService) VIRTUAL_THREAD_EXECUTOR.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // 팩토리는 checked 예외를 던지지 않음
+            throw new IllegalStateException("가상 스레드 실행기 생성 실패", e);
+        }
+    }
 
+    private static MethodHandle findVirtualThreadExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
 }
 
 @Data
@@ -118,22 +243,58 @@ class ProductDetailResponse {
     private ReviewSummary reviews;
     private List<Product> recommends;
     private PriceInfo price;
+    // 실패로 마지막 성공 값을 대신 쓴 출처 (inventory / review / recommend / price)
+    private Set<String> staleSources;
 }
 
+// 배치 메서드 기본 구현은 단건 호출을 순서대로 반복 -> 배치 엔드포인트가 있는 구현만 재정의
+// (getDetails는 재정의하지 않은 클라이언트의 배치 메서드를 쓰지 않고 단건 호출을 동시에 보냄)
 interface InventoryClient {
     InventoryInfo getInventory(Long productId);  // 500ms
+
+    default Map<Long, InventoryInfo> getInventories(List<Long> productIds) {
+        Map<Long, InventoryInfo> result = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            result.put(productId, getInventory(productId));
+        }
+        return result;
+    }
 }
 
 interface ReviewClient {
     ReviewSummary getReviews(Long productId);    // 600ms
+
+    default Map<Long, ReviewSummary> getReviewsBatch(List<Long> productIds) {
+        Map<Long, ReviewSummary> result = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            result.put(productId, getReviews(productId));
+        }
+        return result;
+    }
 }
 
 interface RecommendClient {
     List<Product> getRecommends(Long productId); // 400ms
+
+    default Map<Long, List<Product>> getRecommendsBatch(List<Long> productIds) {
+        Map<Long, List<Product>> result = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            result.put(productId, getRecommends(productId));
+        }
+        return result;
+    }
 }
 
 interface PriceClient {
     PriceInfo getPrice(Long productId);          // 500ms
+
+    default Map<Long, PriceInfo> getPrices(List<Long> productIds) {
+        Map<Long, PriceInfo> result = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            result.put(productId, getPrice(productId));
+        }
+        return result;
+    }
 }
 
 class StubInventoryClient implements InventoryClient {
@@ -143,6 +304,18 @@ class StubInventoryClient implements InventoryClient {
                 .productId(productId).stockCount(10).available(true).build();
     }
 
+    // 배치: 왕복 1회 (상품 수에 따라 약간 증가)
+    @Override
+    public Map<Long, InventoryInfo> getInventories(List<Long> productIds) {
+        sleep(500 + productIds.size() / 10);
+        Map<Long, InventoryInfo> result = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            result.put(productId, InventoryInfo.builder()
+                    .productId(productId).stockCount(10).available(true).build());
+        }
+        return result;
+    }
+
     // 공통 유틸
     private static void sleep(long ms) {
         try { Thread.sleep(ms); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
@@ -156,6 +329,17 @@ class StubReviewClient implements ReviewClient {
                 .productId(productId).averageScore(4.5).reviewCount(120).build();
     }
 
+    @Override
+    public Map<Long, ReviewSummary> getReviewsBatch(List<Long> productIds) {
+        sleep(600 + productIds.size() / 10);
+        Map<Long, ReviewSummary> result = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            result.put(productId, ReviewSummary.builder()
+                    .productId(productId).averageScore(4.5).reviewCount(120).build());
+        }
+        return result;
+    }
+
     // 공통 유틸
     private static void sleep(long ms) {
         try { Thread.sleep(ms); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
@@ -165,6 +349,20 @@ class StubReviewClient implements ReviewClient {
 class StubRecommendClient implements RecommendClient {
     public List<Product> getRecommends(Long productId) {
         sleep(400);
+        return recommends();
+    }
+
+    @Override
+    public Map<Long, List<Product>> getRecommendsBatch(List<Long> productIds) {
+        sleep(400 + productIds.size() / 10);
+        Map<Long, List<Product>> result = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            result.put(productId, recommends());
+        }
+        return result;
+    }
+
+    private static List<Product> recommends() {
         return List.of(
                 Product.builder().productId(2L).name("연관상품A").price(15000).build(),
                 Product.builder().productId(3L).name("연관상품B").price(23000).build()
@@ -180,6 +378,20 @@ class StubRecommendClient implements RecommendClient {
 class StubPriceClient implements PriceClient {
     public PriceInfo getPrice(Long productId) {
         sleep(500);
+        return price(productId);
+    }
+
+    @Override
+    public Map<Long, PriceInfo> getPrices(List<Long> productIds) {
+        sleep(500 + productIds.size() / 10);
+        Map<Long, PriceInfo> result = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            result.put(productId, price(productId));
+        }
+        return result;
+    }
+
+    private static PriceInfo price(Long productId) {
         return PriceInfo.builder()
                 .productId(productId).originalPrice(30000)
                 .discountPrice(24000).discountRate(20).build();
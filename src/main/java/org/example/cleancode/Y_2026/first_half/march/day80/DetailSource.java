@@ -0,0 +1,249 @@
+package org.example.cleancode.Y_2026.first_half.march.day80;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 상품 상세의 데이터 출처 하나 (재고 / 리뷰 / 추천 / 가격)
+ *
+ * - 상품 ID별로 진행 중인 호출을 합침 (RequestCoalescer)
+ * - 여러 상품은 배치 호출 한 번으로 (배치 엔드포인트가 없으면 상품별 단건 호출을 동시에)
+ * - 마지막 성공 값(last-known-good)을 상품별로 보관
+ *   - 실패 / 마감 초과 시 maxStaleness 이내의 마지막 성공 값을 stale 표시와 함께 반환 (없으면 기본값)
+ *   - 자주 안 바뀌는 출처(리뷰, 추천)는 ttl 동안 캐시로 바로 응답, ttl 절반이 지나면 백그라운드 갱신
+ */
+@Slf4j
+class DetailSource<V> {
+
+    private static final int PURGE_INTERVAL = 1024;
+
+    private final String name;
+    private final Function<Long, V> loader;
+    // null이면 배치 엔드포인트 없음
+    private final Function<List<Long>, Map<Long, V>> batchLoader;
+    private final Function<Long, V> fallback;
+    private final RequestCoalescer<Long, V> coalescer;
+    private final ExecutorService executor;
+
+    private final CachePolicy policy;
+    private final Map<Long, Cached<V>> lastKnownGood = new ConcurrentHashMap<>();
+    // 백그라운드 갱신 대기 시간 (요청 마감과 같은 값)
+    private final long refreshTimeoutNanos;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+
+    DetailSource(String name, Function<Long, V> loader, Function<List<Long>, Map<Long, V>> batchLoader,
+                 Function<Long, V> fallback, ExecutorService executor, CachePolicy policy, Duration refreshTimeout) {
+        this.name = name;
+        this.loader = loader;
+        this.batchLoader = batchLoader;
+        this.fallback = fallback;
+        this.executor = executor;
+        this.coalescer = new RequestCoalescer<>(executor);
+        this.policy = policy;
+        this.refreshTimeoutNanos = refreshTimeout.toNanos();
+    }
+
+    Pending<V> start(Long productId) {
+        V cached = freshValue(productId);
+        if (cached != null) {
+            return new Pending<>(cached, null);
+        }
+        return new Pending<>(null, coalescer.join(productId, () -> load(productId)));
+    }
+
+    Map<Long, Pending<V>> startAll(List<Long> productIds) {
+        Map<Long, Pending<V>> pending = new LinkedHashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long productId : productIds) {
+            if (pending.containsKey(productId)) {
+                continue;
+            }
+            V cached = freshValue(productId);
+            if (cached != null) {
+                pending.put(productId, new Pending<>(cached, null));
+            } else {
+                pending.put(productId, null);   // 순서 유지용 자리
+                misses.add(productId);
+            }
+        }
+        if (misses.isEmpty()) {
+            return pending;
+        }
+        if (batchLoader == null) {
+            // 단건 호출을 순서대로 반복하면 상품 수 x 지연이 되므로 상품별로 동시에
+            for (Long productId : misses) {
+                pending.put(productId, new Pending<>(null, coalescer.join(productId, () -> load(productId))));
+            }
+        } else {
+            coalescer.joinAll(misses, this::loadBatch)
+                    .forEach((productId, call) -> pending.put(productId, new Pending<>(null, call)));
+        }
+        return pending;
+    }
+
+    // 마감 시각까지 남은 시간만 대기, 실패/마감 초과 시 마지막 성공 값(stale) 또는 기본값
+    V await(Pending<V> pending, Long productId, long deadlineNanos, Set<String> staleSources) {
+        if (pending.call == null) {
+            return pending.cached;
+        }
+        try {
+            return pending.call.await(deadlineNanos);
+        } catch (TimeoutException e) {
+            log.warn("{} 조회 실패: 요청 마감 시간 초과", name);
+        } catch (ExecutionException e) {
+            log.warn("{} 조회 실패: {}", name, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("{} 조회 중단", name);
+        }
+
+        Cached<V> cached = lastKnownGood.get(productId);
+        if (cached != null && cached.age(System.nanoTime()) <= policy.maxStalenessNanos) {
+            staleServed.increment();
+            staleSources.add(name);
+            return cached.value;
+        }
+        return fallback.apply(productId);
+    }
+
+    long getUpstreamCallCount() {
+        return coalescer.getStartedCount();
+    }
+
+    long getJoinedCount() {
+        return coalescer.getJoinedCount();
+    }
+
+    long getCacheHitCount() {
+        return cacheHits.sum();
+    }
+
+    long getStaleServedCount() {
+        return staleServed.sum();
+    }
+
+    // ttl 이내 값이면 바로 사용 (ttl 절반이 지났으면 백그라운드 갱신 시작)
+    private V freshValue(Long productId) {
+        if (policy.ttlNanos == 0) {
+            return null;
+        }
+        Cached<V> cached = lastKnownGood.get(productId);
+        if (cached == null) {
+            return null;
+        }
+        long age = cached.age(System.nanoTime());
+        if (age >= policy.ttlNanos) {
+            return null;
+        }
+        if (age >= policy.ttlNanos / 2 && cached.refreshing.compareAndSet(false, true)) {
+            refreshInBackground(productId, cached);
+        }
+        cacheHits.increment();
+        return cached.value;
+    }
+
+    // 진행 중인 요청 호출이 있으면 합류, 마감까지 못 받으면 포기 (다음 조회 때 다시 시도)
+    private void refreshInBackground(Long productId, Cached<V> cached) {
+        RequestCoalescer.Call<V> call = coalescer.join(productId, () -> load(productId));
+        executor.execute(() -> {
+            try {
+                call.await(System.nanoTime() + refreshTimeoutNanos);
+            } catch (TimeoutException | ExecutionException e) {
+                log.warn("{} 백그라운드 갱신 실패: {}", name, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                cached.refreshing.set(false);
+            }
+        });
+    }
+
+    private V load(Long productId) {
+        V value = loader.apply(productId);
+        remember(productId, value);
+        return value;
+    }
+
+    private Map<Long, V> loadBatch(List<Long> productIds) {
+        Map<Long, V> values = batchLoader.apply(productIds);
+        values.forEach(this::remember);
+        return values;
+    }
+
+    private void remember(Long productId, V value) {
+        if (value == null) {
+            return;
+        }
+        lastKnownGood.put(productId, new Cached<>(value, System.nanoTime()));
+        writes.increment();
+        if (writes.sum() % PURGE_INTERVAL == 0) {
+            long now = System.nanoTime();
+            lastKnownGood.values().removeIf(cached -> cached.age(now) > policy.maxStalenessNanos);
+        }
+    }
+
+    // 캐시 값 또는 진행 중인 호출
+    static final class Pending<V> {
+        private final V cached;
+        private final RequestCoalescer.Call<V> call;
+
+        private Pending(V cached, RequestCoalescer.Call<V> call) {
+            this.cached = cached;
+            this.call = call;
+        }
+    }
+
+    private static final class Cached<V> {
+        private final V value;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Cached(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+
+        private long age(long now) {
+            return now - loadedAt;
+        }
+    }
+}
+
+// 출처별 캐시 정책
+final class CachePolicy {
+    // ttl = 0: 캐시로 바로 응답하지 않음 (실패 시 대체용으로만 보관)
+    final long ttlNanos;
+    // 실패 시 대체로 쓸 수 있는 마지막 성공 값의 최대 나이
+    final long maxStalenessNanos;
+
+    private CachePolicy(Duration ttl, Duration maxStaleness) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxStalenessNanos = maxStaleness.toNanos();
+    }
+
+    // 자주 바뀌는 값 (재고, 가격): 항상 upstream 호출, 실패 시에만 마지막 성공 값
+    static CachePolicy fallbackOnly(Duration maxStaleness) {
+        return new CachePolicy(Duration.ZERO, maxStaleness);
+    }
+
+    // 드물게 바뀌는 값 (리뷰, 추천): ttl 동안 캐시 응답 + 백그라운드 갱신
+    static CachePolicy refreshAhead(Duration ttl, Duration maxStaleness) {
+        return new CachePolicy(ttl, maxStaleness);
+    }
+}
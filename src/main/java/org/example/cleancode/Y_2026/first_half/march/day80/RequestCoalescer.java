@@ -0,0 +1,196 @@
+package org.example.cleancode.Y_2026.first_half.march.day80;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 진행 중인 호출 합치기 (키별로 upstream 호출 하나를 여러 요청이 공유)
+ *
+ * - 같은 키로 진행 중인 호출이 있으면 새로 호출하지 않고 그 결과를 함께 기다림
+ * - 배치 호출: 이미 진행 중인 키는 합류, 나머지 키만 묶어 한 번에 호출 (배치에 포함된 키도 단건 요청이 합류 가능)
+ * - 기다리던 요청이 모두 마감 초과로 떠나면 upstream 호출 취소 (배치는 배치 안의 모든 키가 버려졌을 때)
+ */
+class RequestCoalescer<K, V> {
+
+    private final Map<K, Call<V>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+
+    RequestCoalescer(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    // 단건: 진행 중인 호출에 합류하거나 새로 시작
+    Call<V> join(K key, Callable<V> loader) {
+        while (true) {
+            Call<V> existing = inFlight.get(key);
+            if (existing != null) {
+                if (existing.tryJoin()) {
+                    joined.increment();
+                    return existing;
+                }
+                inFlight.remove(key, existing);   // 모두 떠나 취소되는 중 -> 새로 시작
+                continue;
+            }
+
+            Call<V> created = new Call<>();
+            if (inFlight.putIfAbsent(key, created) != null) {
+                continue;
+            }
+            started.increment();
+            created.onAbandoned = () -> created.cancel();
+            created.task = executor.submit(() -> {
+                try {
+                    if (!created.result.isDone()) {
+                        created.result.complete(loader.call());
+                    }
+                } catch (Throwable e) {
+                    created.result.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            });
+            return created;
+        }
+    }
+
+    // 배치: 결과는 keys 순서대로, 진행 중이 아닌 키만 batchLoader 한 번으로 호출
+    Map<K, Call<V>> joinAll(List<K> keys, Function<List<K>, Map<K, V>> batchLoader) {
+        Map<K, Call<V>> calls = new LinkedHashMap<>();
+        Map<K, Call<V>> created = new LinkedHashMap<>();
+        for (K key : keys) {
+            if (calls.containsKey(key)) {
+                continue;
+            }
+            while (true) {
+                Call<V> existing = inFlight.get(key);
+                if (existing != null) {
+                    if (existing.tryJoin()) {
+                        joined.increment();
+                        calls.put(key, existing);
+                        break;
+                    }
+                    inFlight.remove(key, existing);
+                    continue;
+                }
+                Call<V> call = new Call<>();
+                if (inFlight.putIfAbsent(key, call) == null) {
+                    calls.put(key, call);
+                    created.put(key, call);
+                    break;
+                }
+            }
+        }
+        if (created.isEmpty()) {
+            return calls;
+        }
+
+        started.increment();
+        List<K> batchKeys = new ArrayList<>(created.keySet());
+        AtomicInteger live = new AtomicInteger(created.size());
+        Future<?> task = executor.submit(() -> {
+            try {
+                Map<K, V> results = batchLoader.apply(batchKeys);
+                created.forEach((key, call) -> {
+                    V value = results.get(key);
+                    if (value != null) {
+                        call.result.complete(value);
+                    } else {
+                        call.result.completeExceptionally(new NoSuchElementException("배치 응답에 없음: " + key));
+                    }
+                });
+            } catch (Throwable e) {
+                created.values().forEach(call -> call.result.completeExceptionally(e));
+            } finally {
+                created.forEach(inFlight::remove);
+            }
+        });
+        created.values().forEach(call -> {
+            call.task = task;
+            // 배치 안의 모든 키가 버려졌을 때만 upstream 호출 취소
+            call.onAbandoned = () -> {
+                call.result.cancel(false);
+                if (live.decrementAndGet() == 0) {
+                    task.cancel(true);
+                }
+            };
+        });
+        return calls;
+    }
+
+    // 새로 시작한 upstream 호출 수 (단건 1회 / 배치 1회)
+    long getStartedCount() {
+        return started.sum();
+    }
+
+    // 진행 중인 호출에 합류한 요청 수
+    long getJoinedCount() {
+        return joined.sum();
+    }
+
+    // 진행 중인 호출 하나 (기다리는 요청 수를 세어 모두 떠나면 취소)
+    static final class Call<V> {
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        // 0이 되면 더 이상 합류할 수 없음
+        private final AtomicInteger waiters = new AtomicInteger(1);
+        private volatile Future<?> task;
+        private volatile Runnable onAbandoned;
+
+        private boolean tryJoin() {
+            int current;
+            do {
+                current = waiters.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!waiters.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        // 마감 시각까지 대기, 넘으면 이 요청은 떠남 (마지막 요청이면 upstream 취소)
+        V await(long deadlineNanos) throws ExecutionException, TimeoutException, InterruptedException {
+            try {
+                return result.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException | InterruptedException e) {
+                leave();
+                throw e;
+            } catch (CancellationException e) {
+                throw new ExecutionException("취소된 호출", e);
+            }
+        }
+
+        private void leave() {
+            if (waiters.decrementAndGet() == 0 && !result.isDone()) {
+                Runnable abandoned = onAbandoned;
+                if (abandoned != null) {
+                    abandoned.run();
+                }
+            }
+        }
+
+        private void cancel() {
+            result.cancel(false);
+            Future<?> running = task;
+            if (running != null) {
+                running.cancel(true);
+            }
+        }
+    }
+}
@@ -6,8 +6,13 @@ import io.github.resilience4j.core.functions.CheckedSupplier;
 import io.github.resilience4j.retry.Retry;
 import io.github.resilience4j.retry.RetryConfig;
 import io.vavr.control.Try;
+import org.example.cleancode.Y_2026.first_half.march.day102.IdempotencyStore;
+import org.example.cleancode.Y_2026.first_half.march.day98.KeyedCircuitBreakerRegistry;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Day 92 — Resilience4j: Circuit Breaker & Retry
@@ -16,16 +21,27 @@ import java.time.Duration;
  * | 2 | 계속 실패 중인 API에 반복 호출 | `CircuitBreaker` — OPEN 상태 전환으로 호출 차단 |
  * | 3 | 복구 감지 불가 | `HALF_OPEN` 상태로 자동 탐색 |
  * | 4 | 상태 변화 모니터링 없음 | `EventConsumer`로 상태 전환 로깅 |
+ * | 5 | 타임아웃 후 재시도/중복 제출 시 이중 결제 | `IdempotencyStore` — 주문 ID + 금액마다 멱등 토큰 하나, 성공 결과 재사용 |
+ * | 6 | PG 경로 하나의 장애로 전체 차단 | `KeyedCircuitBreakerRegistry` — PG 경로별 서킷, 오래 안 쓰인 서킷 정리 |
  */
-public class Day92PaymentGateway {
+public class Day92PaymentGateway implements AutoCloseable {
+
+    // 경로 구분 없는 호출이 쓰는 서킷 키
+    private static final String DEFAULT_ROUTE = "default";
 
     private final ExternalPaymentApi api;
     private final Retry retry;
-    private final CircuitBreaker circuitBreaker;
+    private final KeyedCircuitBreakerRegistry circuitBreakers;
+    private final IdempotencyStore<PaymentResult> idempotency;
 
 
     public Day92PaymentGateway(ExternalPaymentApi api) {
+        this(api, IdempotencyStore.inMemory(Duration.ofHours(24)));
+    }
+
+    public Day92PaymentGateway(ExternalPaymentApi api, IdempotencyStore<PaymentResult> idempotency) {
         this.api = api;
+        this.idempotency = idempotency;
         this.retry = Retry.of("payment-retry", RetryConfig.custom()
                     .maxAttempts(3)
                     .waitDuration(Duration.ofMillis(500))
@@ -40,35 +56,63 @@ public class Day92PaymentGateway {
                 .permittedNumberOfCallsInHalfOpenState(2)
                 .build();
 
-        this.circuitBreaker = CircuitBreaker.of("payment-cb", cbConfig);
-
-        // EventConsumer
-        this.circuitBreaker.getEventPublisher()
-                .onStateTransition(event -> System.out.printf("[CB 상태 변화] %s → %s%n",
-                        event.getStateTransition().getFromState(),
-                        event.getStateTransition().getToState()))
-                .onCallNotPermitted(event ->
-                        System.out.println("[CB OPEN] 호출 차단됨"))
-                .onError(event ->  System.out.printf("[CB 실패] %s%n", event.getThrowable().getMessage()));
-
+        // PG 경로별 서킷 (설정 공유, 30분 + OPEN 대기 시간 동안 안 쓰인 서킷은 정리)
+        this.circuitBreakers = new KeyedCircuitBreakerRegistry("payment-cb", cbConfig, Duration.ofMinutes(30),
+                // EventConsumer
+                breaker -> breaker.getEventPublisher()
+                        .onStateTransition(event -> System.out.printf("[CB 상태 변화] %s %s → %s%n",
+                                breaker.getName(),
+                                event.getStateTransition().getFromState(),
+                                event.getStateTransition().getToState()))
+                        .onCallNotPermitted(event ->
+                                System.out.println("[CB OPEN] " + breaker.getName() + " 호출 차단됨"))
+                        .onError(event -> System.out.printf("[CB 실패] %s%n", event.getThrowable().getMessage())));
     }
 
     // Retry 재시도 적용
     //  CircuitBreaker를 적용하여 연속 실패 시 회로를 열어(OPEN) 호출 자체 차단
     // CLOSED → 실패율 임계치 초과 → OPEN(호출 차단) → 대기 후 → HALF_OPEN(탐색) → 성공 시 CLOSED 복귀
+    // 주문 ID 없는 호출: 중복 제거할 수 없으므로 멱등 저장소를 거치지 않음 (남겨도 다시 쓰일 일 없는 항목)
     public PaymentResult charge(String userId, int amount) {
+        return charge(DEFAULT_ROUTE, null, userId, amount);
+    }
+
+    // 같은 주문 ID + 금액이면 이미 성공한 결과를 그대로 반환 (PG 재호출 없음)
+    // 동시에 들어온 중복 요청은 진행 중인 호출 하나의 결과를 함께 기다림
+    public PaymentResult charge(String orderId, String userId, int amount) {
+        return charge(DEFAULT_ROUTE, orderId, userId, amount);
+    }
+
+    // PG 경로별 서킷으로 보호 (한 경로의 서킷이 OPEN이어도 다른 경로는 정상 처리)
+    // orderId가 null이면 이 호출의 재시도끼리만 같은 멱등 키 사용
+    public PaymentResult charge(String pgRoute, String orderId, String userId, int amount) {
+        CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(pgRoute);
+        return Try.of(() -> orderId == null
+                        ? chargeOnce(circuitBreaker, UUID.randomUUID().toString(), userId, amount)
+                        : idempotency.execute(orderId + ":" + amount,
+                                idempotencyKey -> chargeOnce(circuitBreaker, idempotencyKey, userId, amount)))
+                .getOrElse(PaymentResult.failure("차단됨: " + circuitBreaker.getState()));
+    }
+
+    // 재시도가 모두 실패하면 예외 -> 실패 결과는 저장되지 않아 다음 요청 때 같은 멱등 키로 다시 시도
+    private PaymentResult chargeOnce(CircuitBreaker circuitBreaker, String idempotencyKey, String userId, int amount) {
         // 1단계 CircuitBreaker로 먼저 감싸기
         CheckedSupplier<PaymentResult> cbDecorated =
-                CircuitBreaker.decorateCheckedSupplier(circuitBreaker, () -> api.requestPayment(userId, amount));
+                CircuitBreaker.decorateCheckedSupplier(circuitBreaker,
+                        () -> api.requestPayment(idempotencyKey, userId, amount));
 
         // 2단계 Retry로 한번 더 감싸기
         CheckedSupplier<PaymentResult> retryDecorated =
                 Retry.decorateCheckedSupplier(retry, cbDecorated);
 
         // 3단계 실행
-        return Try.of(retryDecorated::get)
-                .getOrElse(PaymentResult.failure("차단됨: " + circuitBreaker.getState()));
+        return Try.of(retryDecorated::get).get();
+    }
 
+    // 경로별 서킷 레지스트리의 정리 작업 해제
+    @Override
+    public void close() {
+        circuitBreakers.close();
     }
 
     public static void main(String[] args) {
@@ -77,20 +121,36 @@ public class Day92PaymentGateway {
 
         // 외부 API가 불안정한 상황 시뮬레이션
         for (int i = 1; i <= 8; i++) {
-            PaymentResult result = gateway.charge("user-" + i, 10000 * i);
+            PaymentResult result = gateway.charge("order-" + i, "user-" + i, 10000 * i);
             System.out.printf("시도 %d: %s%n", i, result.getMessage());
         }
+
+        // 같은 주문 재제출 -> PG 호출 없이 저장된 결과
+        int callsBefore = api.getCallCount();
+        PaymentResult again = gateway.charge("order-8", "user-8", 80000);
+        System.out.printf("재제출: %s (PG 호출 %d회 추가)%n", again.getMessage(), api.getCallCount() - callsBefore);
+        gateway.close();
     }
 }
 
 class ExternalPaymentApi {
     private int callCount = 0;
+    // PG사 쪽 멱등 처리 (같은 멱등 키면 같은 결과)
+    private final Map<String, PaymentResult> processed = new ConcurrentHashMap<>();
 
-    public PaymentResult requestPayment(String userId, int amount) {
+    public synchronized PaymentResult requestPayment(String idempotencyKey, String userId, int amount) {
         callCount++;
+        PaymentResult previous = processed.get(idempotencyKey);
+        if (previous != null) return previous;
         // 처음 5번은 실패, 이후 성공
         if (callCount <= 5) throw new RuntimeException("Payment API timeout");
-        return PaymentResult.success("결제 완료: " + amount + "원");
+        PaymentResult result = PaymentResult.success("결제 완료: " + amount + "원");
+        processed.put(idempotencyKey, result);
+        return result;
+    }
+
+    public synchronized int getCallCount() {
+        return callCount;
     }
 }
 
@@ -3,7 +3,8 @@ package org.example.cleancode.Y_2026.first_half.march.day98;
 import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
-import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vavr.control.Try;
 import lombok.Value;
 
@@ -18,16 +19,37 @@ import java.util.function.Supplier;
  * 3. OPEN 상태 판단 로직 직접 구현  -> cb.getState() 로 CLOSED / OPEN / HALF_OPEN 확인
  * 4. fallback 로직 없음 -> CallNotPermittedException 에서 fallback 반환
  * 5. PaymentResult 생성자 노출 -> Lombok @Value 로 불변 객체화
+ * 6. 서킷 하나를 모든 가맹점이 공유 -> 가맹점 하나의 장애로 전체 결제 차단
+ *    -> KeyedCircuitBreakerRegistry: 가맹점별 서킷을 처음 쓸 때 생성, 오래 안 쓰인 서킷은 정리
  */
-public class Day98PaymentGatewayService {
+public class Day98PaymentGatewayService implements AutoCloseable {
+
+    // 가맹점 구분 없는 호출이 쓰는 서킷 키
+    static final String DEFAULT_MERCHANT = "default";
 
     private final ExternalPaymentApi paymentApi;
-    private final CircuitBreaker circuitBreaker;
+    private final KeyedCircuitBreakerRegistry circuitBreakers;
+    // 직접 만든 레지스트리만 close()에서 닫음 (주입받은 레지스트리는 호출자 소유)
+    private final boolean ownsCircuitBreakers;
 
     public Day98PaymentGatewayService(ExternalPaymentApi paymentApi) {
+        this(paymentApi, new KeyedCircuitBreakerRegistry("payment", defaultConfig(), Duration.ofMinutes(10)), true);
+    }
+
+    public Day98PaymentGatewayService(ExternalPaymentApi paymentApi, KeyedCircuitBreakerRegistry circuitBreakers) {
+        this(paymentApi, circuitBreakers, false);
+    }
+
+    private Day98PaymentGatewayService(ExternalPaymentApi paymentApi, KeyedCircuitBreakerRegistry circuitBreakers,
+                                       boolean ownsCircuitBreakers) {
         this.paymentApi = paymentApi;
+        this.circuitBreakers = circuitBreakers;
+        this.ownsCircuitBreakers = ownsCircuitBreakers;
+    }
 
-        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+    // 모든 가맹점 서킷이 공유하는 설정
+    static CircuitBreakerConfig defaultConfig() {
+        return CircuitBreakerConfig.custom()
                 .failureRateThreshold(50)                        // 실패율 50% 초과 시 OPEN
                 .waitDurationInOpenState(Duration.ofSeconds(10)) // 10초 후 HALF_OPEN 시도
                 .slidingWindowSize(4)                            // 최근 4건 기준으로 실패율 계산
@@ -35,16 +57,18 @@ public class Day98PaymentGatewayService {
                 .recordExceptions(RuntimeException.class)        // 이 예외만 실패로 카운트
                 .ignoreExceptions(IllegalArgumentException.class)// 이 예외는 무시
                 .build();
-        this.circuitBreaker = CircuitBreakerRegistry.of(config)
-                .circuitBreaker("payment");
-
     }
 
     public PaymentResult processPayment(String userId, long amount) {
+        return processPayment(DEFAULT_MERCHANT, userId, amount);
+    }
+
+    // 가맹점별 서킷으로 보호 (한 가맹점의 서킷이 OPEN이어도 다른 가맹점은 정상 처리)
+    public PaymentResult processPayment(String merchantId, String userId, long amount) {
 
         Supplier<PaymentResult> decorated = CircuitBreaker.decorateSupplier(
-                circuitBreaker,
-                () -> Try.of(() -> paymentApi.charge(userId, amount))
+                circuitBreakers.circuitBreaker(merchantId),
+                () -> Try.of(() -> paymentApi.charge(merchantId, userId, amount))
                         .map(PaymentResult::success)
                         .getOrElseThrow(e -> new RuntimeException(e))
         );
@@ -56,7 +80,19 @@ public class Day98PaymentGatewayService {
     }
 
     public String getCircuitState() {
-        return circuitBreaker.getState().name();
+        return getCircuitState(DEFAULT_MERCHANT);
+    }
+
+    public String getCircuitState(String merchantId) {
+        return circuitBreakers.circuitBreaker(merchantId).getState().name();
+    }
+
+    // 기본 생성자로 만든 서킷 레지스트리의 정리 작업 해제
+    @Override
+    public void close() {
+        if (ownsCircuitBreakers) {
+            circuitBreakers.close();
+        }
     }
 
     public static void main(String[] args) {
@@ -70,6 +106,39 @@ public class Day98PaymentGatewayService {
             PaymentResult result = service.processPayment("user-1", 10000L);
             System.out.println(i + "번째 | 상태: " + service.getCircuitState() + " | " + result);
         }
+        service.close();
+
+        // 가맹점별 서킷: M-BAD만 장애 -> M-BAD 서킷만 OPEN, 나머지 가맹점은 계속 결제
+        ExternalPaymentApi routedApi = new ExternalPaymentApi() {
+            @Override
+            public String charge(String userId, long amount) {
+                return "TX-" + userId + "-" + amount;
+            }
+
+            @Override
+            public String charge(String merchantId, String userId, long amount) {
+                if (merchantId.equals("M-BAD")) {
+                    throw new RuntimeException("가맹점 PG 경로 다운");
+                }
+                return charge(userId, amount);
+            }
+        };
+        KeyedCircuitBreakerRegistry registry =
+                new KeyedCircuitBreakerRegistry("payment", defaultConfig(), Duration.ofMinutes(10));
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        registry.bindTo(meterRegistry);
+        Day98PaymentGatewayService routed = new Day98PaymentGatewayService(routedApi, registry);
+
+        for (int i = 1; i <= 6; i++) {
+            for (String merchant : new String[]{"M-BAD", "M-1", "M-2"}) {
+                PaymentResult result = routed.processPayment(merchant, "user-" + i, 10000L);
+                System.out.println(merchant + " " + i + "번째 | 상태: " + routed.getCircuitState(merchant) + " | " + result);
+            }
+        }
+        System.out.println("서킷 상태별 수: " + registry.countByState());
+        meterRegistry.find("payment.circuitbreaker.keys").gauges().forEach(gauge ->
+                System.out.println(gauge.getId().getTag("state") + " = " + gauge.value()));
+        registry.close();
     }
 }
 
@@ -90,4 +159,9 @@ class PaymentResult {
 
 interface ExternalPaymentApi {
     String charge(String userId, long amount) throws Exception;
+
+    // 가맹점마다 경로가 다른 구현만 재정의
+    default String charge(String merchantId, String userId, long amount) throws Exception {
+        return charge(userId, amount);
+    }
 }
@@ -0,0 +1,226 @@
+package org.example.cleancode.Y_2026.first_half.march.day98;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 키(가맹점, PG 경로 등)별 Circuit Breaker 레지스트리
+ *
+ * - 서킷 하나를 전체가 공유하면 가맹점 하나의 장애로 모든 결제가 차단됨 -> 키마다 독립된 서킷
+ * - 처음 쓰는 키에서 생성 (설정은 템플릿 하나를 모든 서킷이 공유)
+ * - 조회: ConcurrentHashMap.get 한 번 (이미 있는 키는 객체 생성 없음)
+ *   마지막 사용 시각은 거친 시계(정리 주기마다 갱신)로 기록 -> 같은 주기 안의 반복 조회는 쓰기도 없음
+ * - 정리: idleTimeout + OPEN 대기 시간 동안 쓰이지 않은 서킷은 상태와 관계없이 제거
+ *   (그만큼 지났으면 OPEN 서킷도 이미 HALF_OPEN 탐색 시점 -> 새 CLOSED 서킷으로 다시 시작해도 차이 없음, OPEN 키 누수 방지)
+ * - 정리 작업은 공유 스케줄러에 레지스트리를 약한 참조로 등록 -> close() 없이 버려진 레지스트리도 GC 후 작업이 스스로 취소됨
+ * - Micrometer: 상태별 서킷 수(상태 전환 이벤트로 갱신하는 카운터, 조회 시 순회 없음), 전체 서킷 수, 제거 수
+ *
+ * 정리 직전에 조회된 서킷은 제거된 뒤에도 그 호출까지는 쓰일 수 있음 (다음 조회부터 새 서킷, 기록 일부 유실 허용)
+ */
+public class KeyedCircuitBreakerRegistry implements AutoCloseable {
+
+    private static final ScheduledThreadPoolExecutor EVICTOR = newEvictor();
+
+    private final String name;
+    private final CircuitBreakerConfig template;
+    // 이 시간 동안 쓰이지 않으면 상태와 관계없이 제거
+    private final long evictAfterMillis;
+    private final Map<String, Holder> breakers = new ConcurrentHashMap<>();
+    private final Consumer<CircuitBreaker> customizer;
+    private final ScheduledFuture<?> eviction;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    // 상태(ordinal)별 서킷 수
+    private final AtomicIntegerArray stateCounts = new AtomicIntegerArray(CircuitBreaker.State.values().length);
+    // 거친 시계 (ms), 정리 주기마다 갱신
+    private volatile long now = System.currentTimeMillis();
+
+    public KeyedCircuitBreakerRegistry(String name, CircuitBreakerConfig template, Duration idleTimeout) {
+        this(name, template, idleTimeout, breaker -> { });
+    }
+
+    // customizer: 새 서킷마다 한 번 호출 (이벤트 로깅 등)
+    public KeyedCircuitBreakerRegistry(String name, CircuitBreakerConfig template, Duration idleTimeout,
+                                       Consumer<CircuitBreaker> customizer) {
+        this.name = name;
+        this.template = template;
+        // 대기 시간이 IntervalFunction(지수 백오프 등)이면 첫 대기 시간 기준
+        this.evictAfterMillis = idleTimeout.toMillis() + template.getWaitIntervalFunctionInOpenState().apply(1);
+        this.customizer = customizer;
+
+        long period = Math.max(100, Math.min(idleTimeout.toMillis() / 4, 10_000));
+        this.eviction = schedule(this, period);
+    }
+
+    public CircuitBreaker circuitBreaker(String key) {
+        Holder holder = breakers.get(key);
+        if (holder == null) {
+            holder = breakers.computeIfAbsent(key, this::create);
+        }
+        long current = now;
+        if (holder.lastAccess != current) {
+            holder.lastAccess = current;
+        }
+        return holder.breaker;
+    }
+
+    // 상태별 서킷 수 (모니터링용)
+    public Map<CircuitBreaker.State, Integer> countByState() {
+        Map<CircuitBreaker.State, Integer> counts = new EnumMap<>(CircuitBreaker.State.class);
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            counts.put(state, stateCounts.get(state.ordinal()));
+        }
+        return counts;
+    }
+
+    public int size() {
+        return breakers.size();
+    }
+
+    public long getCreatedCount() {
+        return created.sum();
+    }
+
+    public long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    // {name}.circuitbreaker.keys{state=...}, {name}.circuitbreaker.size, {name}.circuitbreaker.evicted
+    public void bindTo(MeterRegistry meterRegistry) {
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder(name + ".circuitbreaker.keys", stateCounts, counts -> counts.get(state.ordinal()))
+                    .tag("state", state.name().toLowerCase())
+                    .description("상태별 서킷 수")
+                    .register(meterRegistry);
+        }
+        Gauge.builder(name + ".circuitbreaker.size", this, KeyedCircuitBreakerRegistry::size)
+                .description("현재 서킷 수")
+                .register(meterRegistry);
+        FunctionCounter.builder(name + ".circuitbreaker.evicted", evicted, LongAdder::sum)
+                .description("유휴 상태로 제거된 서킷 수")
+                .register(meterRegistry);
+    }
+
+    // idleTimeout + OPEN 대기 시간 동안 쓰이지 않은 서킷 제거, 제거한 수 반환
+    public int evictIdle() {
+        long current = System.currentTimeMillis();
+        now = current;
+        int removed = 0;
+        for (Map.Entry<String, Holder> entry : breakers.entrySet()) {
+            Holder holder = entry.getValue();
+            if (current - holder.lastAccess >= evictAfterMillis && breakers.remove(entry.getKey(), holder)) {
+                release(holder);
+                removed++;
+            }
+        }
+        evicted.add(removed);
+        return removed;
+    }
+
+    @Override
+    public void close() {
+        eviction.cancel(false);
+        for (Map.Entry<String, Holder> entry : breakers.entrySet()) {
+            if (breakers.remove(entry.getKey(), entry.getValue())) {
+                release(entry.getValue());
+            }
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newEvictor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "circuit-breaker-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // close()로 취소된 작업을 바로 큐에서 제거 (레지스트리를 자주 만들고 닫아도 큐가 쌓이지 않음)
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    // 작업은 레지스트리를 약한 참조로만 잡음 -> 레지스트리가 수거되면 다음 주기에 스스로 취소
+    private static ScheduledFuture<?> schedule(KeyedCircuitBreakerRegistry registry, long period) {
+        WeakReference<KeyedCircuitBreakerRegistry> reference = new WeakReference<>(registry);
+        AtomicReference<ScheduledFuture<?>> self = new AtomicReference<>();
+        ScheduledFuture<?> future = EVICTOR.scheduleAtFixedRate(() -> {
+            KeyedCircuitBreakerRegistry target = reference.get();
+            if (target != null) {
+                target.tick();
+            } else if (self.get() != null) {
+                self.get().cancel(false);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+        self.set(future);
+        return future;
+    }
+
+    private void tick() {
+        try {
+            evictIdle();
+        } catch (RuntimeException e) {
+            // 예외가 나가면 주기 작업이 멈춤 -> 다음 주기에 다시 시도
+            System.out.println("⚠️ 서킷 정리 실패: " + e.getMessage());
+        }
+    }
+
+    private Holder create(String key) {
+        CircuitBreaker breaker = CircuitBreaker.of(name + ":" + key, template);
+        Holder holder = new Holder(breaker, now);
+        stateCounts.incrementAndGet(holder.countedState.ordinal());
+        breaker.getEventPublisher().onStateTransition(event -> transitioned(holder));
+        customizer.accept(breaker);
+        created.increment();
+        return holder;
+    }
+
+    // 이벤트의 to 상태 대신 현재 상태를 다시 읽음 -> 여러 스레드의 전환 이벤트 순서가 뒤바뀌어도 카운트가 어긋나지 않음
+    private void transitioned(Holder holder) {
+        synchronized (holder) {
+            if (holder.released) {
+                return;   // 제거된 뒤에 남은 호출이 일으킨 전환
+            }
+            CircuitBreaker.State state = holder.breaker.getState();
+            stateCounts.decrementAndGet(holder.countedState.ordinal());
+            stateCounts.incrementAndGet(state.ordinal());
+            holder.countedState = state;
+        }
+    }
+
+    private void release(Holder holder) {
+        synchronized (holder) {
+            holder.released = true;
+            stateCounts.decrementAndGet(holder.countedState.ordinal());
+        }
+    }
+
+    private static final class Holder {
+        private final CircuitBreaker breaker;
+        private volatile long lastAccess;
+        // 상태별 카운터에 반영된 상태 (holder 모니터로 보호)
+        private CircuitBreaker.State countedState;
+        private boolean released;
+
+        private Holder(CircuitBreaker breaker, long lastAccess) {
+            this.breaker = breaker;
+            this.lastAccess = lastAccess;
+            this.countedState = breaker.getState();
+        }
+    }
+}
@@ -5,8 +5,15 @@ import org.example.cleancode.Y_2026.first_half.april.day103.Day103NotificationSe
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
 import static java.util.concurrent.TimeUnit.*;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.awaitility.Awaitility.*;
 
 public class Day103NotificationServiceTest {
@@ -43,4 +50,94 @@ public class Day103NotificationServiceTest {
         defaultAwait.until(() -> svc.eventLog.stream().anyMatch(log -> log.startsWith("RETRY_SUCCESS")));
 
     }
+
+    @Test
+    void batchBySize() {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        ChannelProvider provider = (channel, recipients) -> {
+            batchSizes.add(recipients.size());
+            return CompletableFuture.completedFuture(null);
+        };
+        // linger를 길게 -> 크기 트리거로만 플러시되는지 확인
+        Day103NotificationService batching =
+                new Day103NotificationService(provider, new BatchConfig(5, 10_000, 100, 4, 3, 10));
+
+        try {
+            IntStream.range(0, 10).forEach(i -> batching.sendEmail("user" + i + "@test.com"));
+
+            defaultAwait.until(() -> batchSizes.size() == 2);
+            assertThat(batchSizes).containsExactly(5, 5);
+        } finally {
+            batching.executor.shutdown();
+        }
+    }
+
+    @Test
+    void batchByLinger() {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        ChannelProvider provider = (channel, recipients) -> {
+            batchSizes.add(recipients.size());
+            return CompletableFuture.completedFuture(null);
+        };
+        Day103NotificationService batching =
+                new Day103NotificationService(provider, new BatchConfig(100, 50, 100, 4, 3, 10));
+
+        try {
+            batching.sendSms("010-0000-0001");
+            batching.sendSms("010-0000-0002");
+            batching.sendSms("010-0000-0003");
+
+            defaultAwait.until(() -> batching.smsSent.get());
+            assertThat(batchSizes).containsExactly(3);
+        } finally {
+            batching.executor.shutdown();
+        }
+    }
+
+    @Test
+    void rejectWhenQueueFull() {
+        // 응답하지 않는 공급자 + 동시 배치 1개 -> 대기열이 차면 거절
+        ChannelProvider stuck = (channel, recipients) -> new CompletableFuture<>();
+        Day103NotificationService batching =
+                new Day103NotificationService(stuck, new BatchConfig(1, 10_000, 2, 1, 1, 10));
+
+        try {
+            long accepted = IntStream.range(0, 10)
+                    .filter(i -> batching.sendEmail("user" + i + "@test.com"))
+                    .count();
+
+            assertThat(accepted).isLessThanOrEqualTo(3);
+            assertThat(batching.eventLog.stream().filter(log -> log.startsWith("EMAIL_REJECTED"))).isNotEmpty();
+        } finally {
+            batching.executor.shutdown();
+        }
+    }
+
+    @Test
+    void retryFailedBatchOnTimer() {
+        AtomicInteger calls = new AtomicInteger();
+        ChannelProvider flaky = (channel, recipients) -> calls.incrementAndGet() == 1
+                ? CompletableFuture.failedFuture(new IllegalStateException("provider down"))
+                : CompletableFuture.completedFuture(null);
+        Day103NotificationService batching =
+                new Day103NotificationService(flaky, new BatchConfig(1, 50, 100, 4, 3, 10));
+
+        try {
+            batching.sendEmail("user@test.com");
+
+            defaultAwait.until(() -> batching.eventLog.stream().anyMatch(log -> log.equals("EMAIL_SENT:user@test.com")));
+            assertThat(calls.get()).isEqualTo(2);
+        } finally {
+            batching.executor.shutdown();
+        }
+    }
+
+    @Test
+    void eventRingKeepsLatest() {
+        EventRing ring = new EventRing(4);
+
+        IntStream.range(0, 6).forEach(i -> ring.add("E" + i));
+
+        assertThat(ring.stream()).containsExactly("E2", "E3", "E4", "E5");
+    }
 }
@@ -4,6 +4,9 @@ import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
@@ -70,4 +73,57 @@ public class Day107ShippingClientTest {
         assertFalse(result.success());
         assertThat(result.value()).contains("timed out");
     }
+
+    @Test
+    void shippingAsyncSuccess(WireMockRuntimeInfo wmRuntimeInfo) {
+        stubFor(post(urlEqualTo("/shipping/request"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("""
+                                {"carrier":{"name":"CJ","trackingNumber":"NESTED"},"trackingNumber":"TRK-777"}
+                                """)));
+
+        Day107ShippingClient client = new Day107ShippingClient(wmRuntimeInfo.getHttpBaseUrl());
+
+        ShippingResult result = client.requestShippingAsync("ORD-002", "서울시 \"강남구\"").join();
+
+        // 중첩 객체의 같은 이름 필드는 무시하고 최상위 값만 사용
+        assertTrue(result.success());
+        assertThat(result.value()).isEqualTo("TRK-777");
+
+        // 주소의 따옴표가 이스케이프된 올바른 JSON으로 전송
+        verify(postRequestedFor(urlEqualTo("/shipping/request"))
+                .withRequestBody(equalToJson("""
+                        {"orderId":"ORD-002","address":"서울시 \\"강남구\\""}
+                        """)));
+    }
+
+    @Test
+    void shippingBatchKeepsOrder(WireMockRuntimeInfo wmRuntimeInfo) {
+        List<ShippingRequest> orders = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            stubFor(post(urlEqualTo("/shipping/request"))
+                    .withRequestBody(matchingJsonPath("$.orderId", equalTo("ORD-" + i)))
+                    .willReturn(aResponse()
+                            .withStatus(i == 7 ? 500 : 200)
+                            .withHeader("Content-Type", "application/json")
+                            .withBody("{\"trackingNumber\":\"TRK-" + i + "\"}")));
+            orders.add(new ShippingRequest("ORD-" + i, "서울시 강남구 " + i));
+        }
+
+        Day107ShippingClient client = new Day107ShippingClient(wmRuntimeInfo.getHttpBaseUrl());
+
+        List<ShippingResult> results = client.requestShippingBatch(orders);
+
+        assertThat(results).hasSize(20);
+        for (int i = 0; i < 20; i++) {
+            if (i == 7) {
+                assertThat(results.get(i)).isEqualTo(ShippingResult.fail("HTTP 500"));
+            } else {
+                assertThat(results.get(i)).isEqualTo(ShippingResult.success("TRK-" + i));
+            }
+        }
+        verify(20, postRequestedFor(urlEqualTo("/shipping/request")));
+    }
 }
@@ -0,0 +1,52 @@
+package org.example.cleancode.Y_2026.first_half.march.day102;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdempotencyStoreTest {
+
+    @TempDir
+    Path directory;
+
+    // 성공 결과가 null이어도 기록 -> 다시 열었을 때 저장된 성공으로 응답 (PG 다시 호출 안 함)
+    @Test
+    void nullResultSurvivesReopen() {
+        Path file = directory.resolve("idempotency.log");
+        try (IdempotencyStore<String> store = open(file)) {
+            assertThat(store.execute("ORD-1:1000", token -> null)).isNull();
+        }
+
+        try (IdempotencyStore<String> reopened = open(file)) {
+            String result = reopened.execute("ORD-1:1000", token -> {
+                throw new AssertionError("저장된 성공인데 다시 호출됨");
+            });
+            assertThat(result).isNull();
+            assertThat(reopened.getHitCount()).isEqualTo(1);
+            assertThat(reopened.getCallCount()).isZero();
+        }
+    }
+
+    // writeUTF 제한(64KB)을 넘는 결과도 그대로 복원
+    @Test
+    void largeResultSurvivesReopen() {
+        Path file = directory.resolve("idempotency.log");
+        String large = "결제".repeat(40_000);
+        try (IdempotencyStore<String> store = open(file)) {
+            store.execute("ORD-2:2000", token -> large);
+        }
+
+        try (IdempotencyStore<String> reopened = open(file)) {
+            assertThat(reopened.findResult("ORD-2:2000")).isEqualTo(large);
+        }
+    }
+
+    private static IdempotencyStore<String> open(Path file) {
+        return IdempotencyStore.open(file, Duration.ofHours(24), Function.identity(), Function.identity());
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.cleancode.Y_2026.first_half.march.day80;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Day80ProductDetailServiceTest {
+
+    private final ExecutorService executor = Day80ProductDetailService.newFanOutExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // 배치 메서드가 없는 클라이언트: 단건 호출(500ms)을 상품별로 동시에 보내 1초 마감 안에 모두 응답
+    @Test
+    void getDetailsFansOutSingleItemClient() {
+        PriceClient singleOnly = productId -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return PriceInfo.builder()
+                    .productId(productId).originalPrice(30000)
+                    .discountPrice(24000).discountRate(20).build();
+        };
+        Day80ProductDetailService service = new Day80ProductDetailService(new StubInventoryClient(),
+                new StubReviewClient(), new StubRecommendClient(), singleOnly, executor, Duration.ofSeconds(1));
+        List<Long> productIds = LongStream.rangeClosed(1, 10).boxed().toList();
+
+        long start = System.nanoTime();
+        List<ProductDetailResponse> details = service.getDetails(productIds);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(details).hasSize(10);
+        assertThat(details).allSatisfy(detail -> {
+            assertThat(detail.getPrice().getOriginalPrice()).isEqualTo(30000);
+            assertThat(detail.getStaleSources()).isEmpty();
+        });
+        assertThat(elapsedMillis).isLessThan(1000);
+        // 배치 엔드포인트가 있는 출처 3개는 1회씩, 가격은 상품별 10회
+        assertThat(service.getUpstreamCallCount()).isEqualTo(3 + 10);
+    }
+}